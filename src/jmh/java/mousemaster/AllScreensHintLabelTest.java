@@ -0,0 +1,50 @@
+package mousemaster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Regression test of the hint labels of an all-screens hint grid when the grids of the
+ * screens do not have the same size (see
+ * {@link SyntheticConfigurations#allScreensHintGrid(int, int)}): the first (leftmost)
+ * screen only fits a small grid, and the key sequences must still be long enough for
+ * the hints of all the grids, so that no two hints have the same label.
+ * ./mvnw -Pbenchmark compile exec:exec@all-screens-hint-labels
+ */
+public class AllScreensHintLabelTest {
+
+    private static final Logger logger =
+            LoggerFactory.getLogger(AllScreensHintLabelTest.class);
+    private static final int GRID_SIZE = 30;
+
+    public static void main(String[] args) throws Exception {
+        Set<Screen> screens = new LinkedHashSet<>();
+        // 1 pixel per cell (see allScreensHintGrid): a 5 x 5 grid.
+        screens.add(new Screen(new Rectangle(0, 0, 5, 5), 96, 1));
+        screens.add(new Screen(new Rectangle(5, 0, 1920, 1080), 96, 1));
+        BenchmarkPlatform platform = new BenchmarkPlatform(screens);
+        platform.load(SyntheticConfigurations.allScreensHintGrid(GRID_SIZE, 1));
+        platform.hintManager().modeChanged(platform.modeMap().get("hint-0-mode"));
+        PackedHints hints = platform.hintMesh().hints();
+        int expectedHintCount = 5 * 5 + GRID_SIZE * GRID_SIZE;
+        if (hints.size() != expectedHintCount)
+            throw new IllegalStateException(
+                    "Expected " + expectedHintCount + " hints, got " + hints.size());
+        Set<List<Key>> keySequences = new HashSet<>();
+        for (int hintIndex = 0; hintIndex < hints.size(); hintIndex++) {
+            List<Key> keySequence = hints.keySequence(hintIndex);
+            if (!keySequences.add(keySequence))
+                throw new IllegalStateException(
+                        "Hint " + hintIndex + " has the same label as another hint: " +
+                        keySequence.stream().map(Key::name).toList());
+        }
+        logger.info(hints.size() + " hints on screens of different sizes have " +
+                    "distinct labels of " + hints.length(0) + " keys");
+    }
+
+}
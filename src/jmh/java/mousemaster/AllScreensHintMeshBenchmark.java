@@ -0,0 +1,59 @@
+package mousemaster;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hint meshes of up to gridSize x gridSize hints on each of six 2560x1440 screens
+ * (3 x 2), see {@link SyntheticConfigurations#allScreensHintGrid(int, int)}. The grids of
+ * the screens are built in parallel.
+ */
+@BenchmarkMode(org.openjdk.jmh.annotations.Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AllScreensHintMeshBenchmark {
+
+    /**
+     * More hint modes than the hint meshes cached by the HintManager, so that each mode
+     * change builds the hints again.
+     */
+    private static final int HINT_MODE_COUNT = 10;
+
+    @Param({"10", "50", "100"})
+    public int gridSize;
+
+    private BenchmarkPlatform platform;
+    private HintManager hintManager;
+    private Mode[] hintModes;
+    private int hintModeIndex;
+
+    @Setup
+    public void setup() throws Exception {
+        Set<Screen> screens = new LinkedHashSet<>();
+        for (int row = 0; row < 2; row++) {
+            for (int column = 0; column < 3; column++)
+                screens.add(new Screen(
+                        new Rectangle(column * 2560, row * 1440, 2560, 1440), 96, 1));
+        }
+        platform = new BenchmarkPlatform(screens);
+        platform.load(SyntheticConfigurations.allScreensHintGrid(gridSize,
+                HINT_MODE_COUNT));
+        hintManager = platform.hintManager();
+        hintModes = new Mode[HINT_MODE_COUNT];
+        for (int modeIndex = 0; modeIndex < HINT_MODE_COUNT; modeIndex++)
+            hintModes[modeIndex] = platform.modeMap().get("hint-" + modeIndex + "-mode");
+    }
+
+    @Benchmark
+    public HintMesh buildHintMesh() {
+        hintManager.modeChanged(hintModes[hintModeIndex]);
+        hintModeIndex = (hintModeIndex + 1) % HINT_MODE_COUNT;
+        return platform.hintMesh();
+    }
+
+}
@@ -0,0 +1,233 @@
+package mousemaster;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Headless platform for the benchmarks. Unlike {@link SimulatedPlatform}, it does not
+ * record anything, so that the benchmarks only measure (and only allocate in) the
+ * engine. It keeps the components that {@link Mousemaster} passes to
+ * {@link #reset}, so that the benchmarks can call them directly.
+ */
+public class BenchmarkPlatform implements Platform {
+
+    private static final Instant ORIGIN = Instant.parse("2024-01-01T00:00:00Z");
+
+    private final VirtualClock clock = new VirtualClock(ORIGIN);
+    private final Set<Screen> screens;
+    private MouseController mouseController;
+    private KeyboardManager keyboardManager;
+    private ModeMap modeMap;
+    private List<MousePositionListener> mousePositionListeners = List.of();
+    private Grid grid;
+    private HintMesh hintMesh;
+
+    public BenchmarkPlatform(Set<Screen> screens) {
+        this.screens = Collections.unmodifiableSet(new LinkedHashSet<>(screens));
+    }
+
+    /**
+     * A single 1920x1080 screen.
+     */
+    public static BenchmarkPlatform singleScreen() {
+        return new BenchmarkPlatform(
+                Set.of(new Screen(new Rectangle(0, 0, 1920, 1080), 96, 1)));
+    }
+
+    /**
+     * Loads the configuration file into a new Mousemaster running on this platform.
+     */
+    public Mousemaster load(Path configurationPath) throws Exception {
+        return new Mousemaster(configurationPath, this, clock);
+    }
+
+    public VirtualClock clock() {
+        return clock;
+    }
+
+    public MouseController mouseController() {
+        return mouseController;
+    }
+
+    public KeyboardManager keyboardManager() {
+        return keyboardManager;
+    }
+
+    public ModeMap modeMap() {
+        return modeMap;
+    }
+
+    public GridManager gridManager() {
+        return mousePositionListener(GridManager.class);
+    }
+
+    public HintManager hintManager() {
+        return mousePositionListener(HintManager.class);
+    }
+
+    private <T> T mousePositionListener(Class<T> listenerClass) {
+        for (MousePositionListener listener : mousePositionListeners) {
+            if (listenerClass.isInstance(listener))
+                return listenerClass.cast(listener);
+        }
+        throw new IllegalStateException("No " + listenerClass.getSimpleName());
+    }
+
+    /**
+     * Null if hidden.
+     */
+    public Grid grid() {
+        return grid;
+    }
+
+    /**
+     * Null if hidden.
+     */
+    public HintMesh hintMesh() {
+        return hintMesh;
+    }
+
+    @Override
+    public void update(double delta) {
+        // No op.
+    }
+
+    @Override
+    public void waitForInput(double timeout) {
+        // No op.
+    }
+
+    @Override
+    public void reset(TimerService timerService, MouseController mouseController,
+                      KeyboardManager keyboardManager, KeyboardLayout keyboardLayout,
+                      ModeMap modeMap,
+                      List<MousePositionListener> mousePositionListeners) {
+        this.mouseController = mouseController;
+        this.keyboardManager = keyboardManager;
+        this.modeMap = modeMap;
+        this.mousePositionListeners = mousePositionListeners;
+        Point center = screens.iterator().next().rectangle().center();
+        mousePositionListeners.forEach(
+                mousePositionListener -> mousePositionListener.mouseMoved(center.x(),
+                        center.y()));
+    }
+
+    @Override
+    public boolean running() {
+        return false;
+    }
+
+    @Override
+    public void moveMouseBy(boolean xForward, double deltaX, boolean yForward,
+                            double deltaY) {
+        // No op.
+    }
+
+    @Override
+    public void moveMouseTo(int x, int y) {
+        // No op.
+    }
+
+    @Override
+    public void synchronousMoveMouseTo(int x, int y) {
+        // No op.
+    }
+
+    @Override
+    public void pressLeft() {
+        // No op.
+    }
+
+    @Override
+    public void pressMiddle() {
+        // No op.
+    }
+
+    @Override
+    public void pressRight() {
+        // No op.
+    }
+
+    @Override
+    public void releaseLeft() {
+        // No op.
+    }
+
+    @Override
+    public void releaseMiddle() {
+        // No op.
+    }
+
+    @Override
+    public void releaseRight() {
+        // No op.
+    }
+
+    @Override
+    public void wheelHorizontallyBy(boolean forward, double delta) {
+        // No op.
+    }
+
+    @Override
+    public void wheelVerticallyBy(boolean forward, double delta) {
+        // No op.
+    }
+
+    @Override
+    public void showCursor() {
+        // No op.
+    }
+
+    @Override
+    public void hideCursor() {
+        // No op.
+    }
+
+    @Override
+    public Set<Screen> screens() {
+        return screens;
+    }
+
+    /**
+     * The active window is the first screen.
+     */
+    @Override
+    public Rectangle activeWindowRectangle(double windowWidthPercent,
+                                           double windowHeightPercent,
+                                           int scaledTopInset, int scaledBottomInset,
+                                           int scaledLeftInset, int scaledRightInset) {
+        return screens.iterator().next().rectangle();
+    }
+
+    @Override
+    public void setIndicator(Indicator indicator) {
+        // No op.
+    }
+
+    @Override
+    public void hideIndicator() {
+        // No op.
+    }
+
+    @Override
+    public void setGrid(Grid grid) {
+        this.grid = grid;
+    }
+
+    @Override
+    public void hideGrid() {
+        grid = null;
+    }
+
+    @Override
+    public void setHintMesh(HintMesh hintMesh) {
+        this.hintMesh = hintMesh;
+    }
+
+    @Override
+    public void hideHintMesh() {
+        hintMesh = null;
+    }
+
+}
@@ -0,0 +1,117 @@
+package mousemaster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Differential fuzzer of the combo engines: for each seed, a random configuration
+ * (see {@link SyntheticConfigurations#random(long)}) and a random timed key event stream
+ * are replayed (see {@link KeyEventReplayer}) with the {@link ComboEngine#LEGACY}
+ * reference engine and with the {@link ComboEngine#AUTOMATON} engine. The first seed
+ * whose eat decisions, modes or commands differ fails the run (the differences show the
+ * reference as recorded and the automaton as replayed). The throughput of both engines
+ * (event processing only, the configuration loading is not included) is reported at the
+ * end.
+ * ./mvnw -Pbenchmark compile exec:exec@fuzz
+ * Arguments (optional): --first-seed=0 --seed-count=200 --event-count=300
+ */
+public class ComboEngineFuzzer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ComboEngineFuzzer.class);
+    private static final int MAX_LOGGED_DIFFERENCE_COUNT = 10;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        long firstSeed = argument(args, "--first-seed=", 0);
+        long seedCount = argument(args, "--seed-count=", 200);
+        int eventCount = (int) argument(args, "--event-count=", 300);
+        long referenceNanos = 0, automatonNanos = 0, totalEventCount = 0;
+        for (long seed = firstSeed; seed < firstSeed + seedCount; seed++) {
+            Path configurationPath = SyntheticConfigurations.random(seed);
+            KeyEventLog log = randomKeyEvents(new Random(seed), eventCount);
+            KeyEventReplayer.Replay referenceReplay =
+                    KeyEventReplayer.replay(configurationPath, log, ComboEngine.LEGACY);
+            KeyEventReplayer.Replay automatonReplay =
+                    KeyEventReplayer.replay(configurationPath, log, ComboEngine.AUTOMATON);
+            referenceNanos += referenceReplay.runNanos();
+            automatonNanos += automatonReplay.runNanos();
+            totalEventCount += log.keyEvents().size();
+            List<String> differences = KeyEventReplayer.differences(referenceReplay.log(),
+                    automatonReplay.log());
+            if (!differences.isEmpty()) {
+                logger.error("Seed " + seed + ": the engines diverge, configuration:\n" +
+                             Files.readString(configurationPath));
+                differences.stream()
+                           .limit(MAX_LOGGED_DIFFERENCE_COUNT)
+                           .forEach(logger::error);
+                throw new IllegalStateException("Seed " + seed + ": " +
+                                                differences.size() +
+                                                " differences between the engines");
+            }
+        }
+        logger.info("No differences for " + seedCount + " seeds (" + totalEventCount +
+                    " key events): " + ComboEngine.LEGACY + " " +
+                    eventsPerSecond(totalEventCount, referenceNanos) + " events/s, " +
+                    ComboEngine.AUTOMATON + " " +
+                    eventsPerSecond(totalEventCount, automatonNanos) + " events/s");
+    }
+
+    private static long argument(String[] args, String prefix, long defaultValue) {
+        return Stream.of(args)
+                     .filter(arg -> arg.startsWith(prefix))
+                     .map(arg -> Long.parseLong(arg.substring(prefix.length())))
+                     .findFirst()
+                     .orElse(defaultValue);
+    }
+
+    private static long eventsPerSecond(long eventCount, long nanos) {
+        return nanos == 0 ? 0 : eventCount * 1_000_000_000L / nanos;
+    }
+
+    /**
+     * Presses and releases of {@link SyntheticConfigurations#RANDOM_KEYS} (at most 3 keys
+     * pressed at the same time, a press can be a repeat), a few milliseconds to a few
+     * seconds apart so that both the short and the long move durations are exercised.
+     * The keys still pressed at the end are released.
+     */
+    static KeyEventLog randomKeyEvents(Random random, int eventCount) {
+        List<Key> keys =
+                SyntheticConfigurations.RANDOM_KEYS.stream().map(Key::ofName).toList();
+        List<Key> pressedKeys = new ArrayList<>();
+        List<KeyEvent> events = new ArrayList<>();
+        long timeMillis = 0;
+        for (int eventIndex = 0; eventIndex < eventCount; eventIndex++) {
+            int delayKind = random.nextInt(10);
+            timeMillis += delayKind < 5 ? random.nextInt(60) :
+                    delayKind < 8 ? random.nextInt(300) :
+                            delayKind < 9 ? 300 + random.nextInt(700) :
+                                    1000 + random.nextInt(3000);
+            long time = timeMillis * 1_000_000L;
+            if (!pressedKeys.isEmpty() &&
+                (pressedKeys.size() >= 3 || random.nextBoolean()))
+                events.add(new KeyEvent.ReleaseKeyEvent(time,
+                        pressedKeys.remove(random.nextInt(pressedKeys.size()))));
+            else {
+                Key key = keys.get(random.nextInt(keys.size()));
+                if (!pressedKeys.contains(key))
+                    pressedKeys.add(key);
+                events.add(new KeyEvent.PressKeyEvent(time, key));
+            }
+        }
+        for (Key key : pressedKeys) {
+            timeMillis += 50;
+            events.add(new KeyEvent.ReleaseKeyEvent(timeMillis * 1_000_000L, key));
+        }
+        List<KeyEventLog.Entry> entries = new ArrayList<>();
+        for (KeyEvent event : events)
+            entries.add(new KeyEventLog.RecordedKeyEvent(event, event.time(), false, null,
+                    List.of()));
+        return new KeyEventLog(0, List.copyOf(entries));
+    }
+
+}
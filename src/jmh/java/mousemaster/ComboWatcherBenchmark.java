@@ -0,0 +1,77 @@
+package mousemaster;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Key events going through KeyboardManager, ComboWatcher and the commands they run.
+ * The events are random presses and releases (at most 2 keys pressed at the same time,
+ * 30ms apart) of the keys that the configuration refers to. With mode-switching-4,
+ * each press switches mode and is also processed by the new mode's combos.
+ */
+@BenchmarkMode(org.openjdk.jmh.annotations.Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ComboWatcherBenchmark {
+
+    /**
+     * The events are reused in a loop: the preparation is broken once per loop because
+     * time goes backwards, which is negligible.
+     */
+    private static final int EVENT_COUNT = 1 << 16;
+    private static final long EVENT_INTERVAL_NANOS = 30_000_000L;
+
+    @Param({"author", "mouseable", "neo-mousekeys", "warpd", "synthetic-1000",
+            "synthetic-5000", "mode-switching-4"})
+    public String configuration;
+
+    private BenchmarkPlatform platform;
+    private KeyboardManager keyboardManager;
+    private KeyEvent[] events;
+    private int eventIndex;
+
+    @Setup
+    public void setup() throws Exception {
+        platform = BenchmarkPlatform.singleScreen();
+        platform.load(SyntheticConfigurations.path(configuration));
+        keyboardManager = platform.keyboardManager();
+        List<Key> keys = new ArrayList<>();
+        for (Mode mode : platform.modeMap().modes()) {
+            for (Combo combo : mode.comboMap().commandsByCombo().keySet()) {
+                for (ComboMove move : combo.sequence().moves())
+                    keys.addAll(move.keys());
+                combo.precondition().mustRemainPressedKeySets().forEach(keys::addAll);
+            }
+        }
+        keys = List.copyOf(new LinkedHashSet<>(keys));
+        Random random = new Random(0);
+        List<Key> pressedKeys = new ArrayList<>();
+        events = new KeyEvent[EVENT_COUNT];
+        for (int eventIndex = 0; eventIndex < EVENT_COUNT; eventIndex++) {
+            long time = (eventIndex + 1) * EVENT_INTERVAL_NANOS;
+            Key key = pressedKeys.size() == 2 ?
+                    pressedKeys.get(random.nextInt(pressedKeys.size())) :
+                    keys.get(random.nextInt(keys.size()));
+            if (pressedKeys.remove(key))
+                events[eventIndex] = new KeyEvent.ReleaseKeyEvent(time, key);
+            else {
+                pressedKeys.add(key);
+                events[eventIndex] = new KeyEvent.PressKeyEvent(time, key);
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean keyEvent() {
+        platform.clock().advance(EVENT_INTERVAL_NANOS);
+        KeyEvent event = events[eventIndex];
+        eventIndex = (eventIndex + 1) % EVENT_COUNT;
+        return keyboardManager.keyEvent(event);
+    }
+
+}
@@ -0,0 +1,34 @@
+package mousemaster;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the configuration files.
+ */
+@BenchmarkMode(org.openjdk.jmh.annotations.Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ConfigurationParserBenchmark {
+
+    @Param({"author", "mouseable", "neo-mousekeys", "warpd", "synthetic-1000"})
+    public String configuration;
+
+    private Path configurationPath;
+
+    @Setup
+    public void setup() throws Exception {
+        configurationPath = SyntheticConfigurations.path(configuration);
+    }
+
+    @Benchmark
+    public Configuration parse() throws Exception {
+        return ConfigurationParser.parse(configurationPath);
+    }
+
+}
@@ -0,0 +1,47 @@
+package mousemaster;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of a combo with aliases (see {@link ExpandableSequence}).
+ */
+@BenchmarkMode(org.openjdk.jmh.annotations.Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ExpandableSequenceBenchmark {
+
+    private final ComboMoveDuration defaultMoveDuration =
+            ComboMoveDuration.of(Duration.ZERO, Duration.ofMillis(150));
+    private final Map<String, Alias> aliases = Map.of(
+            "letter", new Alias("letter", SyntheticConfigurations.LETTERS.stream()
+                                                                        .map(Key::ofName)
+                                                                        .toList()),
+            "direction", new Alias("direction", List.of(Key.up, Key.down, Key.left,
+                    Key.right)));
+    private final String aliasCombo = "_{leftshift} +letter -letter +direction -letter";
+
+    /**
+     * A combo with 2 aliases (26 x 4 keys). This used to be ExpandableSequence#expand
+     * which built the 104 single key sequences.
+     */
+    @Benchmark
+    public Combo comboWithAliases() {
+        return Combo.of(aliasCombo, defaultMoveDuration, aliases);
+    }
+
+    /**
+     * The 104 single key sequences of the combo with aliases.
+     */
+    @Benchmark
+    public List<ComboSequence> expandComboWithAliases() {
+        return Combo.of(aliasCombo, defaultMoveDuration, aliases).sequence().expand();
+    }
+
+}
@@ -0,0 +1,67 @@
+package mousemaster;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Grid commands of a 4 x 4 grid on the active screen (see
+ * {@link SyntheticConfigurations#hintAndGrid(int)}).
+ */
+@BenchmarkMode(org.openjdk.jmh.annotations.Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class GridManagerBenchmark {
+
+    private BenchmarkPlatform platform;
+    private GridManager gridManager;
+    private Mode idleMode;
+    private Mode gridMode;
+    private int commandIndex;
+
+    @Setup
+    public void setup() throws Exception {
+        platform = BenchmarkPlatform.singleScreen();
+        platform.load(SyntheticConfigurations.hintAndGrid(10));
+        gridManager = platform.gridManager();
+        idleMode = platform.modeMap().get(Mode.IDLE_MODE_NAME);
+        gridMode = platform.modeMap().get("grid-mode");
+        platform.mouseController().modeChanged(gridMode);
+        gridManager.modeChanged(gridMode);
+    }
+
+    @Benchmark
+    public Grid snap() {
+        switch (commandIndex++ & 3) {
+            case 0 -> gridManager.snapLeft();
+            case 1 -> gridManager.snapUp();
+            case 2 -> gridManager.snapRight();
+            default -> gridManager.snapDown();
+        }
+        return platform.grid();
+    }
+
+    /**
+     * The grid is reset once it cannot be shrunk anymore (switching to the same mode
+     * would keep the size of the grid).
+     */
+    @Benchmark
+    public Grid shrink() {
+        Grid grid = platform.grid();
+        if (grid.width() == 1 && grid.height() == 1) {
+            gridManager.modeChanged(idleMode);
+            gridManager.modeChanged(gridMode);
+        }
+        switch (commandIndex++ & 3) {
+            case 0 -> gridManager.shrinkGridLeft();
+            case 1 -> gridManager.shrinkGridUp();
+            case 2 -> gridManager.shrinkGridRight();
+            default -> gridManager.shrinkGridDown();
+        }
+        return platform.grid();
+    }
+
+}
@@ -0,0 +1,109 @@
+package mousemaster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Regression test of the hint labels of hint.label-assignment=selection-frequency (see
+ * {@link SyntheticConfigurations#selectionFrequencyHintGrid}): selecting a hint that does
+ * not change the code lengths must not change any label (the hints are reused from the
+ * cache of the HintManager, not rebuilt), and selecting a hint with a long label again and
+ * again must eventually shorten it.
+ * ./mvnw -Pbenchmark compile exec:exec@hint-labels
+ */
+public class HintLabelStabilityTest {
+
+    private static final Logger logger =
+            LoggerFactory.getLogger(HintLabelStabilityTest.class);
+    /**
+     * Not a square grid, so that all the selection keys are used and the labels do not
+     * all have the same length.
+     */
+    private static final int ROW_COUNT = 20;
+    private static final int COLUMN_COUNT = 30;
+    private static final int MAX_SELECTION_COUNT = 100;
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkPlatform platform = new BenchmarkPlatform(
+                Set.of(new Screen(new Rectangle(0, 0, 1920, 1080), 96, 1)));
+        platform.load(SyntheticConfigurations.selectionFrequencyHintGrid(ROW_COUNT,
+                COLUMN_COUNT));
+        HintManager hintManager = platform.hintManager();
+        Mode idleMode = platform.modeMap().get(Mode.IDLE_MODE_NAME);
+        Mode hintMode = platform.modeMap().get("hint-mode");
+        hintManager.modeChanged(hintMode);
+        PackedHints hints = platform.hintMesh().hints();
+        int shortestHintIndex = 0;
+        int longestHintIndex = 0;
+        for (int hintIndex = 0; hintIndex < hints.size(); hintIndex++) {
+            if (hints.length(hintIndex) < hints.length(shortestHintIndex))
+                shortestHintIndex = hintIndex;
+            if (hints.length(hintIndex) >= hints.length(longestHintIndex))
+                longestHintIndex = hintIndex;
+        }
+        if (hints.length(shortestHintIndex) == hints.length(longestHintIndex))
+            throw new IllegalStateException("Expected labels of different lengths");
+        // The shortest label cannot get shorter.
+        for (int selectionIndex = 0; selectionIndex < 10; selectionIndex++) {
+            PackedHints newHints = select(hintManager, platform, idleMode, hintMode,
+                    shortestHintIndex);
+            if (newHints != hints)
+                throw new IllegalStateException(
+                        "Hints rebuilt after selecting the hint with the shortest label " +
+                        (selectionIndex + 1) + " times (labels changed: " +
+                        !newHints.equals(hints) + ")");
+        }
+        int longestHintLength = hints.length(longestHintIndex);
+        int relabelingCount = 0;
+        for (int selectionIndex = 0; selectionIndex < MAX_SELECTION_COUNT &&
+                                     hints.length(longestHintIndex) == longestHintLength;
+             selectionIndex++) {
+            PackedHints newHints = select(hintManager, platform, idleMode, hintMode,
+                    longestHintIndex);
+            if (sameLengths(newHints, hints)) {
+                if (newHints != hints)
+                    throw new IllegalStateException(
+                            "Hints rebuilt after selection " + (selectionIndex + 1) +
+                            " of hint " + longestHintIndex +
+                            " although the code lengths did not change (labels changed: " +
+                            !newHints.equals(hints) + ")");
+            }
+            else
+                relabelingCount++;
+            hints = newHints;
+        }
+        if (hints.length(longestHintIndex) == longestHintLength)
+            throw new IllegalStateException(
+                    "Label of hint " + longestHintIndex + " still has " +
+                    longestHintLength + " keys after " + MAX_SELECTION_COUNT +
+                    " selections");
+        logger.info("Hint labels only changed when the code lengths did (" +
+                    relabelingCount + " relabeling)");
+    }
+
+    /**
+     * Types the label of the hint, then hides the hint mesh and shows it again, so that
+     * the hints are looked up again (and rebuilt if the selection changed their version).
+     */
+    private static PackedHints select(HintManager hintManager, BenchmarkPlatform platform,
+                                      Mode idleMode, Mode hintMode, int hintIndex) {
+        List<Key> keySequence = platform.hintMesh().hints().keySequence(hintIndex);
+        for (Key key : keySequence)
+            hintManager.keyPressed(key);
+        hintManager.modeChanged(idleMode);
+        hintManager.modeChanged(hintMode);
+        return platform.hintMesh().hints();
+    }
+
+    private static boolean sameLengths(PackedHints hints1, PackedHints hints2) {
+        for (int hintIndex = 0; hintIndex < hints1.size(); hintIndex++) {
+            if (hints1.length(hintIndex) != hints2.length(hintIndex))
+                return false;
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,72 @@
+package mousemaster;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Hint meshes of gridSize x gridSize hints (see
+ * {@link SyntheticConfigurations#hintAndGrid(int)}).
+ */
+@BenchmarkMode(org.openjdk.jmh.annotations.Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class HintManagerBenchmark {
+
+    @Param({"10", "50", "100"})
+    public int gridSize;
+
+    private BenchmarkPlatform platform;
+    private HintManager hintManager;
+    private Mode idleMode;
+    private Mode hintMode;
+    /**
+     * The key sequences of all the hints, one after the other.
+     */
+    private Key[] hintKeys;
+    private int hintKeyIndex;
+
+    @Setup
+    public void setup() throws Exception {
+        platform = new BenchmarkPlatform(
+                Set.of(new Screen(new Rectangle(0, 0, 3840, 2160), 96, 1)));
+        platform.load(SyntheticConfigurations.hintAndGrid(gridSize));
+        hintManager = platform.hintManager();
+        idleMode = platform.modeMap().get(Mode.IDLE_MODE_NAME);
+        hintMode = platform.modeMap().get("hint-mode");
+        hintManager.modeChanged(hintMode);
+        PackedHints hints = platform.hintMesh().hints();
+        hintKeys = IntStream.range(0, hints.size())
+                            .mapToObj(hints::keySequence)
+                            .flatMap(Collection::stream)
+                            .toArray(Key[]::new);
+    }
+
+    /**
+     * Includes switching to the idle mode, which hides the hint mesh, so that the next
+     * mode change builds the hint mesh again. The geometry does not change, so the hints
+     * themselves are reused from the cache of the HintManager.
+     */
+    @Benchmark
+    public HintMesh buildHintMesh() {
+        hintManager.modeChanged(idleMode);
+        hintManager.modeChanged(hintMode);
+        return platform.hintMesh();
+    }
+
+    /**
+     * Types the hints one after the other.
+     */
+    @Benchmark
+    public PressKeyEventProcessing keyPressed() {
+        Key key = hintKeys[hintKeyIndex];
+        hintKeyIndex = (hintKeyIndex + 1) % hintKeys.length;
+        return hintManager.keyPressed(key);
+    }
+
+}
@@ -0,0 +1,117 @@
+package mousemaster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Allocation regression test of the steady-state key event path: key events go through
+ * KeyboardManager, ComboWatcher and the commands they run (like in
+ * {@link ComboWatcherBenchmark}), and the bytes allocated by the thread are measured with
+ * {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)} after a warm-up.
+ * The run fails if an event allocates more than --max-bytes-per-event on average.
+ * The configurations have no mode switch: switching mode builds the new mode's grid
+ * and indicator, which is not part of the steady-state path. alias-repeats keeps
+ * several matches of alias combos active (the alias binding check).
+ * ./mvnw -Pbenchmark compile exec:exec@allocation
+ * Arguments (optional): --event-count=200000 --max-bytes-per-event=1
+ */
+public class KeyEventAllocationTest {
+
+    private static final Logger logger =
+            LoggerFactory.getLogger(KeyEventAllocationTest.class);
+    private static final List<String> CONFIGURATION_NAMES =
+            List.of("synthetic-1000", "alias-repeats");
+    private static final long EVENT_INTERVAL_NANOS = 30_000_000L;
+
+    public static void main(String[] args) throws Exception {
+        int eventCount = (int) argument(args, "--event-count=", 200_000);
+        long maxBytesPerEvent = argument(args, "--max-bytes-per-event=", 1);
+        List<String> failures = new ArrayList<>();
+        for (String configurationName : CONFIGURATION_NAMES) {
+            double bytesPerEvent = allocatedBytesPerEvent(configurationName, eventCount);
+            logger.info(configurationName + ": " + String.format("%.2f", bytesPerEvent) +
+                        " allocated bytes per key event");
+            if (bytesPerEvent > maxBytesPerEvent)
+                failures.add(configurationName + " allocates " +
+                             String.format("%.2f", bytesPerEvent) +
+                             " bytes per key event (max " + maxBytesPerEvent + ")");
+        }
+        if (!failures.isEmpty())
+            throw new IllegalStateException(String.join(", ", failures));
+    }
+
+    /**
+     * The first half of the events is the warm-up (JIT compilation, scratch buffers
+     * growing to their final size), the second half is measured.
+     */
+    private static double allocatedBytesPerEvent(String configurationName,
+                                                 int eventCount) throws Exception {
+        BenchmarkPlatform platform = BenchmarkPlatform.singleScreen();
+        platform.load(SyntheticConfigurations.path(configurationName));
+        KeyboardManager keyboardManager = platform.keyboardManager();
+        KeyEvent[] events = randomKeyEvents(platform.modeMap(), eventCount);
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        int warmUpEventCount = eventCount / 2;
+        long allocatedBytesBefore = 0;
+        for (int eventIndex = 0; eventIndex < eventCount; eventIndex++) {
+            if (eventIndex == warmUpEventCount)
+                allocatedBytesBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+            platform.clock().advance(EVENT_INTERVAL_NANOS);
+            keyboardManager.keyEvent(events[eventIndex]);
+        }
+        long allocatedBytes =
+                threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBytesBefore;
+        return (double) allocatedBytes / (eventCount - warmUpEventCount);
+    }
+
+    /**
+     * Presses and releases (at most 2 keys pressed at the same time) of the keys that
+     * the configuration refers to. The key of a press is the last pressed key half of the
+     * time, so that the repeated moves of the alias combos match.
+     */
+    private static KeyEvent[] randomKeyEvents(ModeMap modeMap, int eventCount) {
+        List<Key> keys = new ArrayList<>();
+        for (Mode mode : modeMap.modes()) {
+            for (Combo combo : mode.comboMap().commandsByCombo().keySet()) {
+                for (ComboMove move : combo.sequence().moves())
+                    keys.addAll(move.keys());
+                combo.precondition().mustRemainPressedKeySets().forEach(keys::addAll);
+            }
+        }
+        keys = List.copyOf(new LinkedHashSet<>(keys));
+        Random random = new Random(0);
+        List<Key> pressedKeys = new ArrayList<>();
+        Key lastPressedKey = keys.getFirst();
+        KeyEvent[] events = new KeyEvent[eventCount];
+        for (int eventIndex = 0; eventIndex < eventCount; eventIndex++) {
+            long time = (eventIndex + 1) * EVENT_INTERVAL_NANOS;
+            Key key = pressedKeys.size() == 2 ?
+                    pressedKeys.get(random.nextInt(pressedKeys.size())) :
+                    random.nextBoolean() ? lastPressedKey :
+                            keys.get(random.nextInt(keys.size()));
+            if (pressedKeys.remove(key))
+                events[eventIndex] = new KeyEvent.ReleaseKeyEvent(time, key);
+            else {
+                pressedKeys.add(key);
+                lastPressedKey = key;
+                events[eventIndex] = new KeyEvent.PressKeyEvent(time, key);
+            }
+        }
+        return events;
+    }
+
+    private static long argument(String[] args, String prefix, long defaultValue) {
+        return Stream.of(args)
+                     .filter(arg -> arg.startsWith(prefix))
+                     .map(arg -> Long.parseLong(arg.substring(prefix.length())))
+                     .findFirst()
+                     .orElse(defaultValue);
+    }
+
+}
@@ -0,0 +1,43 @@
+package mousemaster;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Motion frames (10ms) while moving and/or wheeling, with the mouse and wheel settings
+ * of grid-mode (see {@link SyntheticConfigurations#hintAndGrid(int)}).
+ */
+@BenchmarkMode(org.openjdk.jmh.annotations.Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MouseControllerBenchmark {
+
+    @Param({"move", "wheel", "move-and-wheel"})
+    public String motion;
+
+    private MouseController mouseController;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkPlatform platform = BenchmarkPlatform.singleScreen();
+        platform.load(SyntheticConfigurations.hintAndGrid(10));
+        mouseController = platform.mouseController();
+        mouseController.modeChanged(platform.modeMap().get("grid-mode"));
+        if (!motion.equals("wheel")) {
+            mouseController.startMoveRight();
+            mouseController.startMoveDown();
+        }
+        if (!motion.equals("move"))
+            mouseController.startWheelDown();
+    }
+
+    @Benchmark
+    public void update() {
+        mouseController.update(0.01);
+    }
+
+}
@@ -0,0 +1,333 @@
+package mousemaster;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Configuration files generated for the benchmarks, written to temporary files.
+ */
+public class SyntheticConfigurations {
+
+    static final List<String> LETTERS =
+            List.of("a", "b", "c", "d", "e", "f", "g", "h", "i", "j", "k", "l", "m", "n",
+                    "o", "p", "q", "r", "s", "t", "u", "v", "w", "x", "y", "z");
+
+    private static final List<String> COMMANDS =
+            List.of("start-move", "stop-move", "start-wheel", "stop-wheel").stream()
+                .flatMap(command -> List.of("up", "down", "left", "right")
+                                        .stream()
+                                        .map(direction -> command + "." + direction))
+                .toList();
+
+    /**
+     * The shipped configuration file (for example, "author"), or a synthetic one
+     * (for example, "synthetic-1000" for {@link #combos(int)} with 1000 combos, and
+     * "mode-switching-4" for {@link #modeSwitching(int)} with 4 modes, "alias-repeats"
+     * for {@link #aliasRepeats()}, and "random-7" for {@link #random(long)} with seed 7).
+     */
+    public static Path path(String configurationName) throws IOException {
+        if (configurationName.startsWith("synthetic-"))
+            return combos(Integer.parseInt(
+                    configurationName.substring("synthetic-".length())));
+        if (configurationName.startsWith("mode-switching-"))
+            return modeSwitching(Integer.parseInt(
+                    configurationName.substring("mode-switching-".length())));
+        if (configurationName.equals("alias-repeats"))
+            return aliasRepeats();
+        if (configurationName.startsWith("random-"))
+            return random(Long.parseLong(configurationName.substring("random-".length())));
+        return Path.of("configuration", configurationName + ".properties");
+    }
+
+    /**
+     * idle-mode has comboCount distinct combos made of letter presses and releases:
+     * combo i is +a -a +b -b +c where a, b, c are the base 26 digits of i.
+     * One combo out of 4 has a must remain pressed precondition and one combo out of 8
+     * uses an alias.
+     */
+    public static Path combos(int comboCount) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("key-alias.letter=a b c d e f\n");
+        List<List<String>> combosByCommand = new ArrayList<>();
+        for (int commandIndex = 0; commandIndex < COMMANDS.size(); commandIndex++)
+            combosByCommand.add(new ArrayList<>());
+        for (int comboIndex = 0; comboIndex < comboCount; comboIndex++) {
+            List<String> moves = new ArrayList<>();
+            int digits = comboIndex;
+            do {
+                String letter = LETTERS.get(digits % LETTERS.size());
+                moves.add("+" + letter);
+                moves.add("-" + letter);
+                digits /= LETTERS.size();
+            } while (digits != 0);
+            moves.removeLast();
+            if (comboIndex % 8 == 7)
+                moves.addAll(List.of("-letter", "+letter"));
+            String combo = String.join(" ", moves);
+            if (comboIndex % 4 == 3)
+                combo = "_{leftshift} " + combo;
+            combosByCommand.get(comboIndex % COMMANDS.size()).add(combo);
+        }
+        for (int commandIndex = 0; commandIndex < COMMANDS.size(); commandIndex++) {
+            if (combosByCommand.get(commandIndex).isEmpty())
+                continue;
+            sb.append("idle-mode.")
+              .append(COMMANDS.get(commandIndex))
+              .append("=")
+              .append(String.join(" | ", combosByCommand.get(commandIndex)))
+              .append("\n");
+        }
+        return write("synthetic-" + comboCount, sb.toString());
+    }
+
+    /**
+     * modeCount modes (idle-mode, switch-1-mode, switch-2-mode...) in a cycle: in each
+     * mode, any letter press switches to the next mode, and each letter press then release
+     * runs a command. Every press goes through a second pass in the next mode.
+     */
+    public static Path modeSwitching(int modeCount) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        List<String> presses = LETTERS.stream().map(letter -> "+" + letter).toList();
+        for (int modeIndex = 0; modeIndex < modeCount; modeIndex++) {
+            String modeName = modeIndex == 0 ? "idle-mode" : "switch-" + modeIndex + "-mode";
+            int nextModeIndex = (modeIndex + 1) % modeCount;
+            String nextModeName =
+                    nextModeIndex == 0 ? "idle-mode" : "switch-" + nextModeIndex + "-mode";
+            sb.append(modeName)
+              .append(".to.")
+              .append(nextModeName)
+              .append("=")
+              .append(String.join(" | ", presses))
+              .append("\n");
+            for (int commandIndex = 0; commandIndex < COMMANDS.size(); commandIndex++) {
+                List<String> combos = new ArrayList<>();
+                for (int letterIndex = commandIndex; letterIndex < LETTERS.size();
+                     letterIndex += COMMANDS.size())
+                    combos.add("+" + LETTERS.get(letterIndex) + " -" +
+                               LETTERS.get(letterIndex));
+                sb.append(modeName)
+                  .append(".")
+                  .append(COMMANDS.get(commandIndex))
+                  .append("=")
+                  .append(String.join(" | ", combos))
+                  .append("\n");
+            }
+        }
+        return write("mode-switching-" + modeCount, sb.toString());
+    }
+
+    /**
+     * idle-mode has combos that repeat an alias (+letter -letter +letter...), so that
+     * pressing and releasing the same letter keeps several nodes of each combo active:
+     * the shallower ones are other matches (see {@link ComboAutomaton.Matches}) that have
+     * to be checked against the bindings of the alias on every event.
+     */
+    public static Path aliasRepeats() throws IOException {
+        String sb = "key-alias.letter=a b c d e f\n" +
+                    "idle-mode.stop-move.up=+letter -letter +letter\n" +
+                    "idle-mode.stop-move.down=+letter -letter +letter -letter +letter\n" +
+                    "idle-mode.stop-wheel.up=_{leftshift} +letter -letter +letter\n" +
+                    "idle-mode.stop-wheel.down=+a -a +letter -letter +letter\n";
+        return write("alias-repeats", sb);
+    }
+
+    /**
+     * +a switches from idle-mode to timeout-mode, which times out back to idle-mode after
+     * timeoutMillis, and +b is only eaten in timeout-mode.
+     */
+    public static Path modeTimeout(long timeoutMillis) throws IOException {
+        String sb = "idle-mode.to.timeout-mode=+a\n" +
+                    "timeout-mode.stop-move.up=+b\n" +
+                    "timeout-mode.timeout.duration-millis=" + timeoutMillis + "\n" +
+                    "timeout-mode.timeout.mode=idle-mode\n";
+        return write("mode-timeout", sb);
+    }
+
+    /**
+     * hint-mode (switched to with +f1) has a grid of up to rowCount x columnCount hints
+     * labeled by selection frequency, and stays in hint-mode after a selection.
+     */
+    public static Path selectionFrequencyHintGrid(int rowCount, int columnCount)
+            throws IOException {
+        String sb = """
+                idle-mode.to.hint-mode=+f1
+                hint-mode.to.idle-mode=+f2
+                hint-mode.hint.type=grid
+                hint-mode.hint.grid-area=active-screen
+                hint-mode.hint.active-screen-grid-area-center=screen-center
+                hint-mode.hint.grid-max-row-count=%d
+                hint-mode.hint.grid-max-column-count=%d
+                hint-mode.hint.grid-cell-width=1
+                hint-mode.hint.grid-cell-height=1
+                hint-mode.hint.selection-keys=%s
+                hint-mode.hint.label-assignment=selection-frequency
+                """.formatted(rowCount, columnCount, String.join(" ", LETTERS));
+        return write("selection-frequency-hint-grid-" + rowCount + "x" + columnCount, sb);
+    }
+
+    /**
+     * Keys of the random configurations: a few letters (a to c are also the fuzzkey
+     * alias) and two modifiers.
+     */
+    static final List<String> RANDOM_KEYS =
+            List.of("a", "b", "c", "d", "e", "leftshift", "leftctrl");
+    private static final List<String> RANDOM_MODIFIERS = List.of("leftshift", "leftctrl");
+    private static final List<String> RANDOM_MODE_NAMES =
+            List.of("idle-mode", "random-1-mode", "random-2-mode");
+
+    /**
+     * Up to 3 modes with random combos over {@link #RANDOM_KEYS}: sequences of up to 4
+     * moves (eaten presses, non-eaten presses, releases, alias moves, moves with a min or
+     * max duration), preconditions, mode switches and mode timeouts.
+     */
+    public static Path random(long seed) throws IOException {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder();
+        sb.append("key-alias.fuzzkey=a b c\n");
+        int modeCount = 1 + random.nextInt(RANDOM_MODE_NAMES.size());
+        List<String> modeNames = RANDOM_MODE_NAMES.subList(0, modeCount);
+        for (int modeIndex = 0; modeIndex < modeCount; modeIndex++) {
+            String modeName = modeNames.get(modeIndex);
+            Map<String, List<String>> combosByCommand = new TreeMap<>();
+            // Each mode can be switched to from the previous one.
+            if (modeCount > 1)
+                combosByCommand.computeIfAbsent(
+                                       "to." + modeNames.get((modeIndex + 1) % modeCount),
+                                       command -> new ArrayList<>())
+                               .add(randomCombo(random));
+            int comboCount = 1 + random.nextInt(12);
+            for (int comboIndex = 0; comboIndex < comboCount; comboIndex++) {
+                String command = random.nextInt(4) == 0 ?
+                        "to." + modeNames.get(random.nextInt(modeCount)) :
+                        COMMANDS.get(random.nextInt(COMMANDS.size()));
+                combosByCommand.computeIfAbsent(command, command_ -> new ArrayList<>())
+                               .add(randomCombo(random));
+            }
+            for (Map.Entry<String, List<String>> entry : combosByCommand.entrySet())
+                sb.append(modeName)
+                  .append(".")
+                  .append(entry.getKey())
+                  .append("=")
+                  .append(String.join(" | ", entry.getValue()))
+                  .append("\n");
+            if (!modeName.equals("idle-mode") && random.nextInt(3) == 0)
+                sb.append(modeName)
+                  .append(".timeout.duration-millis=")
+                  .append(100 + random.nextInt(1000))
+                  .append("\n")
+                  .append(modeName)
+                  .append(".timeout.mode=idle-mode\n");
+        }
+        return write("random-" + seed, sb.toString());
+    }
+
+    /**
+     * The precondition keys are modifiers, and they are not used in the sequence.
+     */
+    private static String randomCombo(Random random) {
+        List<String> sequenceKeys = new ArrayList<>(RANDOM_KEYS);
+        List<String> parts = new ArrayList<>();
+        if (random.nextInt(8) == 0) {
+            String modifier = RANDOM_MODIFIERS.get(random.nextInt(RANDOM_MODIFIERS.size()));
+            sequenceKeys.remove(modifier);
+            parts.add("^{" + modifier + "}");
+        }
+        boolean mustRemainPressed = random.nextInt(5) == 0;
+        if (mustRemainPressed) {
+            List<String> modifiers = new ArrayList<>(RANDOM_MODIFIERS);
+            modifiers.retainAll(sequenceKeys);
+            if (modifiers.size() > 1 && random.nextBoolean())
+                modifiers.remove(random.nextInt(modifiers.size()));
+            sequenceKeys.removeAll(modifiers);
+            parts.add("_{" + String.join(" ", modifiers) + "}");
+        }
+        int moveCount = (mustRemainPressed ? 0 : 1) + random.nextInt(4);
+        for (int moveIndex = 0; moveIndex < moveCount; moveIndex++) {
+            String move = List.of("+", "+", "-", "#").get(random.nextInt(4)) +
+                          (random.nextInt(5) == 0 ? "fuzzkey" :
+                                  sequenceKeys.get(random.nextInt(sequenceKeys.size())));
+            move += switch (random.nextInt(8)) {
+                case 0 -> "-0-" + (50 + random.nextInt(300));
+                case 1 -> "-" + (50 + random.nextInt(300));
+                default -> "";
+            };
+            parts.add(move);
+        }
+        return String.join(" ", parts);
+    }
+
+    /**
+     * hint-mode is a grid of up to gridSize x gridSize hints (selection keys a to z)
+     * on the active screen, and it stays in hint-mode after a selection.
+     * grid-mode is a 4 x 4 grid on the active screen.
+     */
+    public static Path hintAndGrid(int gridSize) throws IOException {
+        String sb = """
+                idle-mode.to.hint-mode=+f1
+                hint-mode.to.grid-mode=+f2
+                grid-mode.to.idle-mode=+f3
+                hint-mode.hint.type=grid
+                hint-mode.hint.grid-area=active-screen
+                hint-mode.hint.active-screen-grid-area-center=screen-center
+                hint-mode.hint.grid-max-row-count=%d
+                hint-mode.hint.grid-max-column-count=%d
+                hint-mode.hint.grid-cell-width=1
+                hint-mode.hint.grid-cell-height=1
+                hint-mode.hint.selection-keys=%s
+                hint-mode.hint.undo=backspace
+                grid-mode.grid.area=active-screen
+                grid-mode.grid.synchronization=mouse-and-grid-center-unsynchronized
+                grid-mode.grid.row-count=4
+                grid-mode.grid.column-count=4
+                grid-mode.grid.line-visible=true
+                grid-mode.mouse.initial-velocity=1600
+                grid-mode.mouse.max-velocity=2200
+                grid-mode.mouse.acceleration=1500
+                grid-mode.wheel.initial-velocity=1500
+                grid-mode.wheel.max-velocity=2000
+                grid-mode.wheel.acceleration=500
+                """.formatted(gridSize, gridSize, String.join(" ", LETTERS));
+        return write("hint-and-grid-" + gridSize, sb);
+    }
+
+    /**
+     * hintModeCount hint modes, each with a grid of up to gridSize x gridSize hints on
+     * every screen. The modes only differ by the order of their selection keys.
+     * hint-0-mode is switched to from the idle mode, and each hint mode switches to the
+     * next one.
+     */
+    public static Path allScreensHintGrid(int gridSize, int hintModeCount)
+            throws IOException {
+        StringBuilder sb = new StringBuilder("idle-mode.to.hint-0-mode=+f1\n");
+        for (int modeIndex = 0; modeIndex < hintModeCount; modeIndex++) {
+            String mode = "hint-" + modeIndex + "-mode";
+            List<String> selectionKeys = new ArrayList<>(LETTERS);
+            Collections.rotate(selectionKeys, -modeIndex);
+            sb.append(mode).append(".to.").append(modeIndex == hintModeCount - 1 ?
+                    "idle-mode" : "hint-" + (modeIndex + 1) + "-mode").append("=+f2\n");
+            sb.append(mode).append(".hint.type=grid\n");
+            sb.append(mode).append(".hint.grid-area=all-screens\n");
+            sb.append(mode).append(".hint.grid-max-row-count=").append(gridSize)
+              .append('\n');
+            sb.append(mode).append(".hint.grid-max-column-count=").append(gridSize)
+              .append('\n');
+            sb.append(mode).append(".hint.grid-cell-width=1\n");
+            sb.append(mode).append(".hint.grid-cell-height=1\n");
+            sb.append(mode).append(".hint.selection-keys=")
+              .append(String.join(" ", selectionKeys)).append('\n');
+        }
+        return write("all-screens-hint-grid-" + gridSize, sb.toString());
+    }
+
+    private static Path write(String name, String content) throws IOException {
+        Path directory = Files.createTempDirectory("mousemaster-benchmark");
+        Path path = directory.resolve(name + ".properties");
+        Files.writeString(path, content);
+        path.toFile().deleteOnExit();
+        directory.toFile().deleteOnExit();
+        return path;
+    }
+
+}
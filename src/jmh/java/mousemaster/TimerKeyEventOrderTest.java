@@ -0,0 +1,74 @@
+package mousemaster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Regression test of the order of the timers and the key events when the main loop wakes
+ * up late (see {@link SimulatedPlatform#setWakeUpLatenessNanos}): a key pressed 1 ms
+ * before a mode timeout deadline, but dispatched after it, must be handled in the mode
+ * it was pressed in, and a key pressed 1 ms after the deadline in the mode switched to
+ * by the timeout (see {@link SyntheticConfigurations#modeTimeout}).
+ * ./mvnw -Pbenchmark compile exec:exec@timer-order
+ */
+public class TimerKeyEventOrderTest {
+
+    private static final Logger logger =
+            LoggerFactory.getLogger(TimerKeyEventOrderTest.class);
+    private static final long MILLIS = 1_000_000L;
+    private static final long TIMEOUT_MILLIS = 1000;
+    private static final long WAKE_UP_LATENESS_NANOS = 5 * MILLIS;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path configurationPath = SyntheticConfigurations.modeTimeout(TIMEOUT_MILLIS);
+        check(configurationPath, -1, "timeout-mode", true);
+        check(configurationPath, 1, "idle-mode", false);
+        logger.info("Key events 1 ms before and after a mode timeout deadline are handled " +
+                    "in the right mode when the main loop wakes up " +
+                    WAKE_UP_LATENESS_NANOS / MILLIS + " ms late");
+    }
+
+    /**
+     * +a switches to timeout-mode at 1 s (handled at 1 s + the lateness, when the timeout
+     * timer is scheduled), and +b is pressed deadlineOffsetMillis after the deadline.
+     */
+    private static void check(Path configurationPath, long deadlineOffsetMillis,
+                              String expectedModeName, boolean expectedEaten)
+            throws IOException, InterruptedException {
+        VirtualClock clock = new VirtualClock(Instant.EPOCH);
+        long switchNanoTime = 1000 * MILLIS;
+        long deadline = switchNanoTime + WAKE_UP_LATENESS_NANOS + TIMEOUT_MILLIS * MILLIS;
+        long bNanoTime = deadline + deadlineOffsetMillis * MILLIS;
+        SimulatedPlatform platform = new SimulatedPlatform(clock,
+                Set.of(new Screen(new Rectangle(0, 0, 1920, 1080), 96, 1)),
+                bNanoTime + 1000 * MILLIS);
+        platform.setWakeUpLatenessNanos(WAKE_UP_LATENESS_NANOS);
+        Key a = Key.ofName("a");
+        Key b = Key.ofName("b");
+        platform.scheduleKeyEvent(new KeyEvent.PressKeyEvent(switchNanoTime, a));
+        platform.scheduleKeyEvent(new KeyEvent.ReleaseKeyEvent(switchNanoTime + 50 * MILLIS, a));
+        platform.scheduleKeyEvent(new KeyEvent.PressKeyEvent(bNanoTime, b));
+        platform.scheduleKeyEvent(new KeyEvent.ReleaseKeyEvent(bNanoTime + 50 * MILLIS, b));
+        KeyEventRecorder recorder = new KeyEventRecorder(clock,
+                ByteBuffer.allocate(KeyEventRecorder.DEFAULT_CAPACITY));
+        new Mousemaster(configurationPath, platform, clock, recorder,
+                ComboEngine.AUTOMATON, new HintSelectionFrequencies(null)).run();
+        List<KeyEventLog.RecordedKeyEvent> keyEvents =
+                KeyEventLog.read(recorder.recordedBytes()).keyEvents();
+        KeyEventLog.RecordedKeyEvent bPress = keyEvents.get(2);
+        if (!bPress.event().key().equals(b) ||
+            !expectedModeName.equals(bPress.modeName()) || bPress.eaten() != expectedEaten)
+            throw new IllegalStateException(
+                    "+b pressed " + deadlineOffsetMillis +
+                    " ms after the mode timeout deadline: expected to be handled in " +
+                    expectedModeName + " (eaten: " + expectedEaten + "), got " + bPress);
+    }
+
+}
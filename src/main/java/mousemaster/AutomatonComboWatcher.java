@@ -0,0 +1,733 @@
+package mousemaster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * After warm-up, processing a key event does not allocate: the combo preparation,
+ * the active automaton nodes, the completed combos, the commands to run and the
+ * combos waiting for their last move to complete are all kept in reused buffers.
+ * The decisions are recorded in a {@link ComboFlightRecorder} instead of being logged.
+ */
+public class AutomatonComboWatcher implements ComboWatcher {
+
+    private static final Logger logger =
+            LoggerFactory.getLogger(AutomatonComboWatcher.class);
+    /**
+     * A key event processed slower than this dumps the flight recorder (at most once per
+     * MIN_SLOW_KEY_EVENT_DUMP_INTERVAL_NANOS).
+     */
+    private static final long SLOW_KEY_EVENT_NANOS = 10_000_000L;
+    private static final long MIN_SLOW_KEY_EVENT_DUMP_INTERVAL_NANOS = 60_000_000_000L;
+
+    private final Clock clock;
+    private final TimerService timerService;
+    private final CommandRunner commandRunner;
+    private final KeyOrdinals keyOrdinals;
+    private final KeySet mustRemainPressedComboPreconditionKeys;
+    private final KeySet mustRemainUnpressedComboPreconditionKeys;
+    private final Map<String, ComboAutomaton> comboAutomatonByModeName;
+    private final Map<String, ActiveNodes> activeNodesByModeName;
+    private Mode currentMode;
+    private ComboAutomaton currentComboAutomaton;
+    private ActiveNodes currentActiveNodes;
+    private boolean modeJustTimedOut;
+    private final ComboPreparation comboPreparation = ComboPreparation.empty();
+    /**
+     * Incremented each time comboPreparation is emptied.
+     */
+    private int comboPreparationGeneration;
+    /**
+     * Key ordinal of the last event of comboPreparation, -1 if it is empty.
+     */
+    private int lastEventKeyOrdinal = -1;
+    /**
+     * Sized for the mode with the most combos.
+     */
+    private final ComboAutomaton.Matches matches;
+    /**
+     * In nanoseconds (see {@link ComboMoveDuration}).
+     */
+    private long previousComboMoveMinDuration;
+    private long previousComboMoveMaxDuration = ComboMoveDuration.INFINITE;
+    private final CompletedCombos completedCombos;
+    private final List<Command> commandsToRun = new ArrayList<>();
+    private final CombosWaitingForLastMoveToComplete combosWaitingForLastMoveToComplete =
+            new CombosWaitingForLastMoveToComplete();
+    private final List<ComboWaitingForLastMoveToComplete> expiredCombosWaitingForLastMoveToComplete = new ArrayList<>();
+    /**
+     * Scheduled at the earliest deadline of combosWaitingForLastMoveToComplete.
+     * The main loop sleeps until that deadline (see {@link TimerService#nextDeadline()}).
+     */
+    private final TimerService.Timer lastMoveTimer;
+    private final ComboFlightRecorder flightRecorder;
+    private boolean slowKeyEventDumped;
+    private long slowKeyEventDumpNanoTime;
+
+    private final KeySet currentlyPressedComboSequenceKeys;
+    private final KeySet currentlyPressedComboPreconditionKeys;
+    /**
+     * Does not depend on the mode: it is computed once per event (see
+     * {@link #updateCurrentlyPressedMustRemainPressedComboPreconditionKeysNotAlreadyEaten})
+     * and shared by the passes of that event.
+     */
+    private final KeySet currentlyPressedMustRemainPressedComboPreconditionKeysNotAlreadyEaten;
+
+    public AutomatonComboWatcher(ModeMap modeMap, KeyOrdinals keyOrdinals, Clock clock,
+                                 TimerService timerService, CommandRunner commandRunner,
+                                 KeySet mustRemainUnpressedComboPreconditionKeys,
+                                 KeySet mustRemainPressedComboPreconditionKeys) {
+        this.keyOrdinals = keyOrdinals;
+        this.clock = clock;
+        this.timerService = timerService;
+        this.commandRunner = commandRunner;
+        this.mustRemainUnpressedComboPreconditionKeys =
+                mustRemainUnpressedComboPreconditionKeys;
+        this.mustRemainPressedComboPreconditionKeys =
+                mustRemainPressedComboPreconditionKeys;
+        currentlyPressedComboSequenceKeys = new KeySet(keyOrdinals);
+        currentlyPressedComboPreconditionKeys = new KeySet(keyOrdinals);
+        currentlyPressedMustRemainPressedComboPreconditionKeysNotAlreadyEaten =
+                new KeySet(keyOrdinals);
+        CommandOrdinals commandOrdinals = CommandOrdinals.of(modeMap);
+        completedCombos = new CompletedCombos(commandOrdinals.size());
+        // The modes are compiled in parallel: the keys of the combos already have an
+        // ordinal (see KeyOrdinals#of), so keyOrdinals is only read.
+        comboAutomatonByModeName = modeMap.modes()
+                                          .parallelStream()
+                                          .collect(Collectors.toMap(Mode::name,
+                                                  mode -> ComboAutomaton.of(
+                                                          mode.comboMap(), keyOrdinals,
+                                                          commandOrdinals)));
+        activeNodesByModeName = new HashMap<>();
+        for (Mode mode : modeMap.modes()) {
+            activeNodesByModeName.put(mode.name(), new ActiveNodes());
+            logAmbiguities(mode, comboAutomatonByModeName.get(mode.name()));
+        }
+        matches = new ComboAutomaton.Matches(comboAutomatonByModeName.values()
+                                                                     .stream()
+                                                                     .mapToInt(automaton -> automaton.combos().size())
+                                                                     .max()
+                                                                     .orElse(0));
+        this.lastMoveTimer = timerService.newTimer(this::completeCombosWaitingForLastMove);
+        flightRecorder = new ComboFlightRecorder(keyOrdinals, commandOrdinals,
+                comboAutomatonByModeName);
+    }
+
+    /**
+     * Overlapping combos all run (the longest one last), and combos whose last move has a
+     * min duration delay their commands: neither is an error, but it may be unexpected.
+     */
+    private static void logAmbiguities(Mode mode, ComboAutomaton comboAutomaton) {
+        for (ComboAutomaton.ComboOverlap overlap : comboAutomaton.overlaps()) {
+            if (overlap.sameSequence())
+                logger.info("In " + mode.name() + ", combos " + overlap.suffixCombo() +
+                            " and " + overlap.combo() +
+                            " have the same sequence and are both completed when both preconditions are satisfied");
+            else
+                logger.info("In " + mode.name() + ", combo " + overlap.suffixCombo() +
+                            " is also completed by the last events of combo " +
+                            overlap.combo());
+        }
+        if (!logger.isDebugEnabled())
+            return;
+        for (Combo combo : comboAutomaton.combosWaitingForLastMove())
+            logger.debug("In " + mode.name() + ", combo " + combo +
+                         " waits for the min duration of its last move before completing");
+    }
+
+    private void completeCombosWaitingForLastMove() {
+        // For a given waiting combo, we know that its precondition has to be satisfied still, because otherwise it
+        // would mean that currentlyPressedComboPreconditionKeys has changed. But when currentlyPressedComboPreconditionKeys is changed,
+        // combosWaitingForLastMoveToComplete is always reset.
+        long now = clock.nanoTime();
+        flightRecorder.start(now, 0, -1, ComboFlightRecorder.LAST_MOVE_COMPLETED,
+                currentMode.name());
+        completedCombos.clear();
+        combosWaitingForLastMoveToComplete.removeExpired(now,
+                expiredCombosWaitingForLastMoveToComplete);
+        for (int expiredComboIndex = 0;
+             expiredComboIndex < expiredCombosWaitingForLastMoveToComplete.size();
+             expiredComboIndex++) {
+            ComboWaitingForLastMoveToComplete comboWaitingForLastMoveToComplete =
+                    expiredCombosWaitingForLastMoveToComplete.get(expiredComboIndex);
+            completedCombos.add(comboWaitingForLastMoveToComplete.combo,
+                    comboWaitingForLastMoveToComplete.commands);
+        }
+        // The expired entries are reused by the next additions.
+        expiredCombosWaitingForLastMoveToComplete.clear();
+        completedCombos.longestComboCommandsLastAndDeduplicate(commandsToRun,
+                flightRecorder);
+        flightRecorder.end(0, clock.nanoTime());
+        Mode beforeMode = currentMode;
+        for (int commandIndex = 0; commandIndex < commandsToRun.size(); commandIndex++)
+            commandRunner.run(commandsToRun.get(commandIndex));
+        scheduleLastMoveTimer();
+        if (currentMode != beforeMode) {
+            updateCurrentlyPressedMustRemainPressedComboPreconditionKeysNotAlreadyEaten(-1);
+            processKeyEventForCurrentMode(null, -1, true);
+        }
+    }
+
+    private void scheduleLastMoveTimer() {
+        if (combosWaitingForLastMoveToComplete.isEmpty()) {
+            timerService.cancel(lastMoveTimer);
+            return;
+        }
+        long nextDeadline = combosWaitingForLastMoveToComplete.nextDeadline();
+        if (!lastMoveTimer.scheduled() || lastMoveTimer.deadline() != nextDeadline)
+            timerService.schedule(lastMoveTimer, nextDeadline);
+    }
+
+    @Override
+    public PressKeyEventProcessing keyEvent(KeyEvent event) {
+        long startNanoTime = clock.nanoTime();
+        modeJustTimedOut = false;
+        int keyOrdinal = keyOrdinals.ordinal(event.key());
+        boolean isComboPreconditionKey =
+                mustRemainUnpressedComboPreconditionKeys.contains(keyOrdinal) ||
+                mustRemainPressedComboPreconditionKeys.contains(keyOrdinal);
+        if (event.isRelease()) {
+            // The corresponding press event was either part of a combo sequence or part of a combo precondition,
+            // otherwise this method would not have been called.
+            currentlyPressedComboSequenceKeys.remove(keyOrdinal);
+            currentlyPressedComboPreconditionKeys.remove(keyOrdinal);
+        }
+        else {
+            if (isComboPreconditionKey) {
+                currentlyPressedComboPreconditionKeys.add(keyOrdinal);
+            }
+        }
+        if (!combosWaitingForLastMoveToComplete.isEmpty()) {
+            combosWaitingForLastMoveToComplete.clear();
+            timerService.cancel(lastMoveTimer);
+        }
+        KeyEvent previousEvent = comboPreparation.events().isEmpty() ? null :
+                comboPreparation.events().getLast();
+        if (previousEvent != null &&
+            !ComboMoveDuration.satisfied(previousComboMoveMinDuration,
+                    previousComboMoveMaxDuration, previousEvent.time(), event.time()))
+            emptyComboPreparation();
+        comboPreparation.events().add(event);
+        lastEventKeyOrdinal = keyOrdinal;
+        // The passes of this event share it: the event's key is excluded, and the first pass
+        // can only add the event's key to currentlyPressedComboSequenceKeys.
+        updateCurrentlyPressedMustRemainPressedComboPreconditionKeysNotAlreadyEaten(
+                keyOrdinal);
+        Mode beforeMode = currentMode;
+        PressKeyEventProcessing processing =
+                processKeyEventForCurrentMode(event, keyOrdinal, false);
+        boolean partOfComboSequence = processing.isPartOfComboSequence();
+        boolean mustBeEaten = processing.mustBeEaten();
+        if (currentMode != beforeMode) {
+            // Second pass to give a chance to new mode's combos to run now.
+            processing = processKeyEventForCurrentMode(event, keyOrdinal, true);
+            partOfComboSequence |= processing.isPartOfComboSequence();
+            mustBeEaten |= processing.mustBeEaten();
+        }
+        if (!partOfComboSequence) {
+            emptyComboPreparation();
+        }
+        dumpIfSlow(startNanoTime);
+        if (event.isRelease())
+            return null;
+        if (partOfComboSequence)
+            return PressKeyEventProcessing.partOfComboSequence(mustBeEaten);
+        boolean partOfComboPreconditionOnly = isComboPreconditionKey;
+        return partOfComboPreconditionOnly ?
+                PressKeyEventProcessing.partOfComboPreconditionOnly() :
+                PressKeyEventProcessing.unhandled();
+    }
+
+    private void dumpIfSlow(long startNanoTime) {
+        long endNanoTime = clock.nanoTime();
+        long processingNanos = endNanoTime - startNanoTime;
+        if (processingNanos < SLOW_KEY_EVENT_NANOS ||
+            slowKeyEventDumped && endNanoTime - slowKeyEventDumpNanoTime <
+                                  MIN_SLOW_KEY_EVENT_DUMP_INTERVAL_NANOS)
+            return;
+        slowKeyEventDumped = true;
+        slowKeyEventDumpNanoTime = endNanoTime;
+        flightRecorder.dump("slow key event: " + processingNanos / 1000 + "us");
+    }
+
+    @Override
+    public void dumpComboDecisions() {
+        flightRecorder.dump("requested");
+    }
+
+    /**
+     * @param eventKeyOrdinal -1 if there is no event
+     */
+    private void updateCurrentlyPressedMustRemainPressedComboPreconditionKeysNotAlreadyEaten(
+            int eventKeyOrdinal) {
+        currentlyPressedMustRemainPressedComboPreconditionKeysNotAlreadyEaten.set(
+                currentlyPressedComboPreconditionKeys);
+        currentlyPressedMustRemainPressedComboPreconditionKeysNotAlreadyEaten.retainAll(
+                mustRemainPressedComboPreconditionKeys);
+        currentlyPressedMustRemainPressedComboPreconditionKeysNotAlreadyEaten.removeAll(
+                currentlyPressedComboSequenceKeys);
+        if (eventKeyOrdinal != -1)
+            currentlyPressedMustRemainPressedComboPreconditionKeysNotAlreadyEaten.remove(
+                    eventKeyOrdinal);
+    }
+
+    /**
+     * Expects {@link #currentlyPressedMustRemainPressedComboPreconditionKeysNotAlreadyEaten}
+     * to be up-to-date.
+     * @param eventKeyOrdinal -1 if event is null
+     */
+    private PressKeyEventProcessing processKeyEventForCurrentMode(KeyEvent event,
+                                                                  int eventKeyOrdinal,
+                                                                  boolean ignoreSwitchModeCommands) {
+        flightRecorder.start(clock.nanoTime(), event == null ? 0 : event.time(),
+                eventKeyOrdinal,
+                (event != null && event.isPress() ? ComboFlightRecorder.PRESS : 0) |
+                (ignoreSwitchModeCommands ? ComboFlightRecorder.SECOND_PASS : 0),
+                currentMode.name());
+        boolean mustBeEaten = false;
+        boolean partOfComboSequence = false;
+        completedCombos.clear();
+        KeySet currentlyPressedMustRemainPressedComboPreconditionKeysNotAlreadyEaten =
+                this.currentlyPressedMustRemainPressedComboPreconditionKeysNotAlreadyEaten;
+        boolean switchModeIgnored = false;
+        boolean newComboDurationSet = false;
+        long newComboMinDuration = 0, newComboMaxDuration = 0;
+        updateMatches();
+        // When a combo matches, its current move matched the last event.
+        int lastEventKeyOrdinal = this.lastEventKeyOrdinal;
+        // Only the matching moves of an undecided key are looked at.
+        ComboAutomaton.PressEatDecision pressEatDecision;
+        if (lastEventKeyOrdinal == -1 ||
+                 comboPreparation.events().getLast().isRelease())
+            pressEatDecision = ComboAutomaton.PressEatDecision.PASSED;
+        else
+            pressEatDecision = currentComboAutomaton.pressEatDecision(lastEventKeyOrdinal);
+        int otherMatchIndex = 0;
+        List<Combo> combos = currentComboAutomaton.combos();
+        // Non-candidate combos have no matching move and a non-empty sequence:
+        // they would not change anything.
+        for (int comboIndex = matches.nextCandidateComboIndex(0); comboIndex != -1;
+             comboIndex = matches.nextCandidateComboIndex(comboIndex + 1)) {
+            // When a precondition key is pressed, and another key is pressed,
+            // that other key should be processed only for combos that
+            // contains the pressed precondition key.
+            Combo combo = combos.get(comboIndex);
+            ComboPreconditionKeySets preconditionKeySets =
+                    currentComboAutomaton.preconditionKeySets(comboIndex);
+            int matchingMoveCount = matches.matchingMoveCount(comboIndex);
+            // Other matches of the alias combo: their moves are handled like the
+            // current move.
+            int firstOtherMatchIndex = otherMatchIndex;
+            while (otherMatchIndex < matches.otherMatchCount() &&
+                   matches.otherComboIndex(otherMatchIndex) == comboIndex)
+                otherMatchIndex++;
+            ComboMove currentMove = matchingMoveCount == 0 ? null :
+                    combo.sequence().moves().get(matchingMoveCount - 1);
+            // releaseCombo == the combo is not just a mustRemainUnpressed combo (it has a sequence or a mustRemainPressed precondition)
+            boolean releaseCombo = currentComboAutomaton.releaseCombo(comboIndex); // This condition (check sequence is all releases)
+            // could be removed to not execute combos that have a sequence and whose mustRemainPress condition is not satisfied.
+            if (!currentlyPressedMustRemainPressedComboPreconditionKeysNotAlreadyEaten.isEmpty()
+                // If currentlyPressedMustRemainPressedComboPreconditionKeysNotAlreadyEaten is not part of the combo's mustRemainPressedKeySets...
+                && !preconditionKeySets.anyMustRemainPressedKeySetContainsAll(
+                        currentlyPressedMustRemainPressedComboPreconditionKeysNotAlreadyEaten) &&
+                // ...and the combo is not a release combo
+                !releaseCombo &&
+                // ...and the combo's current move is not a press of that currentlyPressedComboPreconditionKey...
+                (currentMove == null ||
+                 !currentlyPressedMustRemainPressedComboPreconditionKeysNotAlreadyEaten.containsOnly(
+                         lastEventKeyOrdinal))) {
+                // ...Then it's as if the currently pressed precondition key is an unhandled key:
+                // other keys that are pressed should not even be considered but passed onto other apps.
+                // logger.info("currentlyPressedMustRemainPressedComboPreconditionKeysNotAlreadyEaten = " +
+                //             currentlyPressedMustRemainPressedComboPreconditionKeysNotAlreadyEaten +
+                //             ", skipping combo: " + combo);
+                continue;
+            }
+            if (matchingMoveCount == 0) {
+                if (combo.sequence().moves().isEmpty() &&
+                    !preconditionKeySets.isEmpty()) {
+                    if (!preconditionKeySets.satisfied(
+                            currentlyPressedComboPreconditionKeys)) {
+                        continue;
+                    }
+                }
+            }
+            else {
+                if (!preconditionKeySets.isEmpty()) {
+                    if (!preconditionKeySets.satisfied(
+                            currentlyPressedComboPreconditionKeys))
+                        continue;
+                }
+                partOfComboSequence = true;
+                for (int matchIndex = firstOtherMatchIndex - 1;
+                     matchIndex < otherMatchIndex; matchIndex++) {
+                    ComboMove matchMove = matchIndex == firstOtherMatchIndex - 1 ?
+                            currentMove : combo.sequence()
+                                               .moves()
+                                               .get(matches.otherMatchingMoveCount(
+                                                       matchIndex) - 1);
+                    if (pressEatDecision == ComboAutomaton.PressEatDecision.UNDECIDED)
+                        mustBeEaten |= matchMove instanceof ComboMove.PressComboMove pressComboMove &&
+                                       pressComboMove.eventMustBeEaten();
+                    if (!newComboDurationSet) {
+                        newComboDurationSet = true;
+                        newComboMinDuration = matchMove.duration().minNanos();
+                        newComboMaxDuration = matchMove.duration().maxNanos();
+                    }
+                    else {
+                        newComboMinDuration = Math.min(newComboMinDuration,
+                                matchMove.duration().minNanos());
+                        newComboMaxDuration = Math.max(newComboMaxDuration,
+                                matchMove.duration().maxNanos());
+                    }
+                }
+            }
+            boolean preparationComplete =
+                    matchingMoveCount == combo.sequence().moves().size();
+            if (!preparationComplete)
+                continue;
+            flightRecorder.combo(comboIndex);
+            ComboAutomaton.ComboCommands commands =
+                    currentComboAutomaton.commands(comboIndex);
+            if (ignoreSwitchModeCommands &&
+                currentComboAutomaton.commandsIgnoringSwitchMode(comboIndex)
+                                     .commands()
+                                     .size() != commands.commands().size()) {
+                // The mode was just changed.
+                switchModeIgnored = true;
+                commands = currentComboAutomaton.commandsIgnoringSwitchMode(comboIndex);
+            }
+            ComboMove comboLastMove = combo.sequence().moves().isEmpty() ? null :
+                    combo.sequence().moves().getLast();
+            if (comboLastMove != null &&
+                comboLastMove.duration().minNanos() != 0) {
+                combosWaitingForLastMoveToComplete.add(combo, commands,
+                        clock.nanoTime() + comboLastMove.duration().minNanos());
+            }
+            else {
+                completedCombos.add(combo, commands);
+            }
+        }
+        if (partOfComboSequence &&
+            pressEatDecision == ComboAutomaton.PressEatDecision.EATEN)
+            mustBeEaten = true;
+        if (newComboDurationSet) {
+            previousComboMoveMinDuration = newComboMinDuration;
+            previousComboMoveMaxDuration = newComboMaxDuration;
+        }
+        scheduleLastMoveTimer();
+        completedCombos.longestComboCommandsLastAndDeduplicate(commandsToRun,
+                flightRecorder);
+        flightRecorder.end(
+                (partOfComboSequence ? ComboFlightRecorder.PART_OF_COMBO_SEQUENCE : 0) |
+                (mustBeEaten ? ComboFlightRecorder.EATEN : 0) |
+                (switchModeIgnored ? ComboFlightRecorder.SWITCH_MODE_IGNORED : 0),
+                clock.nanoTime());
+        for (int commandIndex = 0; commandIndex < commandsToRun.size(); commandIndex++)
+            commandRunner.run(commandsToRun.get(commandIndex));
+        if (event != null && event.isPress()) {
+            if (partOfComboSequence)
+                currentlyPressedComboSequenceKeys.add(eventKeyOrdinal);
+        }
+        if (partOfComboSequence)
+            return PressKeyEventProcessing.partOfComboSequence(mustBeEaten);
+        return PressKeyEventProcessing.unhandled();
+    }
+
+    /**
+     * Equivalent to calling {@link ComboPreparation#matchingMoveCount} for each single key
+     * combo that the combos of the current mode stand for (see
+     * {@link ComboSequence#expand}). The active nodes of the current mode are advanced by
+     * the events added to the preparation since they were last updated (one event, or a
+     * few when switching back to a mode). For a new preparation, they are recomputed from
+     * the last events of the preparation.
+     */
+    private void updateMatches() {
+        List<KeyEvent> events = comboPreparation.events();
+        ActiveNodes activeNodes = currentActiveNodes;
+        if (activeNodes.comboPreparationGeneration != comboPreparationGeneration ||
+            activeNodes.eventCount > events.size()) {
+            currentComboAutomaton.activeNodes(events, activeNodes.nodes,
+                    activeNodes.nextNodes);
+        }
+        else {
+            for (int eventIndex = activeNodes.eventCount; eventIndex < events.size();
+                 eventIndex++) {
+                // The ordinal of the last event's key is already known.
+                int keyOrdinal = eventIndex == events.size() - 1 ? lastEventKeyOrdinal :
+                        keyOrdinals.ordinal(events.get(eventIndex).key());
+                currentComboAutomaton.advance(activeNodes.nodes, events, eventIndex,
+                        keyOrdinal, activeNodes.nextNodes);
+                List<ComboAutomaton.Node> previousNodes = activeNodes.nodes;
+                activeNodes.nodes = activeNodes.nextNodes;
+                activeNodes.nextNodes = previousNodes;
+            }
+        }
+        activeNodes.comboPreparationGeneration = comboPreparationGeneration;
+        activeNodes.eventCount = events.size();
+        currentComboAutomaton.matches(activeNodes.nodes, events, matches);
+    }
+
+    private void emptyComboPreparation() {
+        comboPreparation.events().clear();
+        comboPreparationGeneration++;
+        lastEventKeyOrdinal = -1;
+    }
+
+    /**
+     * Active nodes of a mode's automaton after the first eventCount events of the
+     * comboPreparation of generation comboPreparationGeneration. Each mode keeps its own
+     * so that a mode switched back to within the same preparation does not start over.
+     */
+    private static class ActiveNodes {
+
+        private List<ComboAutomaton.Node> nodes = new ArrayList<>();
+        private List<ComboAutomaton.Node> nextNodes = new ArrayList<>();
+        private int comboPreparationGeneration = -1;
+        private int eventCount;
+
+    }
+
+    /**
+     * Assuming the following configuration:
+     * - +up: start move up
+     * - -up|+up -up +up: stop move up
+     * - +up -up +up: start wheel up
+     * When up is pressed, the move starts. Then, when up is released then pressed,
+     * the wheel starts.
+     * The 3 combos are completed, but we ultimately want the move to stop,
+     * i.e. the stop move command (+up -up +up) should be run after the
+     * start move command (+up).
+     * Longest combos "have the last word".
+     * Also deduplicate commands: if start-move-up is +up|#rightctrl +up: holding rightctrl
+     * then up should not trigger two commands.
+     * - Move the Switch commands last: useful for saving a mouse position then switching to position-history mode
+     * (the command ranks, see {@link ComboAutomaton.ComboCommands}).
+     * The completed combos are kept in reused arrays: sorting is a (stable) insertion
+     * sort on the sequence sizes, since there are only a few completed combos per event.
+     * Deduplication uses the command ordinals and a bitmask.
+     */
+    private static class CompletedCombos {
+
+        private Combo[] combos = new Combo[8];
+        private ComboAutomaton.ComboCommands[] commandsByCombo =
+                new ComboAutomaton.ComboCommands[8];
+        private int size;
+        /**
+         * Ordinals of the commands already added to the commands to run.
+         */
+        private final long[] addedCommandOrdinals;
+
+        CompletedCombos(int commandCount) {
+            addedCommandOrdinals = new long[(commandCount + 63) >>> 6];
+        }
+
+        void clear() {
+            Arrays.fill(combos, 0, size, null);
+            Arrays.fill(commandsByCombo, 0, size, null);
+            size = 0;
+        }
+
+        void add(Combo combo, ComboAutomaton.ComboCommands commands) {
+            if (size == combos.length) {
+                combos = Arrays.copyOf(combos, size * 2);
+                commandsByCombo = Arrays.copyOf(commandsByCombo, size * 2);
+            }
+            int sequenceSize = combo.sequence().moves().size();
+            int index = size++;
+            while (index > 0 &&
+                   combos[index - 1].sequence().moves().size() > sequenceSize) {
+                combos[index] = combos[index - 1];
+                commandsByCombo[index] = commandsByCombo[index - 1];
+                index--;
+            }
+            combos[index] = combo;
+            commandsByCombo[index] = commands;
+        }
+
+        void longestComboCommandsLastAndDeduplicate(List<Command> commandsToRun,
+                                                    ComboFlightRecorder flightRecorder) {
+            commandsToRun.clear();
+            for (int rank = 0; rank <= ComboAutomaton.ComboCommands.MAX_RANK; rank++) {
+                for (int comboIndex = 0; comboIndex < size; comboIndex++) {
+                    ComboAutomaton.ComboCommands commands = commandsByCombo[comboIndex];
+                    int[] ordinals = commands.ordinals();
+                    int[] ranks = commands.ranks();
+                    for (int commandIndex = 0; commandIndex < ordinals.length;
+                         commandIndex++) {
+                        int ordinal = ordinals[commandIndex];
+                        long bit = 1L << ordinal;
+                        if (ranks[commandIndex] != rank ||
+                            (addedCommandOrdinals[ordinal >>> 6] & bit) != 0)
+                            continue;
+                        addedCommandOrdinals[ordinal >>> 6] |= bit;
+                        commandsToRun.add(commands.commands().get(commandIndex));
+                        flightRecorder.command(ordinal);
+                    }
+                }
+            }
+            for (int comboIndex = 0; comboIndex < size; comboIndex++) {
+                for (int ordinal : commandsByCombo[comboIndex].ordinals())
+                    addedCommandOrdinals[ordinal >>> 6] = 0;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(Arrays.copyOf(combos, size));
+        }
+
+    }
+
+    @Override
+    public void breakComboPreparation() {
+        if (logger.isDebugEnabled())
+            logger.debug("Breaking combos, comboPreparation = " + comboPreparation +
+                         ", combosWaitingForLastMoveToComplete = " +
+                         combosWaitingForLastMoveToComplete);
+        emptyComboPreparation();
+        combosWaitingForLastMoveToComplete.clear();
+        timerService.cancel(lastMoveTimer);
+    }
+
+    @Override
+    public void reset() {
+        breakComboPreparation();
+        // When a mode times out to a new mode, the currentlyPressedComboKeys should not be reset.
+        currentlyPressedComboSequenceKeys.clear();
+        currentlyPressedComboPreconditionKeys.clear();
+    }
+
+    @Override
+    public void modeChanged(Mode newMode) {
+        currentMode = newMode;
+        currentComboAutomaton = comboAutomatonByModeName.get(newMode.name());
+        currentActiveNodes = activeNodesByModeName.get(newMode.name());
+        if (modeJustTimedOut) {
+            modeJustTimedOut = false;
+            updateCurrentlyPressedMustRemainPressedComboPreconditionKeysNotAlreadyEaten(-1);
+            processKeyEventForCurrentMode(null, -1, false);
+        }
+    }
+
+    @Override
+    public void modeTimedOut() {
+        modeJustTimedOut = true;
+        breakComboPreparation();
+    }
+
+    /**
+     * Min-heap of the combos waiting for their last move to complete, ordered by
+     * deadline: the next deadline is the root, and removing the expired combos is
+     * O(log n) per expired combo. The entries are kept in the heap array when they are
+     * removed, and reused by the next additions: clearing is O(1).
+     */
+    private static class CombosWaitingForLastMoveToComplete {
+
+        private ComboWaitingForLastMoveToComplete[] heap =
+                new ComboWaitingForLastMoveToComplete[8];
+        private int size;
+        private long additionCount;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        /**
+         * Only if not empty.
+         */
+        long nextDeadline() {
+            return heap[0].deadline;
+        }
+
+        void add(Combo combo, ComboAutomaton.ComboCommands commands, long deadline) {
+            if (size == heap.length)
+                heap = Arrays.copyOf(heap, size * 2);
+            ComboWaitingForLastMoveToComplete comboWaitingForLastMoveToComplete =
+                    heap[size];
+            if (comboWaitingForLastMoveToComplete == null)
+                comboWaitingForLastMoveToComplete = new ComboWaitingForLastMoveToComplete();
+            comboWaitingForLastMoveToComplete.combo = combo;
+            comboWaitingForLastMoveToComplete.commands = commands;
+            comboWaitingForLastMoveToComplete.deadline = deadline;
+            comboWaitingForLastMoveToComplete.additionIndex = additionCount++;
+            int index = size++;
+            while (index > 0) {
+                int parentIndex = (index - 1) / 2;
+                if (heap[parentIndex].deadline - deadline <= 0)
+                    break;
+                heap[index] = heap[parentIndex];
+                index = parentIndex;
+            }
+            heap[index] = comboWaitingForLastMoveToComplete;
+        }
+
+        /**
+         * Removes the combos whose deadline is not after now, and adds them to expired
+         * in the order they were added (the order they completed in).
+         * The removed entries stay valid until the next addition.
+         */
+        void removeExpired(long now, List<ComboWaitingForLastMoveToComplete> expired) {
+            while (size != 0 && heap[0].deadline - now <= 0) {
+                ComboWaitingForLastMoveToComplete root = heap[0];
+                ComboWaitingForLastMoveToComplete last = heap[--size];
+                int index = 0;
+                while (true) {
+                    int childIndex = 2 * index + 1;
+                    if (childIndex >= size)
+                        break;
+                    if (childIndex + 1 < size &&
+                        heap[childIndex + 1].deadline - heap[childIndex].deadline < 0)
+                        childIndex++;
+                    if (last.deadline - heap[childIndex].deadline <= 0)
+                        break;
+                    heap[index] = heap[childIndex];
+                    index = childIndex;
+                }
+                heap[index] = last;
+                heap[size] = root;
+                int expiredIndex = expired.size();
+                expired.add(root);
+                while (expiredIndex > 0 &&
+                       expired.get(expiredIndex - 1).additionIndex > root.additionIndex) {
+                    expired.set(expiredIndex, expired.get(expiredIndex - 1));
+                    expiredIndex--;
+                }
+                expired.set(expiredIndex, root);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(Arrays.copyOf(heap, size));
+        }
+
+    }
+
+    /**
+     * Mutable so that it can be reused.
+     */
+    private static class ComboWaitingForLastMoveToComplete {
+
+        private Combo combo;
+        private ComboAutomaton.ComboCommands commands;
+        private long deadline;
+        private long additionIndex;
+
+        @Override
+        public String toString() {
+            return "ComboWaitingForLastMoveToComplete[combo=" + combo + ", commands=" +
+                   commands + ", deadline=" + deadline + "]";
+        }
+
+    }
+
+}
@@ -0,0 +1,22 @@
+package mousemaster;
+
+import java.time.Instant;
+
+/**
+ * The single time source of the runtime: the main loop, the timers, the combo
+ * durations and the key event times are all derived from it.
+ */
+public interface Clock {
+
+    /**
+     * Monotonic time in nanoseconds, with an arbitrary origin (like System.nanoTime()).
+     */
+    long nanoTime();
+
+    /**
+     * Wall-clock time, only for logging and recording: key events are timestamped with
+     * {@link #nanoTime()}.
+     */
+    Instant instant();
+
+}
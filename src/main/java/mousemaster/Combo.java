@@ -7,7 +7,7 @@ import java.util.stream.Collectors;
 
 public record Combo(ComboPrecondition precondition, ComboSequence sequence) {
 
-    public static List<Combo> of(String string, ComboMoveDuration defaultMoveDuration,
+    public static Combo of(String string, ComboMoveDuration defaultMoveDuration,
                            Map<String, Alias> aliases) {
         Matcher mustRemainUnpressedKeySetMatcher =
                 Pattern.compile("\\^\\{([^{}]+)\\}\\s*").matcher(string);
@@ -55,24 +55,17 @@ public record Combo(ComboPrecondition precondition, ComboSequence sequence) {
                     "^{" + mustRemainUnpressedKeySetString + "} _{" +
                     mustRemainPressedKeySetsString + "}");
         }
+        ComboSequence sequence;
         if (sequenceString.isEmpty())
-            return List.of(
-                    of(string, new ComboSequence(List.of()), mustRemainUnpressedKeySet,
-                            mustRemainUnpressedKeySetString, sequenceString,
-                            mustRemainPressedKeySets, mustRemainPressedKeySetsString));
-        else {
-            ExpandableSequence expandableSequence =
-                    ExpandableSequence.parseSequence(sequenceString, defaultMoveDuration,
-                            aliases);
-            List<ComboSequence> expandedSequences = expandableSequence.expand(aliases);
-            return expandedSequences.stream()
-                                    .map(sequence -> of(string, sequence,
-                                            mustRemainUnpressedKeySet,
-                                            mustRemainUnpressedKeySetString,
-                                            sequenceString, mustRemainPressedKeySets,
-                                            mustRemainPressedKeySetsString))
-                                    .toList();
-        }
+            sequence = new ComboSequence(List.of());
+        else
+            // Aliases are not expanded: the combo stays one combo whatever the number of
+            // keys of its aliases.
+            sequence = ExpandableSequence.parseSequence(sequenceString,
+                    defaultMoveDuration, aliases).toSequence(aliases);
+        return of(string, sequence, mustRemainUnpressedKeySet,
+                mustRemainUnpressedKeySetString, sequenceString, mustRemainPressedKeySets,
+                mustRemainPressedKeySetsString);
     }
 
     private static Combo of(String string, ComboSequence sequence,
@@ -81,8 +74,11 @@ public record Combo(ComboPrecondition precondition, ComboSequence sequence) {
                                       String sequenceString,
                                       Set<Set<Key>> mustRemainPressedKeySets,
                                       String mustRemainPressedKeySetsString) {
-        Set<Key> sequenceKeys =
-                sequence.moves().stream().map(ComboMove::key).collect(Collectors.toSet());
+        Set<Key> sequenceKeys = sequence.moves()
+                                        .stream()
+                                        .map(ComboMove::keys)
+                                        .flatMap(Collection::stream)
+                                        .collect(Collectors.toSet());
         if (mustRemainUnpressedKeySet.stream().anyMatch(sequenceKeys::contains))
             throw new IllegalArgumentException(
                     "There cannot be an overlap between must remain unpressed keys and combo sequence keys: " +
@@ -236,13 +232,13 @@ public record Combo(ComboPrecondition precondition, ComboSequence sequence) {
                 rightBraceExpected = false;
             }
             else if (character == '|' && !rightBraceExpected) {
-                combos.addAll(
+                combos.add(
                         of(multiComboString.substring(comboBeginIndex, charIndex).strip(),
                                 defaultMoveDuration, aliases));
                 comboBeginIndex = charIndex + 1;
             }
         }
-        combos.addAll(of(multiComboString.substring(comboBeginIndex).strip(),
+        combos.add(of(multiComboString.substring(comboBeginIndex).strip(),
                 defaultMoveDuration, aliases));
         return List.copyOf(combos);
     }
@@ -0,0 +1,801 @@
+package mousemaster;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * A mode's combo sequences compiled into a trie whose edges are combo moves.
+ * A node at depth k stands for the first k moves shared by one or more combos.
+ * After each preparation event, the active nodes are the prefixes that match the last
+ * events of the preparation: an event advances each active node (and the root) along
+ * the edges of its key and press/release, provided that the duration of the node's move
+ * is satisfied between the previous event and this event.
+ * An alias move is a single edge reachable from each key of the alias. If the alias
+ * already appears earlier in the prefix, the edge is only taken when the event's key is
+ * the key that matched that earlier move.
+ * The matching move count of a combo (see {@link ComboPreparation#matchingMoveCount})
+ * is then the depth of its deepest active node. An alias combo can have other matching
+ * move counts (see {@link Matches}).
+ * The candidate combos of an event are the combos of the active nodes (the combos that
+ * go through an edge of the event's key) and the combos without a sequence (precondition
+ * only combos): the other combos have no matching move and cannot complete, so they
+ * do not need to be looked at.
+ * Whether a press that is part of a combo sequence must be eaten is precomputed for each
+ * key (see {@link PressEatDecision}).
+ */
+public class ComboAutomaton {
+
+    private final KeyOrdinals keyOrdinals;
+    private final List<Combo> combos;
+    private final List<ComboCommands> commandsByComboIndex;
+    private final List<ComboCommands> commandsIgnoringSwitchModeByComboIndex;
+    private final List<ComboPreconditionKeySets> preconditionKeySetsByComboIndex;
+    private final boolean[] releaseComboByComboIndex;
+    /**
+     * Bitmask of the combos whose sequence is empty.
+     */
+    private final long[] preconditionOnlyComboIndexes;
+    private final Node root = new Node(0, null, -1);
+    /**
+     * All the nodes except the root, in creation order.
+     */
+    private final List<Node> nodes = new ArrayList<>();
+    private final int maxDepth;
+    /**
+     * Indexed by key ordinal.
+     */
+    private final PressEatDecision[] pressEatDecisionByKeyOrdinal;
+
+    private ComboAutomaton(List<Combo> combos, List<List<Command>> commandsByComboIndex,
+                           KeyOrdinals keyOrdinals, CommandOrdinals commandOrdinals) {
+        this.keyOrdinals = keyOrdinals;
+        this.combos = combos;
+        this.commandsByComboIndex =
+                commandsByComboIndex.stream()
+                                    .map(commands -> ComboCommands.of(commands,
+                                            commandOrdinals))
+                                    .toList();
+        commandsIgnoringSwitchModeByComboIndex =
+                commandsByComboIndex.stream()
+                                    .map(commands -> commands.stream()
+                                                             .filter(Predicate.not(
+                                                                     Command.SwitchMode.class::isInstance))
+                                                             .toList())
+                                    .map(commands -> ComboCommands.of(commands,
+                                            commandOrdinals))
+                                    .toList();
+        releaseComboByComboIndex = new boolean[combos.size()];
+        preconditionOnlyComboIndexes = new long[Matches.wordCount(combos.size())];
+        for (int comboIndex = 0; comboIndex < combos.size(); comboIndex++) {
+            Combo combo = combos.get(comboIndex);
+            releaseComboByComboIndex[comboIndex] =
+                    combo.precondition().mustRemainPressedKeySets().isEmpty() &&
+                    combo.sequence().moves().stream().allMatch(ComboMove::isRelease);
+            if (combo.sequence().moves().isEmpty())
+                preconditionOnlyComboIndexes[comboIndex >>> 6] |= 1L << comboIndex;
+        }
+        preconditionKeySetsByComboIndex = combos.stream()
+                                                .map(combo -> ComboPreconditionKeySets.of(
+                                                        combo.precondition(),
+                                                        keyOrdinals))
+                                                .toList();
+        int maxDepth = 0;
+        Map<List<ComboMove>, Node> nodeByMoves = new HashMap<>();
+        Map<Node, List<Integer>> comboIndexesByNode = new HashMap<>();
+        Map<Node, List<Integer>> aliasComboIndexesByNode = new HashMap<>();
+        for (int comboIndex = 0; comboIndex < combos.size(); comboIndex++) {
+            List<ComboMove> moves = combos.get(comboIndex).sequence().moves();
+            maxDepth = Math.max(maxDepth, moves.size());
+            boolean aliasCombo = moves.stream().anyMatch(ComboMove::isAliasMove);
+            Node parent = root;
+            for (int moveIndex = 0; moveIndex < moves.size(); moveIndex++) {
+                List<ComboMove> prefix = List.copyOf(moves.subList(0, moveIndex + 1));
+                Node node = nodeByMoves.get(prefix);
+                if (node == null) {
+                    node = new Node(moveIndex + 1, moves.get(moveIndex),
+                            firstAliasMoveIndex(moves, moveIndex));
+                    nodeByMoves.put(prefix, node);
+                    nodes.add(node);
+                    parent.addChild(node, keyOrdinals);
+                }
+                comboIndexesByNode.computeIfAbsent(node, n -> new ArrayList<>())
+                                  .add(comboIndex);
+                if (aliasCombo)
+                    aliasComboIndexesByNode.computeIfAbsent(node, n -> new ArrayList<>())
+                                           .add(comboIndex);
+                parent = node;
+            }
+        }
+        comboIndexesByNode.forEach((node, comboIndexes) -> node.comboIndexes =
+                comboIndexes.stream().mapToInt(Integer::intValue).toArray());
+        aliasComboIndexesByNode.forEach((node, comboIndexes) -> node.aliasComboIndexes =
+                comboIndexes.stream().mapToInt(Integer::intValue).toArray());
+        this.maxDepth = maxDepth;
+        pressEatDecisionByKeyOrdinal = new PressEatDecision[keyOrdinals.size()];
+        Arrays.fill(pressEatDecisionByKeyOrdinal, PressEatDecision.PASSED);
+        boolean[] pressedKeyOrdinals = new boolean[keyOrdinals.size()];
+        for (Node node : nodes) {
+            if (!(node.move instanceof ComboMove.PressComboMove pressMove))
+                continue;
+            PressEatDecision decision = pressMove.eventMustBeEaten() ?
+                    PressEatDecision.EATEN : PressEatDecision.PASSED;
+            for (Key key : pressMove.keys()) {
+                int keyOrdinal = keyOrdinals.ordinal(key);
+                if (!pressedKeyOrdinals[keyOrdinal]) {
+                    pressedKeyOrdinals[keyOrdinal] = true;
+                    pressEatDecisionByKeyOrdinal[keyOrdinal] = decision;
+                }
+                else if (pressEatDecisionByKeyOrdinal[keyOrdinal] != decision)
+                    pressEatDecisionByKeyOrdinal[keyOrdinal] = PressEatDecision.UNDECIDED;
+            }
+        }
+    }
+
+    /**
+     * Index of the first move of the sequence that has the same alias as
+     * moves.get(moveIndex), -1 if it is not an alias move.
+     */
+    private static int firstAliasMoveIndex(List<ComboMove> moves, int moveIndex) {
+        String aliasName = moves.get(moveIndex).aliasName();
+        if (aliasName == null)
+            return -1;
+        for (int otherMoveIndex = 0; ; otherMoveIndex++) {
+            if (aliasName.equals(moves.get(otherMoveIndex).aliasName()))
+                return otherMoveIndex;
+        }
+    }
+
+    /**
+     * The combos are indexed in the iteration order of the combo map.
+     */
+    public static ComboAutomaton of(ComboMap comboMap, KeyOrdinals keyOrdinals,
+                                    CommandOrdinals commandOrdinals) {
+        List<Combo> combos = new ArrayList<>();
+        List<List<Command>> commandsByComboIndex = new ArrayList<>();
+        for (Map.Entry<Combo, List<Command>> entry : comboMap.commandsByCombo()
+                                                              .entrySet()) {
+            combos.add(entry.getKey());
+            commandsByComboIndex.add(entry.getValue());
+        }
+        return new ComboAutomaton(List.copyOf(combos), List.copyOf(commandsByComboIndex),
+                keyOrdinals, commandOrdinals);
+    }
+
+    public List<Combo> combos() {
+        return combos;
+    }
+
+    public ComboCommands commands(int comboIndex) {
+        return commandsByComboIndex.get(comboIndex);
+    }
+
+    /**
+     * The commands without the SwitchMode commands.
+     */
+    public ComboCommands commandsIgnoringSwitchMode(int comboIndex) {
+        return commandsIgnoringSwitchModeByComboIndex.get(comboIndex);
+    }
+
+    /**
+     * True if the combo has no must remain pressed precondition and its sequence is
+     * empty or only made of releases.
+     */
+    public boolean releaseCombo(int comboIndex) {
+        return releaseComboByComboIndex[comboIndex];
+    }
+
+    public ComboPreconditionKeySets preconditionKeySets(int comboIndex) {
+        return preconditionKeySetsByComboIndex.get(comboIndex);
+    }
+
+    /**
+     * Eat decision of a press of the key, when the press is part of a combo sequence.
+     */
+    public PressEatDecision pressEatDecision(int keyOrdinal) {
+        return keyOrdinal < pressEatDecisionByKeyOrdinal.length ?
+                pressEatDecisionByKeyOrdinal[keyOrdinal] : PressEatDecision.PASSED;
+    }
+
+    /**
+     * Pairs of combos that are completed by the same events. The events are matched from
+     * the end of the preparation, so a combo whose sequence is a suffix of the sequence
+     * of another combo is completed every time the other combo is (if its precondition is
+     * satisfied too): for example, +up is completed by the last event of +up -up +up.
+     * Two combos with the same sequence and different preconditions are both completed
+     * when both preconditions are satisfied. Pairs of combos whose preconditions cannot
+     * be satisfied at the same time, and precondition only combos, are left out.
+     * Computed on demand, for reporting.
+     */
+    public List<ComboOverlap> overlaps() {
+        Map<List<ComboMove>, List<Combo>> combosBySequence = new HashMap<>();
+        for (Combo combo : combos) {
+            List<ComboMove> moves = combo.sequence().moves();
+            if (!moves.isEmpty())
+                combosBySequence.computeIfAbsent(moves, moves1 -> new ArrayList<>())
+                                .add(combo);
+        }
+        List<ComboOverlap> overlaps = new ArrayList<>();
+        for (List<Combo> sameSequenceCombos : combosBySequence.values()) {
+            for (int comboIndex = 0; comboIndex < sameSequenceCombos.size(); comboIndex++) {
+                for (int otherComboIndex = comboIndex + 1;
+                     otherComboIndex < sameSequenceCombos.size(); otherComboIndex++)
+                    addOverlapIfCompatible(sameSequenceCombos.get(comboIndex),
+                            sameSequenceCombos.get(otherComboIndex), overlaps);
+            }
+        }
+        for (Combo combo : combos) {
+            List<ComboMove> moves = combo.sequence().moves();
+            for (int suffixStart = 1; suffixStart < moves.size(); suffixStart++) {
+                List<Combo> suffixCombos =
+                        combosBySequence.get(moves.subList(suffixStart, moves.size()));
+                if (suffixCombos == null)
+                    continue;
+                for (Combo suffixCombo : suffixCombos)
+                    addOverlapIfCompatible(suffixCombo, combo, overlaps);
+            }
+        }
+        return overlaps;
+    }
+
+    private static void addOverlapIfCompatible(Combo suffixCombo, Combo combo,
+                                               List<ComboOverlap> overlaps) {
+        if (suffixCombo.precondition().compatibleWith(combo.precondition()))
+            overlaps.add(new ComboOverlap(suffixCombo, combo));
+    }
+
+    /**
+     * Combos whose last move has a min duration: they are completed by a timer after
+     * their last event (see {@link AutomatonComboWatcher}).
+     */
+    public List<Combo> combosWaitingForLastMove() {
+        List<Combo> waitingCombos = new ArrayList<>();
+        for (Combo combo : combos) {
+            List<ComboMove> moves = combo.sequence().moves();
+            if (!moves.isEmpty() && moves.getLast().duration().minNanos() != 0)
+                waitingCombos.add(combo);
+        }
+        return waitingCombos;
+    }
+
+    /**
+     * Computes into activeNodes the active nodes after all the events, from scratch (for
+     * example, after switching to the mode). Only the last maxDepth events can be
+     * matched.
+     * @param scratchNodes used as a temporary buffer
+     */
+    public void activeNodes(List<KeyEvent> events, List<Node> activeNodes,
+                            List<Node> scratchNodes) {
+        activeNodes.clear();
+        for (int eventIndex = Math.max(0, events.size() - maxDepth);
+             eventIndex < events.size(); eventIndex++) {
+            advance(activeNodes, events, eventIndex,
+                    keyOrdinals.ordinal(events.get(eventIndex).key()), scratchNodes);
+            activeNodes.clear();
+            for (int nodeIndex = 0; nodeIndex < scratchNodes.size(); nodeIndex++)
+                activeNodes.add(scratchNodes.get(nodeIndex));
+        }
+    }
+
+    /**
+     * Computes into nextActiveNodes the active nodes after events.get(eventIndex).
+     * @param activeNodes the active nodes after the previous event (empty if eventIndex
+     *                    is 0)
+     * @param keyOrdinal ordinal of the key of events.get(eventIndex)
+     */
+    public void advance(List<Node> activeNodes, List<KeyEvent> events, int eventIndex,
+                        int keyOrdinal, List<Node> nextActiveNodes) {
+        nextActiveNodes.clear();
+        KeyEvent event = events.get(eventIndex);
+        root.addChildren(events, eventIndex, keyOrdinal, eventIndex, nextActiveNodes);
+        if (activeNodes.isEmpty())
+            return;
+        KeyEvent previousEvent = events.get(eventIndex - 1);
+        for (int nodeIndex = 0; nodeIndex < activeNodes.size(); nodeIndex++) {
+            Node activeNode = activeNodes.get(nodeIndex);
+            if (!activeNode.move.duration().satisfied(previousEvent.time(), event.time()))
+                continue;
+            activeNode.addChildren(events, eventIndex, keyOrdinal,
+                    eventIndex - activeNode.depth, nextActiveNodes);
+        }
+    }
+
+    /**
+     * Fills matches with the candidate combos and their matching move counts. Only the
+     * combos that were candidates in the previous call are reset, the cost does not
+     * depend on the number of combos.
+     * @param events the events the active nodes were computed from
+     */
+    public void matches(List<Node> activeNodes, List<KeyEvent> events, Matches matches) {
+        int[] matchingMoveCounts = matches.matchingMoveCounts;
+        matches.clearCandidates();
+        for (int wordIndex = 0; wordIndex < preconditionOnlyComboIndexes.length; wordIndex++)
+            matches.candidateComboIndexes[wordIndex] = preconditionOnlyComboIndexes[wordIndex];
+        matches.candidateWordCount = preconditionOnlyComboIndexes.length;
+        matches.otherMatchCount = 0;
+        boolean aliasComboMatched = false;
+        for (int nodeIndex = 0; nodeIndex < activeNodes.size(); nodeIndex++) {
+            Node activeNode = activeNodes.get(nodeIndex);
+            for (int comboIndex : activeNode.comboIndexes) {
+                matches.addCandidate(comboIndex);
+                matchingMoveCounts[comboIndex] =
+                        Math.max(matchingMoveCounts[comboIndex], activeNode.depth);
+            }
+            aliasComboMatched |= activeNode.aliasComboIndexes.length != 0;
+        }
+        if (!aliasComboMatched)
+            return;
+        // A single key combo only matches its deepest active node: another active node
+        // would be a shorter suffix of the same events.
+        // An alias combo stands for one single key combo per binding of its aliases:
+        // a shallower active node is also a match if there is a binding that is
+        // consistent with it but not with any deeper active node.
+        for (int nodeIndex = 0; nodeIndex < activeNodes.size(); nodeIndex++) {
+            Node activeNode = activeNodes.get(nodeIndex);
+            for (int comboIndex : activeNode.aliasComboIndexes) {
+                if (activeNode.depth < matchingMoveCounts[comboIndex])
+                    matches.addOtherMatch(comboIndex, activeNode.depth);
+            }
+        }
+        int candidateCount = matches.otherMatchCount;
+        matches.otherMatchCount = 0;
+        matches.ensureBindingCapacity(candidateCount + 1, maxDepth);
+        int[] deeperMatchingMoveCounts = matches.deeperMatchingMoveCounts;
+        for (int candidateIndex = 0; candidateIndex < candidateCount; candidateIndex++) {
+            int comboIndex = matches.otherComboIndexes[candidateIndex];
+            int matchingMoveCount = matches.otherMatchingMoveCounts[candidateIndex];
+            int deeperMatchCount = 0;
+            deeperMatchingMoveCounts[deeperMatchCount++] = matchingMoveCounts[comboIndex];
+            for (int otherCandidateIndex = 0; otherCandidateIndex < candidateCount;
+                 otherCandidateIndex++) {
+                if (matches.otherComboIndexes[otherCandidateIndex] == comboIndex &&
+                    matches.otherMatchingMoveCounts[otherCandidateIndex] >
+                    matchingMoveCount)
+                    deeperMatchingMoveCounts[deeperMatchCount++] =
+                            matches.otherMatchingMoveCounts[otherCandidateIndex];
+            }
+            if (bindingOnlyConsistentWithShallowerMatchExists(
+                    combos.get(comboIndex).sequence().moves(), events, matchingMoveCount,
+                    deeperMatchCount, matches)) {
+                // Candidates are kept in place (the kept ones are a prefix of the
+                // candidates, and a candidate is never overwritten before it is read).
+                matches.otherComboIndexes[matches.otherMatchCount] = comboIndex;
+                matches.otherMatchingMoveCounts[matches.otherMatchCount] =
+                        matchingMoveCount;
+                matches.otherMatchCount++;
+            }
+        }
+        matches.sortOtherMatches();
+    }
+
+    /**
+     * True if there is a binding of the aliases that is consistent with the match of the
+     * first matchingMoveCount moves (ending at the last event), but with none of the
+     * deeper matches.
+     * The deeper matching move counts are the first deeperMatchCount elements of
+     * matches.deeperMatchingMoveCounts. The forbidden bindings and the binding being
+     * built are kept in the scratch arrays of matches, so that nothing is allocated.
+     */
+    private static boolean bindingOnlyConsistentWithShallowerMatchExists(
+            List<ComboMove> moves, List<KeyEvent> events, int matchingMoveCount,
+            int deeperMatchCount, Matches matches) {
+        int startEventIndex = events.size() - matchingMoveCount;
+        // Each deeper match forbids a binding of the aliases that first appear after the
+        // first matchingMoveCount moves.
+        int forbiddenBindingCount = 0;
+        int forbiddenAliasBindingCount = 0;
+        for (int deeperMatchIndex = 0; deeperMatchIndex < deeperMatchCount;
+             deeperMatchIndex++) {
+            int deeperMatchingMoveCount =
+                    matches.deeperMatchingMoveCounts[deeperMatchIndex];
+            int deeperStartEventIndex = events.size() - deeperMatchingMoveCount;
+            boolean consistent = true;
+            for (int moveIndex = 0; moveIndex < matchingMoveCount; moveIndex++) {
+                if (moves.get(moveIndex).isAliasMove() &&
+                    !events.get(startEventIndex + moveIndex)
+                           .key()
+                           .equals(events.get(deeperStartEventIndex + moveIndex).key())) {
+                    consistent = false;
+                    break;
+                }
+            }
+            if (!consistent)
+                continue;
+            int forbiddenBindingStart = forbiddenAliasBindingCount;
+            for (int moveIndex = matchingMoveCount; moveIndex < deeperMatchingMoveCount;
+                 moveIndex++) {
+                if (firstAliasMoveIndex(moves, moveIndex) == moveIndex) {
+                    matches.forbiddenAliasMoveIndexes[forbiddenAliasBindingCount] =
+                            moveIndex;
+                    matches.forbiddenKeys[forbiddenAliasBindingCount] =
+                            events.get(deeperStartEventIndex + moveIndex).key();
+                    forbiddenAliasBindingCount++;
+                }
+            }
+            if (forbiddenAliasBindingCount == forbiddenBindingStart)
+                return false;
+            matches.forbiddenBindingEnds[forbiddenBindingCount++] =
+                    forbiddenAliasBindingCount;
+        }
+        return bindingAvoidingAllExists(moves, matches, forbiddenBindingCount, 0);
+    }
+
+    /**
+     * The forbidden binding at forbiddenBindingIndex is the alias moves and keys of
+     * matches.forbiddenAliasMoveIndexes and matches.forbiddenKeys from the end of the
+     * previous forbidden binding to matches.forbiddenBindingEnds[forbiddenBindingIndex].
+     * matches.boundKeyByAliasMoveIndex is the binding being built (null for the alias
+     * moves that are not bound yet), it is restored before returning.
+     */
+    private static boolean bindingAvoidingAllExists(List<ComboMove> moves,
+                                                    Matches matches,
+                                                    int forbiddenBindingCount,
+                                                    int forbiddenBindingIndex) {
+        if (forbiddenBindingIndex == forbiddenBindingCount)
+            return true;
+        int forbiddenBindingStart = forbiddenBindingIndex == 0 ? 0 :
+                matches.forbiddenBindingEnds[forbiddenBindingIndex - 1];
+        int forbiddenBindingEnd = matches.forbiddenBindingEnds[forbiddenBindingIndex];
+        Key[] boundKeyByAliasMoveIndex = matches.boundKeyByAliasMoveIndex;
+        for (int bindingIndex = forbiddenBindingStart; bindingIndex < forbiddenBindingEnd;
+             bindingIndex++) {
+            int aliasMoveIndex = matches.forbiddenAliasMoveIndexes[bindingIndex];
+            Key boundKey = boundKeyByAliasMoveIndex[aliasMoveIndex];
+            if (boundKey != null && !boundKey.equals(matches.forbiddenKeys[bindingIndex]))
+                // Already avoided.
+                return bindingAvoidingAllExists(moves, matches, forbiddenBindingCount,
+                        forbiddenBindingIndex + 1);
+        }
+        for (int bindingIndex = forbiddenBindingStart; bindingIndex < forbiddenBindingEnd;
+             bindingIndex++) {
+            int aliasMoveIndex = matches.forbiddenAliasMoveIndexes[bindingIndex];
+            if (boundKeyByAliasMoveIndex[aliasMoveIndex] != null)
+                continue;
+            List<Key> keys = moves.get(aliasMoveIndex).keys();
+            for (int keyIndex = 0; keyIndex < keys.size(); keyIndex++) {
+                Key key = keys.get(keyIndex);
+                if (key.equals(matches.forbiddenKeys[bindingIndex]))
+                    continue;
+                boundKeyByAliasMoveIndex[aliasMoveIndex] = key;
+                boolean exists = bindingAvoidingAllExists(moves, matches,
+                        forbiddenBindingCount, forbiddenBindingIndex + 1);
+                boundKeyByAliasMoveIndex[aliasMoveIndex] = null;
+                if (exists)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * EATEN (resp. PASSED) if all the press moves of the key must (resp. must not) be
+     * eaten: a press that is part of a combo sequence can then be decided without
+     * looking at the matching moves. UNDECIDED if it depends on which moves match.
+     * Keys without press moves are PASSED.
+     */
+    public enum PressEatDecision {
+        EATEN, PASSED, UNDECIDED
+    }
+
+    /**
+     * @param suffixCombo its sequence is a suffix of (or the same as) combo's sequence
+     */
+    public record ComboOverlap(Combo suffixCombo, Combo combo) {
+
+        public boolean sameSequence() {
+            return suffixCombo.sequence().equals(combo.sequence());
+        }
+
+    }
+
+    /**
+     * The commands of a combo, with their ordinals and ranks precomputed: the commands
+     * of the completed combos are run by increasing rank (SwitchMode commands last).
+     */
+    public record ComboCommands(List<Command> commands, int[] ordinals, int[] ranks) {
+
+        public static final int MAX_RANK = 1;
+
+        static ComboCommands of(List<Command> commands, CommandOrdinals commandOrdinals) {
+            int[] ordinals = new int[commands.size()];
+            int[] ranks = new int[commands.size()];
+            for (int commandIndex = 0; commandIndex < commands.size(); commandIndex++) {
+                Command command = commands.get(commandIndex);
+                ordinals[commandIndex] = commandOrdinals.ordinal(command);
+                ranks[commandIndex] = command instanceof Command.SwitchMode ? 1 : 0;
+            }
+            return new ComboCommands(commands, ordinals, ranks);
+        }
+
+        @Override
+        public String toString() {
+            return commands.toString();
+        }
+
+    }
+
+    /**
+     * Candidate combos and their matching move counts (indexed like {@link #combos()}).
+     * Each candidate combo has a matching move count (the deepest match, 0 if none). An
+     * alias combo can also have other (smaller) matching move counts: the other matches
+     * are sorted by combo index.
+     * Reused from one event to the next.
+     */
+    public static final class Matches {
+
+        private final int[] matchingMoveCounts;
+        /**
+         * Bitmask, only the first candidateWordCount words can be non-zero.
+         */
+        private final long[] candidateComboIndexes;
+        private int candidateWordCount;
+        private int[] otherComboIndexes = new int[8];
+        private int[] otherMatchingMoveCounts = new int[8];
+        private int otherMatchCount;
+        /**
+         * Scratch arrays of {@link #bindingOnlyConsistentWithShallowerMatchExists}, grown
+         * on first use. The alias bindings are indexed by move index (the index of the
+         * first move of the alias in the sequence).
+         */
+        private int[] deeperMatchingMoveCounts = new int[0];
+        private int[] forbiddenBindingEnds = new int[0];
+        private int[] forbiddenAliasMoveIndexes = new int[0];
+        private Key[] forbiddenKeys = new Key[0];
+        private Key[] boundKeyByAliasMoveIndex = new Key[0];
+
+        /**
+         * @param comboCount the maximum number of combos of an automaton
+         */
+        public Matches(int comboCount) {
+            matchingMoveCounts = new int[comboCount];
+            candidateComboIndexes = new long[wordCount(comboCount)];
+        }
+
+        private static int wordCount(int comboCount) {
+            return (comboCount + 63) >>> 6;
+        }
+
+        /**
+         * Candidate combos are visited in increasing index order:
+         * for (int comboIndex = matches.nextCandidateComboIndex(0); comboIndex != -1;
+         *      comboIndex = matches.nextCandidateComboIndex(comboIndex + 1))
+         * @return -1 if there is no candidate combo index greater than or equal to
+         * fromComboIndex
+         */
+        public int nextCandidateComboIndex(int fromComboIndex) {
+            int wordIndex = fromComboIndex >>> 6;
+            if (wordIndex >= candidateWordCount)
+                return -1;
+            long word = candidateComboIndexes[wordIndex] & (-1L << fromComboIndex);
+            while (true) {
+                if (word != 0)
+                    return wordIndex * 64 + Long.numberOfTrailingZeros(word);
+                if (++wordIndex == candidateWordCount)
+                    return -1;
+                word = candidateComboIndexes[wordIndex];
+            }
+        }
+
+        /**
+         * 0 if the combo is not a candidate.
+         */
+        public int matchingMoveCount(int comboIndex) {
+            return matchingMoveCounts[comboIndex];
+        }
+
+        private void addCandidate(int comboIndex) {
+            candidateComboIndexes[comboIndex >>> 6] |= 1L << comboIndex;
+            candidateWordCount = Math.max(candidateWordCount, (comboIndex >>> 6) + 1);
+        }
+
+        private void clearCandidates() {
+            for (int comboIndex = nextCandidateComboIndex(0); comboIndex != -1;
+                 comboIndex = nextCandidateComboIndex(comboIndex + 1))
+                matchingMoveCounts[comboIndex] = 0;
+            Arrays.fill(candidateComboIndexes, 0, candidateWordCount, 0);
+            candidateWordCount = 0;
+        }
+
+        public int otherMatchCount() {
+            return otherMatchCount;
+        }
+
+        public int otherComboIndex(int otherMatchIndex) {
+            return otherComboIndexes[otherMatchIndex];
+        }
+
+        public int otherMatchingMoveCount(int otherMatchIndex) {
+            return otherMatchingMoveCounts[otherMatchIndex];
+        }
+
+        private void addOtherMatch(int comboIndex, int matchingMoveCount) {
+            if (otherMatchCount == otherComboIndexes.length) {
+                otherComboIndexes = Arrays.copyOf(otherComboIndexes, otherMatchCount * 2);
+                otherMatchingMoveCounts =
+                        Arrays.copyOf(otherMatchingMoveCounts, otherMatchCount * 2);
+            }
+            otherComboIndexes[otherMatchCount] = comboIndex;
+            otherMatchingMoveCounts[otherMatchCount] = matchingMoveCount;
+            otherMatchCount++;
+        }
+
+        /**
+         * @param maxMatchCount the maximum number of matches of a combo
+         * @param maxDepth the maximum number of moves of a combo
+         */
+        private void ensureBindingCapacity(int maxMatchCount, int maxDepth) {
+            if (deeperMatchingMoveCounts.length < maxMatchCount) {
+                deeperMatchingMoveCounts = new int[maxMatchCount];
+                forbiddenBindingEnds = new int[maxMatchCount];
+            }
+            if (forbiddenAliasMoveIndexes.length < maxMatchCount * maxDepth) {
+                forbiddenAliasMoveIndexes = new int[maxMatchCount * maxDepth];
+                forbiddenKeys = new Key[maxMatchCount * maxDepth];
+            }
+            if (boundKeyByAliasMoveIndex.length < maxDepth)
+                boundKeyByAliasMoveIndex = new Key[maxDepth];
+        }
+
+        private void sortOtherMatches() {
+            for (int index = 1; index < otherMatchCount; index++) {
+                int comboIndex = otherComboIndexes[index];
+                int matchingMoveCount = otherMatchingMoveCounts[index];
+                int insertionIndex = index;
+                while (insertionIndex > 0 &&
+                       otherComboIndexes[insertionIndex - 1] > comboIndex) {
+                    otherComboIndexes[insertionIndex] = otherComboIndexes[insertionIndex - 1];
+                    otherMatchingMoveCounts[insertionIndex] =
+                            otherMatchingMoveCounts[insertionIndex - 1];
+                    insertionIndex--;
+                }
+                otherComboIndexes[insertionIndex] = comboIndex;
+                otherMatchingMoveCounts[insertionIndex] = matchingMoveCount;
+            }
+        }
+
+    }
+
+    public static final class Node {
+
+        private final int depth;
+        /**
+         * Last move of the prefix (null for the root).
+         */
+        private final ComboMove move;
+        /**
+         * If move is an alias move and the alias appears earlier in the prefix, index of
+         * its first move. -1 otherwise.
+         */
+        private final int firstAliasMoveIndex;
+        private final NodesByKeyOrdinal pressChildren = new NodesByKeyOrdinal();
+        private final NodesByKeyOrdinal releaseChildren = new NodesByKeyOrdinal();
+        /**
+         * Combos whose sequence starts with this prefix.
+         */
+        private int[] comboIndexes = new int[0];
+        /**
+         * The combos of comboIndexes that have alias moves.
+         */
+        private int[] aliasComboIndexes = new int[0];
+
+        private Node(int depth, ComboMove move, int firstAliasMoveIndex) {
+            this.depth = depth;
+            this.move = move;
+            this.firstAliasMoveIndex =
+                    firstAliasMoveIndex == depth - 1 ? -1 : firstAliasMoveIndex;
+        }
+
+        private void addChild(Node child, KeyOrdinals keyOrdinals) {
+            NodesByKeyOrdinal children =
+                    child.move.isPress() ? pressChildren : releaseChildren;
+            for (Key key : child.move.keys())
+                children.add(keyOrdinals.ordinal(key), child);
+        }
+
+        /**
+         * @param keyOrdinal ordinal of the key of events.get(eventIndex)
+         * @param startEventIndex index of the event matching the first move of the prefix
+         */
+        private void addChildren(List<KeyEvent> events, int eventIndex, int keyOrdinal,
+                                 int startEventIndex, List<Node> nodes) {
+            KeyEvent event = events.get(eventIndex);
+            Node[] children =
+                    (event.isPress() ? pressChildren : releaseChildren).get(keyOrdinal);
+            if (children == null)
+                return;
+            // Not addAll, it would allocate an array.
+            for (int childIndex = 0; childIndex < children.length; childIndex++) {
+                Node child = children[childIndex];
+                if (child.firstAliasMoveIndex != -1 &&
+                    !events.get(startEventIndex + child.firstAliasMoveIndex)
+                           .key()
+                           .equals(event.key()))
+                    continue;
+                nodes.add(child);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Node[depth=" + depth + ", move=" + move + "]";
+        }
+
+    }
+
+    /**
+     * The children of a node by key ordinal: an open addressing (linear probing) hash
+     * table of ints, so that advancing a node does not hash a Key nor box an ordinal.
+     * Filled when the automaton is built, then only read.
+     */
+    private static final class NodesByKeyOrdinal {
+
+        private static final int EMPTY = -1;
+
+        /**
+         * Power of 2, at most half full so that a lookup always reaches an empty slot.
+         */
+        private int[] keyOrdinals = {EMPTY};
+        private Node[][] nodes = new Node[1][];
+        private int size;
+
+        /**
+         * @return null if there is no node for the key ordinal
+         */
+        Node[] get(int keyOrdinal) {
+            int mask = keyOrdinals.length - 1;
+            for (int slot = slot(keyOrdinal, mask); ; slot = (slot + 1) & mask) {
+                int slotKeyOrdinal = keyOrdinals[slot];
+                if (slotKeyOrdinal == keyOrdinal)
+                    return nodes[slot];
+                if (slotKeyOrdinal == EMPTY)
+                    return null;
+            }
+        }
+
+        void add(int keyOrdinal, Node node) {
+            Node[] keyOrdinalNodes = get(keyOrdinal);
+            if (keyOrdinalNodes == null) {
+                if (2 * (size + 1) > keyOrdinals.length)
+                    resize(2 * keyOrdinals.length);
+                put(keyOrdinal, new Node[]{node});
+                size++;
+            }
+            else {
+                keyOrdinalNodes =
+                        Arrays.copyOf(keyOrdinalNodes, keyOrdinalNodes.length + 1);
+                keyOrdinalNodes[keyOrdinalNodes.length - 1] = node;
+                put(keyOrdinal, keyOrdinalNodes);
+            }
+        }
+
+        private void put(int keyOrdinal, Node[] keyOrdinalNodes) {
+            int mask = keyOrdinals.length - 1;
+            int slot = slot(keyOrdinal, mask);
+            while (keyOrdinals[slot] != EMPTY && keyOrdinals[slot] != keyOrdinal)
+                slot = (slot + 1) & mask;
+            keyOrdinals[slot] = keyOrdinal;
+            nodes[slot] = keyOrdinalNodes;
+        }
+
+        private void resize(int capacity) {
+            int[] oldKeyOrdinals = keyOrdinals;
+            Node[][] oldNodes = nodes;
+            keyOrdinals = new int[capacity];
+            Arrays.fill(keyOrdinals, EMPTY);
+            nodes = new Node[capacity][];
+            for (int slot = 0; slot < oldKeyOrdinals.length; slot++) {
+                if (oldKeyOrdinals[slot] != EMPTY)
+                    put(oldKeyOrdinals[slot], oldNodes[slot]);
+            }
+        }
+
+        /**
+         * The ordinals are dense: they are spread (Fibonacci hashing) so that
+         * consecutive ordinals do not fill consecutive slots.
+         */
+        private static int slot(int keyOrdinal, int mask) {
+            return (keyOrdinal * 0x9E3779B9 >>> 16) & mask;
+        }
+
+    }
+
+}
@@ -0,0 +1,20 @@
+package mousemaster;
+
+/**
+ * The {@link ComboWatcher} implementation.
+ */
+public enum ComboEngine {
+
+    /**
+     * {@link AutomatonComboWatcher}: the combos of a mode are compiled into a
+     * {@link ComboAutomaton} whose active nodes are advanced incrementally, and the eat
+     * decisions of presses are precomputed.
+     */
+    AUTOMATON,
+    /**
+     * {@link LegacyComboWatcher}: reference implementation, only meant to check the
+     * automaton against (see ComboEngineFuzzer).
+     */
+    LEGACY
+
+}
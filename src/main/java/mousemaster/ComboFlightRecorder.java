@@ -0,0 +1,183 @@
+package mousemaster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the last {@link #CAPACITY} decisions of the {@link AutomatonComboWatcher} (one
+ * per pass: the event, the mode, the completed combos, the commands to run and the
+ * processing time) in a preallocated ring of primitive arrays. Recording a decision is a
+ * few stores: nothing is formatted until the ring is dumped to the log, on demand (see
+ * {@link Command.DumpComboDecisions}) or after a slow key event.
+ * Only the logic thread records, so there is no lock.
+ */
+public class ComboFlightRecorder {
+
+    private static final Logger logger = LoggerFactory.getLogger(ComboFlightRecorder.class);
+    /**
+     * A power of two.
+     */
+    static final int CAPACITY = 256;
+    /**
+     * Combos and commands beyond these are counted but not kept.
+     */
+    private static final int MAX_COMBO_COUNT = 4;
+    private static final int MAX_COMMAND_COUNT = 4;
+    static final int PRESS = 1;
+    static final int SECOND_PASS = 1 << 1;
+    static final int LAST_MOVE_COMPLETED = 1 << 2;
+    static final int PART_OF_COMBO_SEQUENCE = 1 << 3;
+    static final int EATEN = 1 << 4;
+    static final int SWITCH_MODE_IGNORED = 1 << 5;
+
+    private final KeyOrdinals keyOrdinals;
+    private final CommandOrdinals commandOrdinals;
+    private final Map<String, ComboAutomaton> comboAutomatonByModeName;
+    private final long[] startNanoTimes = new long[CAPACITY];
+    private final long[] processingNanos = new long[CAPACITY];
+    private final long[] eventTimes = new long[CAPACITY];
+    /**
+     * -1 if the pass had no event.
+     */
+    private final int[] keyOrdinalsByRecord = new int[CAPACITY];
+    private final int[] flags = new int[CAPACITY];
+    private final String[] modeNames = new String[CAPACITY];
+    private final int[] comboCounts = new int[CAPACITY];
+    private final int[] comboIndexes = new int[CAPACITY * MAX_COMBO_COUNT];
+    private final int[] commandCounts = new int[CAPACITY];
+    private final int[] commandOrdinalsByRecord = new int[CAPACITY * MAX_COMMAND_COUNT];
+    /**
+     * The index of the next record is recordCount % CAPACITY.
+     */
+    private long recordCount;
+    private int record;
+
+    public ComboFlightRecorder(KeyOrdinals keyOrdinals, CommandOrdinals commandOrdinals,
+                               Map<String, ComboAutomaton> comboAutomatonByModeName) {
+        this.keyOrdinals = keyOrdinals;
+        this.commandOrdinals = commandOrdinals;
+        this.comboAutomatonByModeName = comboAutomatonByModeName;
+    }
+
+    /**
+     * Starts a record, overwriting the oldest one once the ring is full.
+     * @param keyOrdinal -1 if there is no event (eventTime is then ignored)
+     */
+    public void start(long startNanoTime, long eventTime, int keyOrdinal, int flags,
+                      String modeName) {
+        record = (int) (recordCount++ & (CAPACITY - 1));
+        startNanoTimes[record] = startNanoTime;
+        eventTimes[record] = eventTime;
+        keyOrdinalsByRecord[record] = keyOrdinal;
+        this.flags[record] = flags;
+        modeNames[record] = modeName;
+        comboCounts[record] = 0;
+        commandCounts[record] = 0;
+    }
+
+    /**
+     * @param comboIndex index of the combo in the automaton of the record's mode
+     */
+    public void combo(int comboIndex) {
+        int comboCount = comboCounts[record]++;
+        if (comboCount < MAX_COMBO_COUNT)
+            comboIndexes[record * MAX_COMBO_COUNT + comboCount] = comboIndex;
+    }
+
+    public void command(int commandOrdinal) {
+        int commandCount = commandCounts[record]++;
+        if (commandCount < MAX_COMMAND_COUNT)
+            commandOrdinalsByRecord[record * MAX_COMMAND_COUNT + commandCount] =
+                    commandOrdinal;
+    }
+
+    public void end(int flags, long endNanoTime) {
+        this.flags[record] |= flags;
+        processingNanos[record] = endNanoTime - startNanoTimes[record];
+    }
+
+    /**
+     * Logs the records, oldest first.
+     */
+    public void dump(String reason) {
+        int recordCount = (int) Math.min(this.recordCount, CAPACITY);
+        logger.info("Dumping the last " + recordCount + " combo decisions (" + reason +
+                    ")");
+        for (String line : lines())
+            logger.info(line);
+    }
+
+    List<String> lines() {
+        List<String> lines = new ArrayList<>();
+        for (long recordNumber = Math.max(0, recordCount - CAPACITY);
+             recordNumber < recordCount; recordNumber++)
+            lines.add(line(recordNumber));
+        return lines;
+    }
+
+    private String line(long recordNumber) {
+        int record = (int) (recordNumber & (CAPACITY - 1));
+        int flags = this.flags[record];
+        StringBuilder line = new StringBuilder();
+        line.append('#').append(recordNumber).append(' ');
+        int keyOrdinal = keyOrdinalsByRecord[record];
+        if (keyOrdinal != -1)
+            line.append((flags & PRESS) != 0 ? '+' : '-')
+                .append(keyOrdinals.key(keyOrdinal).name())
+                .append(" at ")
+                .append(eventTimes[record]);
+        else if ((flags & LAST_MOVE_COMPLETED) != 0)
+            line.append("last move completed");
+        else
+            line.append("no event");
+        line.append(" in ").append(modeNames[record]);
+        if ((flags & SECOND_PASS) != 0)
+            line.append(" (second pass)");
+        if ((flags & PART_OF_COMBO_SEQUENCE) != 0)
+            line.append(", part of combo sequence");
+        if ((flags & EATEN) != 0)
+            line.append(", eaten");
+        if ((flags & SWITCH_MODE_IGNORED) != 0)
+            line.append(", switch-mode ignored");
+        ComboAutomaton comboAutomaton = comboAutomatonByModeName.get(modeNames[record]);
+        int comboCount = comboCounts[record];
+        if (comboCount != 0) {
+            line.append(", combos = [");
+            for (int comboIndex = 0; comboIndex < Math.min(comboCount, MAX_COMBO_COUNT);
+                 comboIndex++) {
+                if (comboIndex != 0)
+                    line.append(", ");
+                line.append(comboAutomaton.combos()
+                                          .get(comboIndexes[record * MAX_COMBO_COUNT +
+                                                            comboIndex]));
+            }
+            if (comboCount > MAX_COMBO_COUNT)
+                line.append(", ").append(comboCount - MAX_COMBO_COUNT).append(" more");
+            line.append(']');
+        }
+        int commandCount = commandCounts[record];
+        if (commandCount != 0) {
+            line.append(", commands = [");
+            for (int commandIndex = 0;
+                 commandIndex < Math.min(commandCount, MAX_COMMAND_COUNT);
+                 commandIndex++) {
+                if (commandIndex != 0)
+                    line.append(", ");
+                line.append(commandOrdinals.command(
+                        commandOrdinalsByRecord[record * MAX_COMMAND_COUNT +
+                                                commandIndex]));
+            }
+            if (commandCount > MAX_COMMAND_COUNT)
+                line.append(", ").append(commandCount - MAX_COMMAND_COUNT)
+                    .append(" more");
+            line.append(']');
+        }
+        line.append(", ").append(processingNanos[record] / 1000).append("us");
+        return line.toString();
+    }
+
+}
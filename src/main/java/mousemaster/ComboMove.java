@@ -1,8 +1,24 @@
 package mousemaster;
 
+import java.util.List;
+
+/**
+ * A move is either a single key move, or an alias move that can be matched by any key of
+ * the alias. All the moves of a sequence that have the same alias must be matched by the
+ * same key: +alias -alias is +key1 -key1 or +key2 -key2, not +key1 -key2.
+ */
 public sealed interface ComboMove {
 
-    Key key();
+    /**
+     * A single key if aliasName is null.
+     */
+    List<Key> keys();
+
+    /**
+     * Null if the move is a single key move (this includes aliases of a single key).
+     */
+    String aliasName();
+
     ComboMoveDuration duration();
 
     default boolean isPress() {
@@ -13,19 +29,63 @@ public sealed interface ComboMove {
         return !isPress();
     }
 
-    record PressComboMove(Key key, boolean eventMustBeEaten, ComboMoveDuration duration)
-            implements ComboMove {
+    default boolean isAliasMove() {
+        return aliasName() != null;
+    }
+
+    /**
+     * Only for single key moves.
+     */
+    default Key key() {
+        if (isAliasMove())
+            throw new IllegalStateException("Alias move " + this + " has more than one key");
+        return keys().getFirst();
+    }
+
+    /**
+     * Same move but for a single key of the alias.
+     */
+    ComboMove withKey(Key key);
+
+    private static String name(ComboMove move) {
+        return move.isAliasMove() ? move.aliasName() : move.keys().getFirst().name();
+    }
+
+    record PressComboMove(List<Key> keys, String aliasName, boolean eventMustBeEaten,
+                          ComboMoveDuration duration) implements ComboMove {
+
+        public PressComboMove(Key key, boolean eventMustBeEaten,
+                              ComboMoveDuration duration) {
+            this(List.of(key), null, eventMustBeEaten, duration);
+        }
+
+        @Override
+        public ComboMove withKey(Key key) {
+            return new PressComboMove(key, eventMustBeEaten, duration);
+        }
+
         @Override
         public String toString() {
-            return (eventMustBeEaten ? "+" : "#") + key.name();
+            return (eventMustBeEaten ? "+" : "#") + ComboMove.name(this);
         }
 
     }
 
-    record ReleaseComboMove(Key key, ComboMoveDuration duration) implements ComboMove {
+    record ReleaseComboMove(List<Key> keys, String aliasName, ComboMoveDuration duration)
+            implements ComboMove {
+
+        public ReleaseComboMove(Key key, ComboMoveDuration duration) {
+            this(List.of(key), null, duration);
+        }
+
+        @Override
+        public ComboMove withKey(Key key) {
+            return new ReleaseComboMove(key, duration);
+        }
+
         @Override
         public String toString() {
-            return "-" + key.name();
+            return "-" + ComboMove.name(this);
         }
 
     }
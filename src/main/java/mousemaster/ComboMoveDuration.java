@@ -1,21 +1,34 @@
 package mousemaster;
 
 import java.time.Duration;
-import java.time.Instant;
 
 /**
- * Null max means infinite max.
+ * Durations in nanoseconds. A max of {@link #INFINITE} means infinite max.
  */
-public record ComboMoveDuration(Duration min, Duration max) {
+public record ComboMoveDuration(long minNanos, long maxNanos) {
 
-    public boolean satisfied(Instant previousEventTime, Instant currentEventTime) {
-        if (max != null && previousEventTime.plus(max).isBefore(currentEventTime))
-            // Previous move broke the combo because too much time has passed.
-            return false;
-        if (previousEventTime.plus(min).isAfter(currentEventTime))
-            // Previous move broke the combo because not enough time has passed.
-            return false;
-        return true;
+    public static final long INFINITE = Long.MAX_VALUE;
+
+    /**
+     * Null max means infinite max.
+     */
+    public static ComboMoveDuration of(Duration min, Duration max) {
+        return new ComboMoveDuration(min.toNanos(),
+                max == null ? INFINITE : max.toNanos());
+    }
+
+    /**
+     * @param previousEventTime nano time (see {@link KeyEvent#time()})
+     */
+    public boolean satisfied(long previousEventTime, long currentEventTime) {
+        return satisfied(minNanos, maxNanos, previousEventTime, currentEventTime);
+    }
+
+    public static boolean satisfied(long minNanos, long maxNanos, long previousEventTime,
+                                    long currentEventTime) {
+        long elapsedNanos = currentEventTime - previousEventTime;
+        // Too much time has passed, or not enough time has passed.
+        return elapsedNanos <= maxNanos && elapsedNanos >= minNanos;
     }
 
 }
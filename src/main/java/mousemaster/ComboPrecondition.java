@@ -1,5 +1,6 @@
 package mousemaster;
 
+import java.util.HashSet;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -25,6 +26,27 @@ public record ComboPrecondition(Set<Key> mustRemainUnpressedKeySet,
         return false;
     }
 
+    /**
+     * True if some currently pressed keys satisfy both preconditions: the union of a must
+     * remain pressed key set of each has to avoid the must remain unpressed keys of both.
+     */
+    public boolean compatibleWith(ComboPrecondition other) {
+        for (Set<Key> mustRemainPressedKeySet : orEmptyKeySet(mustRemainPressedKeySets)) {
+            for (Set<Key> otherMustRemainPressedKeySet : orEmptyKeySet(
+                    other.mustRemainPressedKeySets)) {
+                Set<Key> pressedKeys = new HashSet<>(mustRemainPressedKeySet);
+                pressedKeys.addAll(otherMustRemainPressedKeySet);
+                if (satisfied(pressedKeys) && other.satisfied(pressedKeys))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private static Set<Set<Key>> orEmptyKeySet(Set<Set<Key>> keySets) {
+        return keySets.isEmpty() ? Set.of(Set.of()) : keySets;
+    }
+
     @Override
     public String toString() {
         return String.join(" ", "^{" + keySetToString(mustRemainUnpressedKeySet) + "}",
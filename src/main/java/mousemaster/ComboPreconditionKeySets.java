@@ -0,0 +1,54 @@
+package mousemaster;
+
+import java.util.List;
+
+/**
+ * {@link ComboPrecondition} compiled to {@link KeySet}s.
+ */
+public record ComboPreconditionKeySets(KeySet mustRemainUnpressedKeySet,
+                                       List<KeySet> mustRemainPressedKeySets) {
+
+    public static ComboPreconditionKeySets of(ComboPrecondition precondition,
+                                              KeyOrdinals keyOrdinals) {
+        return new ComboPreconditionKeySets(
+                keyOrdinals.keySet(precondition.mustRemainUnpressedKeySet()),
+                precondition.mustRemainPressedKeySets()
+                            .stream()
+                            .map(keyOrdinals::keySet)
+                            .toList());
+    }
+
+    public boolean isEmpty() {
+        return mustRemainUnpressedKeySet.isEmpty() && mustRemainPressedKeySets.isEmpty();
+    }
+
+    /**
+     * Same as {@link ComboPrecondition#satisfied(java.util.Set)}.
+     */
+    public boolean satisfied(KeySet currentlyPressedKeys) {
+        if (currentlyPressedKeys.containsAny(mustRemainUnpressedKeySet))
+            return false;
+        if (mustRemainPressedKeySets.isEmpty())
+            return true;
+        // Indexed loops: no iterator allocation.
+        for (int keySetIndex = 0; keySetIndex < mustRemainPressedKeySets.size();
+             keySetIndex++) {
+            if (currentlyPressedKeys.containsAll(mustRemainPressedKeySets.get(keySetIndex)))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * True if keySet is a subset of one of the must remain pressed key sets.
+     */
+    public boolean anyMustRemainPressedKeySetContainsAll(KeySet keySet) {
+        for (int keySetIndex = 0; keySetIndex < mustRemainPressedKeySets.size();
+             keySetIndex++) {
+            if (mustRemainPressedKeySets.get(keySetIndex).containsAll(keySet))
+                return true;
+        }
+        return false;
+    }
+
+}
@@ -9,6 +9,10 @@ public record ComboPreparation(List<KeyEvent> events) {
         return new ComboPreparation(new ArrayList<>());
     }
 
+    /**
+     * Only for single key sequences (see {@link ComboSequence#expand}). This is the
+     * reference that {@link ComboAutomaton} implements incrementally.
+     */
     public int matchingMoveCount(ComboSequence sequence) {
         List<KeyEvent> preparationEvents = events;
         List<ComboMove> comboMoves = sequence.moves();
@@ -1,10 +1,68 @@
 package mousemaster;
 
-import java.util.List;
+import java.util.*;
 import java.util.stream.Collectors;
 
 public record ComboSequence(List<ComboMove> moves) {
 
+    /**
+     * Number of single key sequences that the sequence stands for (product of the sizes
+     * of its distinct aliases).
+     */
+    public long expansionCount() {
+        Map<String, Integer> keyCountByAliasName = new HashMap<>();
+        for (ComboMove move : moves) {
+            if (move.isAliasMove())
+                keyCountByAliasName.put(move.aliasName(), move.keys().size());
+        }
+        long expansionCount = 1;
+        for (int keyCount : keyCountByAliasName.values())
+            expansionCount *= keyCount;
+        return expansionCount;
+    }
+
+    /**
+     * The single key sequences that the sequence stands for.
+     * alias1=key11 key12
+     * alias2=key21 key22
+     * +alias1 -alias1 +alias2 = +key11 -key11 +key21 | +key11 -key11 +key22 | +key12 ...
+     */
+    public List<ComboSequence> expand() {
+        List<String> aliasNames = moves.stream()
+                                       .filter(ComboMove::isAliasMove)
+                                       .map(ComboMove::aliasName)
+                                       .distinct()
+                                       .toList();
+        List<ComboSequence> sequences = new ArrayList<>();
+        recursivelyExpand(new HashMap<>(), aliasNames, sequences);
+        return sequences;
+    }
+
+    private void recursivelyExpand(Map<String, Key> fixedKeyByAliasName,
+                                   List<String> aliasNames,
+                                   List<ComboSequence> sequences) {
+        if (fixedKeyByAliasName.size() == aliasNames.size()) {
+            List<ComboMove> expandedMoves = new ArrayList<>();
+            for (ComboMove move : moves) {
+                expandedMoves.add(move.isAliasMove() ?
+                        move.withKey(fixedKeyByAliasName.get(move.aliasName())) : move);
+            }
+            sequences.add(new ComboSequence(expandedMoves));
+            return;
+        }
+        String fixedAliasName = aliasNames.get(fixedKeyByAliasName.size());
+        List<Key> aliasKeys = moves.stream()
+                                   .filter(move -> fixedAliasName.equals(move.aliasName()))
+                                   .findFirst()
+                                   .orElseThrow()
+                                   .keys();
+        for (Key fixedKey : aliasKeys) {
+            fixedKeyByAliasName.put(fixedAliasName, fixedKey);
+            recursivelyExpand(fixedKeyByAliasName, aliasNames, sequences);
+            fixedKeyByAliasName.remove(fixedAliasName);
+        }
+    }
+
     @Override
     public String toString() {
         return moves.stream().map(Object::toString).collect(Collectors.joining(" "));
@@ -0,0 +1,45 @@
+package mousemaster;
+
+import java.util.*;
+
+/**
+ * Interns the commands of the configuration to dense ordinals (equal commands have the
+ * same ordinal), so that the commands to run can be deduplicated with a bitmask.
+ * Created when the configuration is loaded.
+ */
+public class CommandOrdinals {
+
+    private final Map<Command, Integer> ordinalByCommand = new HashMap<>();
+    private final List<Command> commands = new ArrayList<>();
+
+    public static CommandOrdinals of(ModeMap modeMap) {
+        CommandOrdinals commandOrdinals = new CommandOrdinals();
+        for (Mode mode : modeMap.modes()) {
+            for (List<Command> commands : mode.comboMap().commandsByCombo().values()) {
+                for (Command command : commands) {
+                    if (commandOrdinals.ordinalByCommand.putIfAbsent(command,
+                            commandOrdinals.ordinalByCommand.size()) == null)
+                        commandOrdinals.commands.add(command);
+                }
+            }
+        }
+        return commandOrdinals;
+    }
+
+    public int ordinal(Command command) {
+        Integer ordinal = ordinalByCommand.get(command);
+        if (ordinal == null)
+            throw new IllegalArgumentException(
+                    "Command " + command + " is not part of the configuration");
+        return ordinal;
+    }
+
+    public Command command(int ordinal) {
+        return commands.get(ordinal);
+    }
+
+    public int size() {
+        return ordinalByCommand.size();
+    }
+
+}
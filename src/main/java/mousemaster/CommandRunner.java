@@ -5,22 +5,34 @@ import static mousemaster.Command.*;
 public class CommandRunner {
 
     private ModeController modeController;
+    private ComboWatcher comboWatcher;
     private final MouseController mouseController;
     private final GridManager gridManager;
     private final HintManager hintManager;
+    /**
+     * Null if the commands are not recorded.
+     */
+    private final KeyEventRecorder keyEventRecorder;
 
     public CommandRunner(MouseController mouseController, GridManager gridManager,
-                         HintManager hintManager) {
+                         HintManager hintManager, KeyEventRecorder keyEventRecorder) {
         this.mouseController = mouseController;
         this.gridManager = gridManager;
         this.hintManager = hintManager;
+        this.keyEventRecorder = keyEventRecorder;
     }
 
     public void setModeController(ModeController modeController) {
         this.modeController = modeController;
     }
 
+    public void setComboWatcher(ComboWatcher comboWatcher) {
+        this.comboWatcher = comboWatcher;
+    }
+
     public void run(Command command) {
+        if (keyEventRecorder != null)
+            keyEventRecorder.commandRun(command);
         switch (command) {
             // @formatter:off
             case SwitchMode switchMode -> modeController.switchMode(switchMode.modeName());
@@ -78,6 +90,8 @@ public class CommandRunner {
             case ClearPositionHistory clearPositionHistory -> hintManager.clearPositionHistory();
             case CycleNextPosition cycleNextPosition -> hintManager.cycleNextPosition();
             case CyclePreviousPosition cyclePreviousPosition -> hintManager.cyclePreviousPosition();
+
+            case DumpComboDecisions dumpComboDecisions -> comboWatcher.dumpComboDecisions();
             // @formatter:on
         }
     }
@@ -75,7 +75,8 @@ public class ConfigurationParser {
                 .selectedPrefixFontHexColor("#8FA6C4")
                 .boxHexColor("#204E8A")
                 .swallowHintEndKeyPress(true)
-                .savePositionAfterSelection(false);
+                .savePositionAfterSelection(false)
+                .labelAssignment(HintLabelAssignment.FIXED_LENGTH);
         HintMeshType.HintMeshTypeBuilder hintMeshTypeBuilder = hintMesh.type();
         hintMeshTypeBuilder.type(HintMeshType.HintMeshTypeType.GRID)
                            .gridMaxRowCount(26)
@@ -127,18 +128,29 @@ public class ConfigurationParser {
                 new Property<>("save-position", Map.of()),
                 new Property<>("clear", Map.of()),
                 new Property<>("cycle-next", Map.of()),
-                new Property<>("cycle-previous", Map.of())
+                new Property<>("cycle-previous", Map.of()),
+                new Property<>("dump-combo-decisions", Map.of())
         ).collect(Collectors.toMap(property -> property.propertyKey.propertyName, Function.identity()));
         // @formatter:on
     }
 
     public static Configuration parse(Path path) throws IOException {
         List<String> lines = Files.readAllLines(path);
+        Map<String, Alias> aliases = new HashMap<>();
+        PendingCommands pendingCommands = new PendingCommands(aliases);
+        try {
+            return parse(lines, aliases, pendingCommands);
+        } catch (IllegalArgumentException e) {
+            throw pendingCommands.firstException(e);
+        }
+    }
+
+    private static Configuration parse(List<String> lines, Map<String, Alias> aliases,
+                                       PendingCommands pendingCommands) {
         ComboMoveDuration defaultComboMoveDuration =
-                new ComboMoveDuration(Duration.ZERO, Duration.ofMillis(150));
+                ComboMoveDuration.of(Duration.ZERO, Duration.ofMillis(150));
         KeyboardLayout keyboardLayout = null;
         int maxPositionHistorySize = 16;
-        Map<String, Alias> aliases = new HashMap<>();
         Map<String, ModeBuilder> modeByName = new HashMap<>();
         Map<PropertyKey, Property<?>> propertyByKey = new HashMap<>();
         Set<PropertyKey> nonRootPropertyKeys = new HashSet<>();
@@ -147,7 +159,9 @@ public class ConfigurationParser {
         Map<PropertyKey, Set<PropertyKey>> childPropertiesByParentProperty = new HashMap<>();
         Pattern linePattern = Pattern.compile("(.+?)=(.+)");
         Set<String> visitedPropertyKeys = new HashSet<>();
-        for (String line : lines) {
+        for (int lineIndex = 0; lineIndex < lines.size(); lineIndex++) {
+            String line = lines.get(lineIndex);
+            pendingCommands.lineNumber(lineIndex + 1);
             if (line.startsWith("#") || line.isBlank())
                 continue;
             Matcher lineMatcher = linePattern.matcher(line);
@@ -191,6 +205,7 @@ public class ConfigurationParser {
                                        .map(Key::ofName)
                                        .toList();
                 aliases.put(aliasName, new Alias(aliasName, keys));
+                pendingCommands.aliasDefined(aliasName);
             }
             Pattern modeKeyPattern = Pattern.compile("([^.]+-mode)\\.([^.]+)(\\.([^.]+))?");
             Matcher keyMatcher = modeKeyPattern.matcher(propertyKey);
@@ -444,6 +459,10 @@ public class ConfigurationParser {
                             case "save-position-after-selection" ->
                                     mode.hintMesh.builder.savePositionAfterSelection(
                                             Boolean.parseBoolean(propertyValue));
+                            case "label-assignment" ->
+                                    mode.hintMesh.builder.labelAssignment(
+                                            parseHintLabelAssignment(propertyKey,
+                                                    propertyValue));
                             default -> throw new IllegalArgumentException(
                                     "Invalid hint property key: " + propertyKey);
                         }
@@ -462,9 +481,8 @@ public class ConfigurationParser {
                         modeReferences.add(checkModeReference(newModeName));
                         referencedModesByReferencerMode.computeIfAbsent(modeName,
                                 modeName_ -> new HashSet<>()).add(newModeName);
-                        setCommand(mode.comboMap.to.builder, propertyValue,
-                                new SwitchMode(newModeName), defaultComboMoveDuration,
-                                aliases);
+                        pendingCommands.add(mode.comboMap.to.builder, propertyValue,
+                                new SwitchMode(newModeName), defaultComboMoveDuration);
                     }
                 }
                 case "timeout" -> {
@@ -562,10 +580,10 @@ public class ConfigurationParser {
                     else {
                         switch (keyMatcher.group(4)) {
                             // @formatter:off
-                            case "up" -> setCommand(mode.comboMap.startMove.builder, propertyValue, new StartMoveUp(), defaultComboMoveDuration, aliases);
-                            case "down" -> setCommand(mode.comboMap.startMove.builder, propertyValue, new StartMoveDown(), defaultComboMoveDuration, aliases);
-                            case "left" -> setCommand(mode.comboMap.startMove.builder, propertyValue, new StartMoveLeft(), defaultComboMoveDuration, aliases);
-                            case "right" -> setCommand(mode.comboMap.startMove.builder, propertyValue, new StartMoveRight(), defaultComboMoveDuration, aliases);
+                            case "up" -> pendingCommands.add(mode.comboMap.startMove.builder, propertyValue, new StartMoveUp(), defaultComboMoveDuration);
+                            case "down" -> pendingCommands.add(mode.comboMap.startMove.builder, propertyValue, new StartMoveDown(), defaultComboMoveDuration);
+                            case "left" -> pendingCommands.add(mode.comboMap.startMove.builder, propertyValue, new StartMoveLeft(), defaultComboMoveDuration);
+                            case "right" -> pendingCommands.add(mode.comboMap.startMove.builder, propertyValue, new StartMoveRight(), defaultComboMoveDuration);
                             // @formatter:on
                         }
                     }
@@ -581,10 +599,10 @@ public class ConfigurationParser {
                     else {
                         switch (keyMatcher.group(4)) {
                             // @formatter:off
-                            case "up" -> setCommand(mode.comboMap.stopMove.builder, propertyValue, new StopMoveUp(), defaultComboMoveDuration, aliases);
-                            case "down" -> setCommand(mode.comboMap.stopMove.builder, propertyValue, new StopMoveDown(), defaultComboMoveDuration, aliases);
-                            case "left" -> setCommand(mode.comboMap.stopMove.builder, propertyValue, new StopMoveLeft(), defaultComboMoveDuration, aliases);
-                            case "right" -> setCommand(mode.comboMap.stopMove.builder, propertyValue, new StopMoveRight(), defaultComboMoveDuration, aliases);
+                            case "up" -> pendingCommands.add(mode.comboMap.stopMove.builder, propertyValue, new StopMoveUp(), defaultComboMoveDuration);
+                            case "down" -> pendingCommands.add(mode.comboMap.stopMove.builder, propertyValue, new StopMoveDown(), defaultComboMoveDuration);
+                            case "left" -> pendingCommands.add(mode.comboMap.stopMove.builder, propertyValue, new StopMoveLeft(), defaultComboMoveDuration);
+                            case "right" -> pendingCommands.add(mode.comboMap.stopMove.builder, propertyValue, new StopMoveRight(), defaultComboMoveDuration);
                             // @formatter:on
                         }
                     }
@@ -600,9 +618,9 @@ public class ConfigurationParser {
                     else {
                         switch (keyMatcher.group(4)) {
                             // @formatter:off
-                            case "left" -> setCommand(mode.comboMap.press.builder, propertyValue, new PressLeft(), defaultComboMoveDuration, aliases);
-                            case "middle" -> setCommand(mode.comboMap.press.builder, propertyValue, new PressMiddle(), defaultComboMoveDuration, aliases);
-                            case "right" -> setCommand(mode.comboMap.press.builder, propertyValue, new PressRight(), defaultComboMoveDuration, aliases);
+                            case "left" -> pendingCommands.add(mode.comboMap.press.builder, propertyValue, new PressLeft(), defaultComboMoveDuration);
+                            case "middle" -> pendingCommands.add(mode.comboMap.press.builder, propertyValue, new PressMiddle(), defaultComboMoveDuration);
+                            case "right" -> pendingCommands.add(mode.comboMap.press.builder, propertyValue, new PressRight(), defaultComboMoveDuration);
                             // @formatter:on
                         }
                     }
@@ -618,9 +636,9 @@ public class ConfigurationParser {
                     else {
                         switch (keyMatcher.group(4)) {
                             // @formatter:off
-                            case "left" -> setCommand(mode.comboMap.release.builder, propertyValue, new ReleaseLeft(), defaultComboMoveDuration, aliases);
-                            case "middle" -> setCommand(mode.comboMap.release.builder, propertyValue, new ReleaseMiddle(), defaultComboMoveDuration, aliases);
-                            case "right" -> setCommand(mode.comboMap.release.builder, propertyValue, new ReleaseRight(), defaultComboMoveDuration, aliases);
+                            case "left" -> pendingCommands.add(mode.comboMap.release.builder, propertyValue, new ReleaseLeft(), defaultComboMoveDuration);
+                            case "middle" -> pendingCommands.add(mode.comboMap.release.builder, propertyValue, new ReleaseMiddle(), defaultComboMoveDuration);
+                            case "right" -> pendingCommands.add(mode.comboMap.release.builder, propertyValue, new ReleaseRight(), defaultComboMoveDuration);
                             // @formatter:on
                         }
                     }
@@ -636,9 +654,9 @@ public class ConfigurationParser {
                     else {
                         switch (keyMatcher.group(4)) {
                             // @formatter:off
-                            case "left" -> setCommand(mode.comboMap.toggle.builder, propertyValue, new ToggleLeft(), defaultComboMoveDuration, aliases);
-                            case "middle" -> setCommand(mode.comboMap.toggle.builder, propertyValue, new ToggleMiddle(), defaultComboMoveDuration, aliases);
-                            case "right" -> setCommand(mode.comboMap.toggle.builder, propertyValue, new ToggleRight(), defaultComboMoveDuration, aliases);
+                            case "left" -> pendingCommands.add(mode.comboMap.toggle.builder, propertyValue, new ToggleLeft(), defaultComboMoveDuration);
+                            case "middle" -> pendingCommands.add(mode.comboMap.toggle.builder, propertyValue, new ToggleMiddle(), defaultComboMoveDuration);
+                            case "right" -> pendingCommands.add(mode.comboMap.toggle.builder, propertyValue, new ToggleRight(), defaultComboMoveDuration);
                             // @formatter:on
                         }
                     }
@@ -654,10 +672,10 @@ public class ConfigurationParser {
                     else {
                         switch (keyMatcher.group(4)) {
                             // @formatter:off
-                            case "up" -> setCommand(mode.comboMap.startWheel.builder, propertyValue, new StartWheelUp(), defaultComboMoveDuration, aliases);
-                            case "down" -> setCommand(mode.comboMap.startWheel.builder, propertyValue, new StartWheelDown(), defaultComboMoveDuration, aliases);
-                            case "left" -> setCommand(mode.comboMap.startWheel.builder, propertyValue, new StartWheelLeft(), defaultComboMoveDuration, aliases);
-                            case "right" -> setCommand(mode.comboMap.startWheel.builder, propertyValue, new StartWheelRight(), defaultComboMoveDuration, aliases);
+                            case "up" -> pendingCommands.add(mode.comboMap.startWheel.builder, propertyValue, new StartWheelUp(), defaultComboMoveDuration);
+                            case "down" -> pendingCommands.add(mode.comboMap.startWheel.builder, propertyValue, new StartWheelDown(), defaultComboMoveDuration);
+                            case "left" -> pendingCommands.add(mode.comboMap.startWheel.builder, propertyValue, new StartWheelLeft(), defaultComboMoveDuration);
+                            case "right" -> pendingCommands.add(mode.comboMap.startWheel.builder, propertyValue, new StartWheelRight(), defaultComboMoveDuration);
                             // @formatter:on
                         }
                     }
@@ -673,10 +691,10 @@ public class ConfigurationParser {
                     else {
                         switch (keyMatcher.group(4)) {
                             // @formatter:off
-                            case "up" -> setCommand(mode.comboMap.stopWheel.builder, propertyValue, new StopWheelUp(), defaultComboMoveDuration, aliases);
-                            case "down" -> setCommand(mode.comboMap.stopWheel.builder, propertyValue, new StopWheelDown(), defaultComboMoveDuration, aliases);
-                            case "left" -> setCommand(mode.comboMap.stopWheel.builder, propertyValue, new StopWheelLeft(), defaultComboMoveDuration, aliases);
-                            case "right" -> setCommand(mode.comboMap.stopWheel.builder, propertyValue, new StopWheelRight(), defaultComboMoveDuration, aliases);
+                            case "up" -> pendingCommands.add(mode.comboMap.stopWheel.builder, propertyValue, new StopWheelUp(), defaultComboMoveDuration);
+                            case "down" -> pendingCommands.add(mode.comboMap.stopWheel.builder, propertyValue, new StopWheelDown(), defaultComboMoveDuration);
+                            case "left" -> pendingCommands.add(mode.comboMap.stopWheel.builder, propertyValue, new StopWheelLeft(), defaultComboMoveDuration);
+                            case "right" -> pendingCommands.add(mode.comboMap.stopWheel.builder, propertyValue, new StopWheelRight(), defaultComboMoveDuration);
                             // @formatter:on
                         }
                     }
@@ -692,10 +710,10 @@ public class ConfigurationParser {
                     else {
                         switch (keyMatcher.group(4)) {
                             // @formatter:off
-                            case "up" -> setCommand(mode.comboMap.snap.builder, propertyValue, new SnapUp(), defaultComboMoveDuration, aliases);
-                            case "down" -> setCommand(mode.comboMap.snap.builder, propertyValue, new SnapDown(), defaultComboMoveDuration, aliases);
-                            case "left" -> setCommand(mode.comboMap.snap.builder, propertyValue, new SnapLeft(), defaultComboMoveDuration, aliases);
-                            case "right" -> setCommand(mode.comboMap.snap.builder, propertyValue, new SnapRight(), defaultComboMoveDuration, aliases);
+                            case "up" -> pendingCommands.add(mode.comboMap.snap.builder, propertyValue, new SnapUp(), defaultComboMoveDuration);
+                            case "down" -> pendingCommands.add(mode.comboMap.snap.builder, propertyValue, new SnapDown(), defaultComboMoveDuration);
+                            case "left" -> pendingCommands.add(mode.comboMap.snap.builder, propertyValue, new SnapLeft(), defaultComboMoveDuration);
+                            case "right" -> pendingCommands.add(mode.comboMap.snap.builder, propertyValue, new SnapRight(), defaultComboMoveDuration);
                             // @formatter:on
                         }
                     }
@@ -711,10 +729,10 @@ public class ConfigurationParser {
                     else {
                         switch (keyMatcher.group(4)) {
                             // @formatter:off
-                            case "up" -> setCommand(mode.comboMap.shrinkGrid.builder, propertyValue, new ShrinkGridUp(), defaultComboMoveDuration, aliases);
-                            case "down" -> setCommand(mode.comboMap.shrinkGrid.builder, propertyValue, new ShrinkGridDown(), defaultComboMoveDuration, aliases);
-                            case "left" -> setCommand(mode.comboMap.shrinkGrid.builder, propertyValue, new ShrinkGridLeft(), defaultComboMoveDuration, aliases);
-                            case "right" -> setCommand(mode.comboMap.shrinkGrid.builder, propertyValue, new ShrinkGridRight(), defaultComboMoveDuration, aliases);
+                            case "up" -> pendingCommands.add(mode.comboMap.shrinkGrid.builder, propertyValue, new ShrinkGridUp(), defaultComboMoveDuration);
+                            case "down" -> pendingCommands.add(mode.comboMap.shrinkGrid.builder, propertyValue, new ShrinkGridDown(), defaultComboMoveDuration);
+                            case "left" -> pendingCommands.add(mode.comboMap.shrinkGrid.builder, propertyValue, new ShrinkGridLeft(), defaultComboMoveDuration);
+                            case "right" -> pendingCommands.add(mode.comboMap.shrinkGrid.builder, propertyValue, new ShrinkGridRight(), defaultComboMoveDuration);
                             // @formatter:on
                         }
                     }
@@ -730,10 +748,10 @@ public class ConfigurationParser {
                     else {
                         switch (keyMatcher.group(4)) {
                             // @formatter:off
-                            case "up" -> setCommand(mode.comboMap.moveGrid.builder, propertyValue, new MoveGridUp(), defaultComboMoveDuration, aliases);
-                            case "down" -> setCommand(mode.comboMap.moveGrid.builder, propertyValue, new MoveGridDown(), defaultComboMoveDuration, aliases);
-                            case "left" -> setCommand(mode.comboMap.moveGrid.builder, propertyValue, new MoveGridLeft(), defaultComboMoveDuration, aliases);
-                            case "right" -> setCommand(mode.comboMap.moveGrid.builder, propertyValue, new MoveGridRight(), defaultComboMoveDuration, aliases);
+                            case "up" -> pendingCommands.add(mode.comboMap.moveGrid.builder, propertyValue, new MoveGridUp(), defaultComboMoveDuration);
+                            case "down" -> pendingCommands.add(mode.comboMap.moveGrid.builder, propertyValue, new MoveGridDown(), defaultComboMoveDuration);
+                            case "left" -> pendingCommands.add(mode.comboMap.moveGrid.builder, propertyValue, new MoveGridLeft(), defaultComboMoveDuration);
+                            case "right" -> pendingCommands.add(mode.comboMap.moveGrid.builder, propertyValue, new MoveGridRight(), defaultComboMoveDuration);
                             // @formatter:on
                         }
                     }
@@ -749,10 +767,10 @@ public class ConfigurationParser {
                     else {
                         switch (keyMatcher.group(4)) {
                             // @formatter:off
-                            case "save-position" -> setCommand(mode.comboMap.savePosition.builder, propertyValue, new SavePosition(), defaultComboMoveDuration, aliases);
-                            case "clear" -> setCommand(mode.comboMap.clearPositionHistory.builder, propertyValue, new ClearPositionHistory(), defaultComboMoveDuration, aliases);
-                            case "cycle-next" -> setCommand(mode.comboMap.cycleNextPosition.builder, propertyValue, new CycleNextPosition(), defaultComboMoveDuration, aliases);
-                            case "cycle-previous" -> setCommand(mode.comboMap.cyclePreviousPosition.builder, propertyValue, new CyclePreviousPosition(), defaultComboMoveDuration, aliases);
+                            case "save-position" -> pendingCommands.add(mode.comboMap.savePosition.builder, propertyValue, new SavePosition(), defaultComboMoveDuration);
+                            case "clear" -> pendingCommands.add(mode.comboMap.clearPositionHistory.builder, propertyValue, new ClearPositionHistory(), defaultComboMoveDuration);
+                            case "cycle-next" -> pendingCommands.add(mode.comboMap.cycleNextPosition.builder, propertyValue, new CycleNextPosition(), defaultComboMoveDuration);
+                            case "cycle-previous" -> pendingCommands.add(mode.comboMap.cyclePreviousPosition.builder, propertyValue, new CyclePreviousPosition(), defaultComboMoveDuration);
                             // @formatter:on
                             default -> throw new IllegalArgumentException(
                                     "Invalid position-history property key: " + propertyKey);
@@ -762,7 +780,12 @@ public class ConfigurationParser {
                 // @formatter:off
                 case "move-to-grid-center" -> {
                     mode.comboMap.moveToGridCenter.parseReferenceOr(propertyKey, propertyValue,
-                            commandsByCombo -> setCommand(mode.comboMap.moveToGridCenter.builder, propertyValue, new MoveToGridCenter(), finalDefaultComboMoveDuration, aliases),
+                            commandsByCombo -> pendingCommands.add(mode.comboMap.moveToGridCenter.builder, propertyValue, new MoveToGridCenter(), finalDefaultComboMoveDuration),
+                            childPropertiesByParentProperty, nonRootPropertyKeys);
+                }
+                case "dump-combo-decisions" -> {
+                    mode.comboMap.dumpComboDecisions.parseReferenceOr(propertyKey, propertyValue,
+                            commandsByCombo -> pendingCommands.add(mode.comboMap.dumpComboDecisions.builder, propertyValue, new DumpComboDecisions(), finalDefaultComboMoveDuration),
                             childPropertiesByParentProperty, nonRootPropertyKeys);
                 }
                 // @formatter:on
@@ -770,6 +793,7 @@ public class ConfigurationParser {
                         "Invalid mode property key: " + propertyKey);
             }
         }
+        pendingCommands.setCommands();
         // Verify mode name references are valid.
         for (String modeNameReference : modeReferences) {
             if (modeNameReference.equals(Mode.PREVIOUS_MODE_FROM_HISTORY_STACK_IDENTIFIER))
@@ -1016,6 +1040,17 @@ public class ConfigurationParser {
         };
     }
 
+    private static HintLabelAssignment parseHintLabelAssignment(String propertyKey,
+                                                                String propertyValue) {
+        return switch (propertyValue) {
+            case "fixed-length" -> HintLabelAssignment.FIXED_LENGTH;
+            case "selection-frequency" -> HintLabelAssignment.SELECTION_FREQUENCY;
+            default -> throw new IllegalArgumentException(
+                    "Invalid property value in " + propertyKey + "=" + propertyValue +
+                    ": expected one of " + List.of("fixed-length", "selection-frequency"));
+        };
+    }
+
     private static ActiveScreenHintGridAreaCenter parseActiveScreenHintGridAreaCenter(
             String propertyKey, String propertyValue) {
         return switch (propertyValue) {
@@ -1058,7 +1093,7 @@ public class ConfigurationParser {
             throw new IllegalArgumentException(
                     "Invalid property value in " + propertyKey + "=" + propertyValue +
                     ": expected <min millis>-<max millis>");
-        return new ComboMoveDuration(
+        return ComboMoveDuration.of(
                 Duration.ofMillis(Integer.parseUnsignedInt(split[0])),
                 Duration.ofMillis(Integer.parseUnsignedInt(split[1])));
     }
@@ -1067,26 +1102,172 @@ public class ConfigurationParser {
         return Duration.ofMillis(Integer.parseUnsignedInt(string));
     }
 
-    private static void setCommand(Map<Combo, List<Command>> commandsByCombo,
-                                   String multiComboString, Command command,
-                                   ComboMoveDuration defaultComboMoveDuration,
-                                   Map<String, Alias> aliases) {
-        Iterator<List<Command>> existingCommandsIterator =
-                commandsByCombo.values().iterator();
-        // mode1.start-move.up=x
-        // mode2.start-move=mode1.start-move
-        // mode2.start-move.up=y
-        while (existingCommandsIterator.hasNext()) {
-            List<Command> existingCommands = existingCommandsIterator.next();
-            existingCommands.removeIf(Predicate.isEqual(command));
-            if (existingCommands.isEmpty())
-                existingCommandsIterator.remove();
+    /**
+     * The combos of the command properties are parsed once all the lines are read:
+     * in parallel (this is most of the parsing time of a large configuration), then the
+     * commands are set in the order of the lines. The first invalid combo (in the order
+     * of the lines) is reported, unless another property of an earlier line is invalid
+     * (see {@link #firstException}).
+     */
+    private static final class PendingCommands {
+
+        /**
+         * All the aliases of the file, snapshotted once when the combos are parsed. A
+         * combo only sees the aliases defined before its line.
+         */
+        private final Map<String, Alias> aliases;
+        private final Map<String, Integer> aliasLineNumbers = new HashMap<>();
+        private final List<PendingCommand> pendingCommands = new ArrayList<>();
+        /**
+         * The line being read.
+         */
+        private int lineNumber;
+        private List<ParsedCombos> parsedCombosList;
+
+        PendingCommands(Map<String, Alias> aliases) {
+            this.aliases = aliases;
+        }
+
+        void lineNumber(int lineNumber) {
+            this.lineNumber = lineNumber;
+        }
+
+        void aliasDefined(String aliasName) {
+            aliasLineNumbers.put(aliasName, lineNumber);
+        }
+
+        void add(Map<Combo, List<Command>> commandsByCombo, String multiComboString,
+                 Command command, ComboMoveDuration defaultComboMoveDuration) {
+            pendingCommands.add(new PendingCommand(lineNumber, commandsByCombo,
+                    multiComboString, command, defaultComboMoveDuration));
         }
-        List<Combo> combos =
-                Combo.multiCombo(multiComboString, defaultComboMoveDuration, aliases);
-        for (Combo combo : combos)
-            commandsByCombo.computeIfAbsent(combo, combo1 -> new ArrayList<>())
-                           .add(command);
+
+        void setCommands() {
+            List<ParsedCombos> parsedCombosList = parsedCombosList();
+            for (int pendingCommandIndex = 0;
+                 pendingCommandIndex < pendingCommands.size(); pendingCommandIndex++) {
+                ParsedCombos parsedCombos = parsedCombosList.get(pendingCommandIndex);
+                if (parsedCombos.exception() != null)
+                    throw parsedCombos.exception();
+                PendingCommand pendingCommand = pendingCommands.get(pendingCommandIndex);
+                setCommand(pendingCommand.commandsByCombo(), parsedCombos.combos(),
+                        pendingCommand.command());
+            }
+        }
+
+        /**
+         * @param exception thrown while reading the line being read, or after all the
+         *                  lines are read
+         * @return the exception of the first invalid combo if it is not after the line
+         * being read, exception otherwise
+         */
+        IllegalArgumentException firstException(IllegalArgumentException exception) {
+            List<ParsedCombos> parsedCombosList = parsedCombosList();
+            for (int pendingCommandIndex = 0;
+                 pendingCommandIndex < pendingCommands.size(); pendingCommandIndex++) {
+                ParsedCombos parsedCombos = parsedCombosList.get(pendingCommandIndex);
+                if (parsedCombos.exception() != null)
+                    return pendingCommands.get(pendingCommandIndex).lineNumber() <=
+                           lineNumber ? parsedCombos.exception() : exception;
+            }
+            return exception;
+        }
+
+        private List<ParsedCombos> parsedCombosList() {
+            if (parsedCombosList == null) {
+                Map<String, Alias> aliasesSnapshot = Map.copyOf(aliases);
+                Map<String, Integer> aliasLineNumbersSnapshot =
+                        Map.copyOf(aliasLineNumbers);
+                parsedCombosList =
+                        pendingCommands.parallelStream()
+                                       .map(pendingCommand -> pendingCommand.parse(
+                                               new AliasesBeforeLine(aliasesSnapshot,
+                                                       aliasLineNumbersSnapshot,
+                                                       pendingCommand.lineNumber())))
+                                       .toList();
+            }
+            return parsedCombosList;
+        }
+
+        private static void setCommand(Map<Combo, List<Command>> commandsByCombo,
+                                       List<Combo> combos, Command command) {
+            Iterator<List<Command>> existingCommandsIterator =
+                    commandsByCombo.values().iterator();
+            // mode1.start-move.up=x
+            // mode2.start-move=mode1.start-move
+            // mode2.start-move.up=y
+            while (existingCommandsIterator.hasNext()) {
+                List<Command> existingCommands = existingCommandsIterator.next();
+                existingCommands.removeIf(Predicate.isEqual(command));
+                if (existingCommands.isEmpty())
+                    existingCommandsIterator.remove();
+            }
+            for (Combo combo : combos)
+                commandsByCombo.computeIfAbsent(combo, combo1 -> new ArrayList<>())
+                               .add(command);
+        }
+
+        private record PendingCommand(int lineNumber,
+                                      Map<Combo, List<Command>> commandsByCombo,
+                                      String multiComboString, Command command,
+                                      ComboMoveDuration defaultComboMoveDuration) {
+
+            ParsedCombos parse(Map<String, Alias> aliases) {
+                try {
+                    return new ParsedCombos(Combo.multiCombo(multiComboString,
+                            defaultComboMoveDuration, aliases), null);
+                } catch (IllegalArgumentException e) {
+                    return new ParsedCombos(null, e);
+                }
+            }
+
+        }
+
+        /**
+         * Either the combos, or the exception thrown while parsing them.
+         */
+        private record ParsedCombos(List<Combo> combos,
+                                    IllegalArgumentException exception) {
+        }
+
+        /**
+         * The aliases defined before a line (parsing a combo only looks aliases up).
+         */
+        private static final class AliasesBeforeLine extends AbstractMap<String, Alias> {
+
+            private final Map<String, Alias> aliases;
+            private final Map<String, Integer> aliasLineNumbers;
+            private final int lineNumber;
+
+            AliasesBeforeLine(Map<String, Alias> aliases,
+                              Map<String, Integer> aliasLineNumbers, int lineNumber) {
+                this.aliases = aliases;
+                this.aliasLineNumbers = aliasLineNumbers;
+                this.lineNumber = lineNumber;
+            }
+
+            @Override
+            public Alias get(Object aliasName) {
+                Integer aliasLineNumber = aliasLineNumbers.get(aliasName);
+                return aliasLineNumber != null && aliasLineNumber < lineNumber ?
+                        aliases.get(aliasName) : null;
+            }
+
+            @Override
+            public boolean containsKey(Object aliasName) {
+                return get(aliasName) != null;
+            }
+
+            @Override
+            public Set<Entry<String, Alias>> entrySet() {
+                return aliases.entrySet()
+                              .stream()
+                              .filter(entry -> containsKey(entry.getKey()))
+                              .collect(Collectors.toSet());
+            }
+
+        }
+
     }
 
     /**
@@ -1250,6 +1431,8 @@ public class ConfigurationParser {
                         builder.swallowHintEndKeyPress(parent.swallowHintEndKeyPress());
                     if (builder.savePositionAfterSelection() == null)
                         builder.savePositionAfterSelection(parent.savePositionAfterSelection());
+                    if (builder.labelAssignment() == null)
+                        builder.labelAssignment(parent.labelAssignment());
                 }
             };
             timeout = new Property<>("timeout", modeName, propertyByKey,
@@ -1331,6 +1514,7 @@ public class ConfigurationParser {
         Property<Map<Combo, List<Command>>> clearPositionHistory;
         Property<Map<Combo, List<Command>>> cycleNextPosition;
         Property<Map<Combo, List<Command>>> cyclePreviousPosition;
+        Property<Map<Combo, List<Command>>> dumpComboDecisions;
 
         public ComboMapConfigurationBuilder(String modeName,
                                             Map<PropertyKey, Property<?>> propertyByKey) {
@@ -1350,6 +1534,7 @@ public class ConfigurationParser {
             clearPositionHistory = new ComboMapProperty("clear", modeName, propertyByKey);
             cycleNextPosition = new ComboMapProperty("cycle-next", modeName, propertyByKey);
             cyclePreviousPosition = new ComboMapProperty("cycle-previous", modeName, propertyByKey);
+            dumpComboDecisions = new ComboMapProperty("dump-combo-decisions", modeName, propertyByKey);
         }
 
         private static class ComboMapProperty extends Property<Map<Combo, List<Command>>> {
@@ -1385,6 +1570,7 @@ public class ConfigurationParser {
             add(commandsByCombo, clearPositionHistory.builder);
             add(commandsByCombo, cycleNextPosition.builder);
             add(commandsByCombo, cyclePreviousPosition.builder);
+            add(commandsByCombo, dumpComboDecisions.builder);
             return commandsByCombo;
         }
 
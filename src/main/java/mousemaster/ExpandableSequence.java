@@ -25,7 +25,7 @@ public record ExpandableSequence(List<ComboAliasMove> moves) {
             if (matcher.group(3) == null)
                 moveDuration = defaultMoveDuration;
             else
-                moveDuration = new ComboMoveDuration(
+                moveDuration = ComboMoveDuration.of(
                         Duration.ofMillis(Integer.parseUnsignedInt(matcher.group(4))),
                         matcher.group(6) == null ? null : Duration.ofMillis(
                                 Integer.parseUnsignedInt(matcher.group(6))));
@@ -43,48 +43,30 @@ public record ExpandableSequence(List<ComboAliasMove> moves) {
         return new ExpandableSequence(moves);
     }
 
-    public List<ComboSequence> expand(Map<String, Alias> aliases) {
-        // alias1=key11 key12
-        // alias2=key21 key22
-        // +alias1 -alias1 +alias2 = +key11 -key11 +key21 | +key11 -key11 +key22 | +key12 ...
-        List<String> aliasOrKeyNames =
-                moves.stream().map(ComboAliasMove::aliasOrKeyName).distinct().toList();
-        ArrayList<ComboSequence> sequences = new ArrayList<>();
-        recursivelyExpand(new HashMap<>(), aliasOrKeyNames, sequences, aliases);
-        return sequences;
-    }
-
-    private void recursivelyExpand(Map<String, Key> fixedKeyByAliasName,
-                                   List<String> aliasOrKeyNames,
-                                   List<ComboSequence> sequences,
-                                   Map<String, Alias> aliasByName) {
-        if (fixedKeyByAliasName.size() == aliasOrKeyNames.size()) {
-            List<ComboMove> moves = new ArrayList<>();
-            for (ComboAliasMove aliasMove : this.moves) {
-                Key key = fixedKeyByAliasName.get(aliasMove.aliasOrKeyName());
-                moves.add(switch (aliasMove) {
-                    case ComboAliasMove.PressComboAliasMove pressComboAliasMove ->
-                            new ComboMove.PressComboMove(key,
-                                    pressComboAliasMove.eventMustBeEaten(),
-                                    aliasMove.duration());
-                    case ComboAliasMove.ReleaseComboAliasMove releaseComboAliasMove ->
-                            new ComboMove.ReleaseComboMove(key, aliasMove.duration());
-                });
-            }
-            ComboSequence sequence = new ComboSequence(moves);
-            sequences.add(sequence);
-            return;
-        }
-        String fixedAliasOrKeyName = aliasOrKeyNames.get(fixedKeyByAliasName.size());
-        Alias alias = aliasByName.get(fixedAliasOrKeyName);
-        List<Key> aliasKeys =
-                alias == null ? List.of(Key.ofName(fixedAliasOrKeyName)) : alias.keys();
-        for (Key fixedKey : aliasKeys) {
-            fixedKeyByAliasName.put(fixedAliasOrKeyName, fixedKey);
-            recursivelyExpand(fixedKeyByAliasName, aliasOrKeyNames, sequences,
-                    aliasByName);
-            fixedKeyByAliasName.remove(fixedAliasOrKeyName);
+    /**
+     * Resolves the aliases without expanding them: an alias move stays a single move that
+     * can be matched by any key of the alias (see {@link ComboMove}).
+     * Use {@link ComboSequence#expand()} for the single key sequences.
+     */
+    public ComboSequence toSequence(Map<String, Alias> aliases) {
+        List<ComboMove> sequenceMoves = new ArrayList<>();
+        for (ComboAliasMove aliasMove : moves) {
+            Alias alias = aliases.get(aliasMove.aliasOrKeyName());
+            List<Key> keys =
+                    alias == null ? List.of(Key.ofName(aliasMove.aliasOrKeyName())) :
+                            alias.keys();
+            String aliasName = keys.size() == 1 ? null : alias.name();
+            sequenceMoves.add(switch (aliasMove) {
+                case ComboAliasMove.PressComboAliasMove pressComboAliasMove ->
+                        new ComboMove.PressComboMove(keys, aliasName,
+                                pressComboAliasMove.eventMustBeEaten(),
+                                aliasMove.duration());
+                case ComboAliasMove.ReleaseComboAliasMove releaseComboAliasMove ->
+                        new ComboMove.ReleaseComboMove(keys, aliasName,
+                                aliasMove.duration());
+            });
         }
+        return new ComboSequence(sequenceMoves);
     }
 
 }
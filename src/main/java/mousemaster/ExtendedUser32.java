@@ -30,8 +30,13 @@ public interface ExtendedUser32 extends User32 {
 
     int LLKHF_INJECTED = 0x00000010;
 
+    int QS_ALLINPUT = 0x04FF;
+
     boolean GetCursorInfo(CURSORINFO pci);
 
+    int MsgWaitForMultipleObjects(int nCount, WinNT.HANDLE[] pHandles, boolean bWaitAll,
+                                  int dwMilliseconds, int dwWakeMask);
+
     boolean GetIconInfo(HICON hIcon, WinGDI.ICONINFO piconinfo);
 
     class CURSORINFO extends Structure {
@@ -9,6 +9,7 @@ import java.util.List;
  */
 public class GridManager implements MousePositionListener, ModeListener {
 
+    private final Platform platform;
     private final ScreenManager screenManager;
     private final MouseController mouseController;
     private List<GridListener> listeners;
@@ -16,7 +17,9 @@ public class GridManager implements MousePositionListener, ModeListener {
     private int mouseX, mouseY;
     private Mode currentMode;
 
-    public GridManager(ScreenManager screenManager, MouseController mouseController) {
+    public GridManager(Platform platform, ScreenManager screenManager,
+                       MouseController mouseController) {
+        this.platform = platform;
         this.screenManager = screenManager;
         this.mouseController = mouseController;
     }
@@ -302,7 +305,7 @@ public class GridManager implements MousePositionListener, ModeListener {
                            .height(gridHeight);
             }
             case GridArea.ActiveWindowGridArea activeWindowGridArea -> {
-                Rectangle activeWindowRectangle = WindowsOverlay.activeWindowRectangle(
+                Rectangle activeWindowRectangle = platform.activeWindowRectangle(
                         activeWindowGridArea.widthPercent(),
                         activeWindowGridArea.heightPercent(), scaledTopInset,
                         scaledBottomInset, scaledLeftInset, scaledRightInset);
@@ -333,9 +336,9 @@ public class GridManager implements MousePositionListener, ModeListener {
 
     private void setOverlay() {
         if (grid.lineVisible())
-            WindowsOverlay.setGrid(grid);
+            platform.setGrid(grid);
         else
-            WindowsOverlay.hideGrid();
+            platform.hideGrid();
     }
 
     @Override
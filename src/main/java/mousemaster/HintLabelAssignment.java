@@ -0,0 +1,18 @@
+package mousemaster;
+
+/**
+ * How the key sequences (labels) of the hints of a hint grid are assigned.
+ */
+public enum HintLabelAssignment {
+
+    /**
+     * Every hint has the same number of keys: aa, ba, ..., za, ab, ...
+     */
+    FIXED_LENGTH,
+    /**
+     * Prefix-free labels of variable length: the cells that were selected the most often
+     * get the shortest labels (see {@link HintSelectionFrequencies}).
+     */
+    SELECTION_FREQUENCY
+
+}
@@ -4,24 +4,42 @@ import mousemaster.HintGridArea.ActiveScreenHintGridArea;
 import mousemaster.HintGridArea.ActiveWindowHintGridArea;
 import mousemaster.HintGridArea.AllScreensHintGridArea;
 import mousemaster.HintMesh.HintMeshBuilder;
+import mousemaster.PackedHints.PackedHintsBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class HintManager implements ModeListener, MousePositionListener {
 
     private static final Logger logger = LoggerFactory.getLogger(HintManager.class);
+    private static final int MAX_CACHED_HINT_MESH_COUNT = 8;
 
+    private final Platform platform;
     private final ScreenManager screenManager;
     private final MouseController mouseController;
+    /**
+     * Null if no mode uses {@link HintLabelAssignment#SELECTION_FREQUENCY}.
+     */
+    private final HintSelectionFrequencies hintSelectionFrequencies;
     private ModeController modeController;
     private List<PositionHistoryListener> positionHistoryListeners;
     private HintMesh hintMesh;
-    private Set<Key> selectionKeySubset;
+    /**
+     * Trie of hintMesh's hints. The focused key sequence of hintMesh is always one of its
+     * nodes.
+     */
+    private HintTrie hintTrie;
     private final Map<HintMeshTypeAndSelectionKeys, HintMesh>
-            previousHintMeshByTypeAndSelectionKeys = new HashMap<>();
+            previousHintMeshByTypeAndSelectionKeys = lruMap(MAX_CACHED_HINT_MESH_COUNT);
+    /**
+     * Built hints are immutable: they are reused as long as the geometry does not change
+     * (for example, switching from hint mode to idle mode and back), and comparing a
+     * reused hint mesh with the current one is then an identity check.
+     */
+    private final Map<HintsKey, PackedHints> hintsByKey =
+            lruMap(MAX_CACHED_HINT_MESH_COUNT);
     private int mouseX, mouseY;
     private Mode currentMode;
     private final List<Point> positionHistory = new ArrayList<>();
@@ -32,12 +50,19 @@ public class HintManager implements ModeListener, MousePositionListener {
     private int positionIdCount = 0;
     private final Map<Point, Integer> idByPosition = new HashMap<>();
     private int positionCycleIndex = 0;
+    /**
+     * Incremented each time the position history changes.
+     */
+    private int positionHistoryVersion = 0;
 
-    public HintManager(int maxPositionHistorySize, ScreenManager screenManager,
-                       MouseController mouseController) {
+    public HintManager(Platform platform, int maxPositionHistorySize,
+                       ScreenManager screenManager, MouseController mouseController,
+                       HintSelectionFrequencies hintSelectionFrequencies) {
+        this.platform = platform;
         this.maxPositionHistorySize = maxPositionHistorySize;
         this.screenManager = screenManager;
         this.mouseController = mouseController;
+        this.hintSelectionFrequencies = hintSelectionFrequencies;
     }
 
     public void setPositionHistoryListener(
@@ -63,29 +88,26 @@ public class HintManager implements ModeListener, MousePositionListener {
         if (!hintMeshConfiguration.enabled()) {
             currentMode = newMode;
             previousHintMeshByTypeAndSelectionKeys.clear();
-            WindowsOverlay.hideHintMesh();
+            platform.hideHintMesh();
             return;
         }
         if (!hintMeshConfiguration.visible()) {
             // This makes the behavior of the hint different depending on whether it is visible.
             // An alternative would be a setting like hint.reset-focused-key-sequence-history=true.
             previousHintMeshByTypeAndSelectionKeys.clear();
-            WindowsOverlay.hideHintMesh();
+            platform.hideHintMesh();
         }
         HintMesh newHintMesh = buildHintMesh(hintMeshConfiguration);
         if (currentMode != null && newMode.hintMesh().equals(currentMode.hintMesh()) &&
             newHintMesh.equals(hintMesh))
             return;
-        selectionKeySubset = newHintMesh.hints()
-                                        .stream()
-                                        .map(Hint::keySequence)
-                                        .flatMap(Collection::stream)
-                                        .collect(Collectors.toSet());
+        if (hintMesh == null || !newHintMesh.hints().equals(hintMesh.hints()))
+            hintTrie = new HintTrie(newHintMesh.hints());
         currentMode = newMode;
         hintMesh = newHintMesh;
         previousHintMeshByTypeAndSelectionKeys.put(
                 hintMeshConfiguration.typeAndSelectionKeys(), hintMesh);
-        WindowsOverlay.setHintMesh(hintMesh);
+        platform.setHintMesh(hintMesh);
     }
 
     private HintMesh buildHintMesh(HintMeshConfiguration hintMeshConfiguration) {
@@ -132,7 +154,7 @@ public class HintManager implements ModeListener, MousePositionListener {
             }
             else if (hintGrid.area() instanceof ActiveWindowHintGridArea activeWindowHintGridArea) {
                 Rectangle activeWindowRectangle =
-                        WindowsOverlay.activeWindowRectangle(1, 1, 0, 0, 0, 0);
+                        platform.activeWindowRectangle(1, 1, 0, 0, 0, 0);
                 Point gridCenter = activeWindowRectangle.center();
                 int hintMeshX, hintMeshY, hintMeshWidth, hintMeshHeight, rowCount, columnCount;
                 Screen activeScreen = screenManager.activeScreen();
@@ -155,43 +177,32 @@ public class HintManager implements ModeListener, MousePositionListener {
             }
             else
                 throw new IllegalStateException();
-            List<Key> selectionKeySubset =
-                    gridSelectionKeySubset(hintMeshConfiguration.typeAndSelectionKeys().selectionKeys(),
-                            fixedSizeHintGrids.getFirst().rowCount *
-                            fixedSizeHintGrids.size(),
-                            fixedSizeHintGrids.getFirst().columnCount *
-                            fixedSizeHintGrids.size());
-            int hintCount = fixedSizeHintGrids.getFirst().rowCount *
-                            fixedSizeHintGrids.getFirst().columnCount *
-                            fixedSizeHintGrids.size();
-            // Find hintLength such that hintKeyCount^hintLength >= rowCount*columnCount
-            int hintLength = hintCount == 1 ? 1 : (int) Math.ceil(
-                    Math.log(hintCount) / Math.log(selectionKeySubset.size()));
-            List<Hint> hints = new ArrayList<>();
-            for (FixedSizeHintGrid fixedSizeHintGrid : fixedSizeHintGrids) {
-                int beginHintIndex = hints.size();
-                hints.addAll(buildHints(fixedSizeHintGrid, selectionKeySubset, hintLength,
-                        beginHintIndex));
+            boolean selectionFrequencyLabels = hintMeshConfiguration.labelAssignment() ==
+                                               HintLabelAssignment.SELECTION_FREQUENCY;
+            HintsKey hintsKey = new HintsKey(hintMeshConfiguration.typeAndSelectionKeys(),
+                    hintMeshConfiguration.labelAssignment(),
+                    List.copyOf(fixedSizeHintGrids),
+                    selectionFrequencyLabels ? hintSelectionFrequencies.version() : -1);
+            PackedHints hints = hintsByKey.get(hintsKey);
+            if (hints == null) {
+                hints = gridHints(
+                        hintMeshConfiguration.typeAndSelectionKeys().selectionKeys(),
+                        fixedSizeHintGrids);
+                if (selectionFrequencyLabels)
+                    hints = hintSelectionFrequencies.prefixFreeHints(hints);
+                hintsByKey.put(hintsKey, hints);
             }
             hintMesh.hints(hints);
         }
         else {
-            int hintCount = positionHistory.size();
-            List<Hint> hints = new ArrayList<>(hintCount);
-            List<Key> selectionKeySubset = maxPositionHistorySize >=
-                                           hintMeshConfiguration.typeAndSelectionKeys()
-                                                                .selectionKeys()
-                                                                .size() ?
-                    hintMeshConfiguration.typeAndSelectionKeys().selectionKeys() :
-                    hintMeshConfiguration.typeAndSelectionKeys()
-                                         .selectionKeys()
-                                         .subList(0, maxPositionHistorySize);
-            int hintLength = (int) Math.ceil(Math.log(maxPositionHistorySize) /
-                                             Math.log(selectionKeySubset.size()));
-            for (Point point : positionHistory) {
-                List<Key> keySequence = hintKeySequence(selectionKeySubset, hintLength,
-                        idByPosition.get(point) % maxPositionHistorySize);
-                hints.add(new Hint(point.x(), point.y(), keySequence));
+            HintsKey hintsKey = new HintsKey(hintMeshConfiguration.typeAndSelectionKeys(),
+                    hintMeshConfiguration.labelAssignment(), List.of(),
+                    positionHistoryVersion);
+            PackedHints hints = hintsByKey.get(hintsKey);
+            if (hints == null) {
+                hints = positionHistoryHints(
+                        hintMeshConfiguration.typeAndSelectionKeys().selectionKeys());
+                hintsByKey.put(hintsKey, hints);
             }
             hintMesh.hints(hints);
         }
@@ -206,9 +217,51 @@ public class HintManager implements ModeListener, MousePositionListener {
         return hintMesh.build();
     }
 
-    private static List<Hint> buildHints(FixedSizeHintGrid fixedSizeHintGrid,
-                                         List<Key> selectionKeySubset, int hintLength,
-                                         int beginHintIndex) {
+    private static PackedHints gridHints(List<Key> selectionKeys,
+                                         List<FixedSizeHintGrid> fixedSizeHintGrids) {
+        // The grids of the screens do not necessarily have the same size.
+        int[] beginHintIndexes = new int[fixedSizeHintGrids.size() + 1];
+        for (int gridIndex = 0; gridIndex < fixedSizeHintGrids.size(); gridIndex++) {
+            FixedSizeHintGrid fixedSizeHintGrid = fixedSizeHintGrids.get(gridIndex);
+            beginHintIndexes[gridIndex + 1] = beginHintIndexes[gridIndex] +
+                                              fixedSizeHintGrid.rowCount() *
+                                              fixedSizeHintGrid.columnCount();
+        }
+        int hintCount = beginHintIndexes[fixedSizeHintGrids.size()];
+        List<Key> selectionKeySubset =
+                gridSelectionKeySubset(selectionKeys, fixedSizeHintGrids, hintCount);
+        // Find hintLength such that hintKeyCount^hintLength >= hintCount, otherwise the
+        // codes of hintCode would wrap around.
+        int hintLength = hintCount == 1 ? 1 : (int) Math.ceil(
+                Math.log(hintCount) / Math.log(selectionKeySubset.size()));
+        PackedHintsBuilder hints = new PackedHintsBuilder(selectionKeySubset, hintCount);
+        // Each grid (one per screen) has its own range of hint indexes, so the grids are
+        // built in parallel.
+        IntStream.range(0, fixedSizeHintGrids.size())
+                 .parallel()
+                 .forEach(gridIndex -> buildHints(fixedSizeHintGrids.get(gridIndex), hints,
+                         hintLength, beginHintIndexes[gridIndex]));
+        return hints.build();
+    }
+
+    private PackedHints positionHistoryHints(List<Key> selectionKeys) {
+        int hintCount = positionHistory.size();
+        List<Key> selectionKeySubset = maxPositionHistorySize >= selectionKeys.size() ?
+                selectionKeys : selectionKeys.subList(0, maxPositionHistorySize);
+        int hintLength = (int) Math.ceil(Math.log(maxPositionHistorySize) /
+                                         Math.log(selectionKeySubset.size()));
+        PackedHintsBuilder hints = new PackedHintsBuilder(selectionKeySubset, hintCount);
+        for (int hintIndex = 0; hintIndex < hintCount; hintIndex++) {
+            Point point = positionHistory.get(hintIndex);
+            hints.set(hintIndex, point.x(), point.y(), hintCode(hints, hintLength,
+                    idByPosition.get(point) % maxPositionHistorySize), hintLength);
+        }
+        return hints.build();
+    }
+
+    private static void buildHints(FixedSizeHintGrid fixedSizeHintGrid,
+                                   PackedHintsBuilder hints, int hintLength,
+                                   int beginHintIndex) {
         int rowCount = fixedSizeHintGrid.rowCount();
         int columnCount = fixedSizeHintGrid.columnCount();
         int hintMeshWidth = fixedSizeHintGrid.hintMeshWidth();
@@ -217,35 +270,28 @@ public class HintManager implements ModeListener, MousePositionListener {
         int hintMeshY = fixedSizeHintGrid.hintMeshY();
         int cellWidth = hintMeshWidth / columnCount;
         int cellHeight = hintMeshHeight / rowCount;
-        int gridHintCount = rowCount * columnCount;
-        List<Hint> hints = new ArrayList<>(gridHintCount);
         int hintIndex = beginHintIndex;
         for (int rowIndex = 0; rowIndex < rowCount; rowIndex++) {
             for (int columnIndex = 0; columnIndex < columnCount; columnIndex++) {
-                List<Key> keySequence = hintKeySequence(selectionKeySubset, hintLength, hintIndex);
-                hintIndex++;
+                long code = hintCode(hints, hintLength, hintIndex);
                 int hintCenterX = hintMeshX + columnIndex * cellWidth + cellWidth / 2;
                 int hintCenterY = hintMeshY + rowIndex * cellHeight + cellHeight / 2;
-                hints.add(new Hint(hintCenterX, hintCenterY, keySequence));
+                hints.set(hintIndex, hintCenterX, hintCenterY, code, hintLength);
+                hintIndex++;
             }
         }
-        return hints;
     }
 
-    private static List<Key> hintKeySequence(List<Key> selectionKeySubset, int hintLength,
-                                             int hintIndex) {
-        List<Key> keySequence = new ArrayList<>();
+    private static long hintCode(PackedHintsBuilder hints, int hintLength,
+                                 int hintIndex) {
         // We want the hints to look like this:
         // aa, ba, ..., za
         // ab, bb, ..., zb
         // az, bz, ..., zz
         // The ideal situation is when rowCount = columnCount = hintKeys.size().
-        for (int i = 0; i < hintLength; i++) {
-            keySequence.add(selectionKeySubset.get(
-                    (int) (hintIndex / Math.pow(selectionKeySubset.size(), i) %
-                           selectionKeySubset.size())));
-        }
-        return keySequence;
+        // The first key is the least significant digit of the code, so the code is
+        // hintIndex itself (modulo the number of codes of that length).
+        return hintIndex % hints.codeCount(hintLength);
     }
 
     private FixedSizeHintGrid screenFixedSizeHintGrid(HintGridArea area, Screen screen,
@@ -277,14 +323,46 @@ public class HintManager implements ModeListener, MousePositionListener {
 
     }
 
-    private static List<Key> gridSelectionKeySubset(List<Key> keys, int rowCount,
-                                                    int columnCount) {
-        int hintCount = rowCount * columnCount;
+    /**
+     * The hints only depend on the selection keys and on the geometry of the grids (which
+     * is derived from the screens, the grid center and the active window), or on the
+     * position history.
+     * @param version the position history version for a position history, the selection
+     *                frequencies version for a grid with selection frequency labels, -1
+     *                otherwise
+     */
+    private record HintsKey(HintMeshTypeAndSelectionKeys typeAndSelectionKeys,
+                            HintLabelAssignment labelAssignment,
+                            List<FixedSizeHintGrid> fixedSizeHintGrids, int version) {
+
+    }
+
+    /**
+     * Least recently used entries are evicted beyond maxSize.
+     */
+    private static <K, V> Map<K, V> lruMap(int maxSize) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * @param hintCount the number of hints of all the grids
+     */
+    private static List<Key> gridSelectionKeySubset(
+            List<Key> keys, List<FixedSizeHintGrid> fixedSizeHintGrids, int hintCount) {
         if (hintCount < keys.size())
             // Will be single-key hints.
             return keys.subList(0, hintCount);
-        return rowCount == columnCount && rowCount < keys.size() ?
-                keys.subList(0, rowCount) : keys;
+        // A single square grid: one key per row (and per column).
+        FixedSizeHintGrid fixedSizeHintGrid = fixedSizeHintGrids.getFirst();
+        return fixedSizeHintGrids.size() == 1 &&
+               fixedSizeHintGrid.rowCount() == fixedSizeHintGrid.columnCount() &&
+               fixedSizeHintGrid.rowCount() < keys.size() ?
+                keys.subList(0, fixedSizeHintGrid.rowCount()) : keys;
     }
 
     @Override
@@ -300,46 +378,40 @@ public class HintManager implements ModeListener, MousePositionListener {
             List<Key> focusedKeySequence = hintMesh.focusedKeySequence();
             if (!focusedKeySequence.isEmpty()) {
                 hintMesh = hintMesh.builder()
-                                   .focusedKeySequence(focusedKeySequence.subList(0,
-                                           focusedKeySequence.size() - 1))
+                                   .focusedKeySequence(hintTrie.node(focusedKeySequence)
+                                                               .parent()
+                                                               .keySequence())
                                    .build();
                 previousHintMeshByTypeAndSelectionKeys.put(
                         hintMeshConfiguration.typeAndSelectionKeys(), hintMesh);
-                WindowsOverlay.setHintMesh(hintMesh);
+                platform.setHintMesh(hintMesh);
                 return PressKeyEventProcessing.hintUndo();
             }
             return PressKeyEventProcessing.unhandled(); // ComboWatcher can have a go at it.
         }
-        if (!selectionKeySubset.contains(key))
-            return PressKeyEventProcessing.unhandled();
-        List<Key> newFocusedKeySequence = new ArrayList<>(hintMesh.focusedKeySequence());
-        newFocusedKeySequence.add(key);
-        Hint exactMatchHint = null;
-        boolean atLeastOneHintIsStartsWithNewFocusedHintKeySequence = false;
-        for (Hint hint : hintMesh.hints()) {
-            if (hint.keySequence().size() < newFocusedKeySequence.size())
-                continue;
-            if (!hint.startsWith(newFocusedKeySequence))
-                continue;
-            atLeastOneHintIsStartsWithNewFocusedHintKeySequence = true;
-            if (hint.keySequence().size() == newFocusedKeySequence.size()) {
-                exactMatchHint = hint;
-                break;
-            }
-        }
-        if (!atLeastOneHintIsStartsWithNewFocusedHintKeySequence)
+        HintTrie.Node newFocusedNode =
+                hintTrie.node(hintMesh.focusedKeySequence()).child(key);
+        if (newFocusedNode == null)
             return PressKeyEventProcessing.unhandled();
-        if (exactMatchHint != null) {
+        int exactMatchHintIndex = newFocusedNode.hintIndex();
+        if (exactMatchHintIndex != -1) {
+            PackedHints hints = hintMesh.hints();
             // Move synchronously. After this moveTo call, we know the move was executed
             // and a click can be performed at the new position.
-            mouseController.synchronousMoveTo(exactMatchHint.centerX(), exactMatchHint.centerY());
+            mouseController.synchronousMoveTo(hints.centerX(exactMatchHintIndex),
+                    hints.centerY(exactMatchHintIndex));
             if (hintMeshConfiguration.savePositionAfterSelection())
                 savePosition();
+            if (hintMeshConfiguration.labelAssignment() ==
+                HintLabelAssignment.SELECTION_FREQUENCY &&
+                hintMeshConfiguration.typeAndSelectionKeys().type() instanceof
+                        HintMeshType.HintGrid)
+                hintSelectionFrequencies.selected(hints, exactMatchHintIndex);
             if (hintMeshConfiguration.modeAfterSelection() != null) {
-                logger.debug("Hint " + exactMatchHint.keySequence()
-                                                                 .stream()
-                                                                 .map(Key::name)
-                                                                 .toList() +
+                logger.debug("Hint " + hints.keySequence(exactMatchHintIndex)
+                                            .stream()
+                                            .map(Key::name)
+                                            .toList() +
                              " selected, switching to " +
                              hintMeshConfiguration.modeAfterSelection());
                 modeController.switchMode(hintMeshConfiguration.modeAfterSelection());
@@ -349,7 +421,7 @@ public class HintManager implements ModeListener, MousePositionListener {
                         hintMesh.builder().focusedKeySequence(List.of()).build();
                 previousHintMeshByTypeAndSelectionKeys.put(
                         hintMeshConfiguration.typeAndSelectionKeys(), hintMesh);
-                WindowsOverlay.setHintMesh(hintMesh);
+                platform.setHintMesh(hintMesh);
             }
             return hintMeshConfiguration.swallowHintEndKeyPress() ?
                     PressKeyEventProcessing.swallowedHintEnd() :
@@ -357,10 +429,12 @@ public class HintManager implements ModeListener, MousePositionListener {
         }
         else {
             hintMesh =
-                    hintMesh.builder().focusedKeySequence(newFocusedKeySequence).build();
+                    hintMesh.builder()
+                            .focusedKeySequence(newFocusedNode.keySequence())
+                            .build();
             previousHintMeshByTypeAndSelectionKeys.put(
                     hintMeshConfiguration.typeAndSelectionKeys(), hintMesh);
-            WindowsOverlay.setHintMesh(hintMesh);
+            platform.setHintMesh(hintMesh);
             return PressKeyEventProcessing.partOfHintPrefix();
         }
     }
@@ -377,6 +451,7 @@ public class HintManager implements ModeListener, MousePositionListener {
         if (positionHistory.size() == maxPositionHistorySize)
             positionHistory.removeFirst();
         positionHistory.add(point);
+        positionHistoryVersion++;
         positionCycleIndex = positionHistory.size() - 1;
         logger.debug(
                 "Saved mouse position " + point.x() + "," + point.y() + " to history");
@@ -387,6 +462,7 @@ public class HintManager implements ModeListener, MousePositionListener {
         idByPosition.clear();
         positionIdCount = 0;
         positionCycleIndex = 0;
+        positionHistoryVersion++;
         logger.debug("Reset mouse position history");
     }
 
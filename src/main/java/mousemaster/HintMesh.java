@@ -5,7 +5,7 @@ import java.util.List;
 /**
  * Unlike a grid, it does not necessarily have fixed-size cells.
  */
-public record HintMesh(boolean visible, HintMeshType type, List<Hint> hints, List<Key> focusedKeySequence,
+public record HintMesh(boolean visible, HintMeshType type, PackedHints hints, List<Key> focusedKeySequence,
                        String fontName, int fontSize, String fontHexColor,
                        String selectedPrefixFontHexColor, String boxHexColor) {
 
@@ -16,7 +16,7 @@ public record HintMesh(boolean visible, HintMeshType type, List<Hint> hints, Lis
     public static class HintMeshBuilder {
         private boolean visible;
         private HintMeshType type;
-        private List<Hint> hints;
+        private PackedHints hints;
         private List<Key> focusedKeySequence = List.of();
         private String fontName;
         private int fontSize;
@@ -47,7 +47,7 @@ public record HintMesh(boolean visible, HintMeshType type, List<Hint> hints, Lis
             return visible;
         }
 
-        public List<Hint> hints() {
+        public PackedHints hints() {
             return hints;
         }
 
@@ -85,7 +85,7 @@ public record HintMesh(boolean visible, HintMeshType type, List<Hint> hints, Lis
             return this;
         }
 
-        public HintMeshBuilder hints(List<Hint> hints) {
+        public HintMeshBuilder hints(PackedHints hints) {
             this.hints = hints;
             return this;
         }
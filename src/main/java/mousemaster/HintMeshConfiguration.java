@@ -11,7 +11,8 @@ public record HintMeshConfiguration(boolean enabled,
                                     String selectedPrefixFontHexColor, String boxHexColor,
                                     String modeAfterSelection,
                                     boolean swallowHintEndKeyPress,
-                                    boolean savePositionAfterSelection) {
+                                    boolean savePositionAfterSelection,
+                                    HintLabelAssignment labelAssignment) {
 
     public static class HintMeshConfigurationBuilder {
         private Boolean enabled;
@@ -27,6 +28,7 @@ public record HintMeshConfiguration(boolean enabled,
         private String modeAfterSelection;
         private Boolean swallowHintEndKeyPress;
         private Boolean savePositionAfterSelection;
+        private HintLabelAssignment labelAssignment;
 
         public HintMeshConfigurationBuilder enabled(boolean enabled) {
             this.enabled = enabled;
@@ -92,6 +94,12 @@ public record HintMeshConfiguration(boolean enabled,
             return this;
         }
 
+        public HintMeshConfigurationBuilder labelAssignment(
+                HintLabelAssignment labelAssignment) {
+            this.labelAssignment = labelAssignment;
+            return this;
+        }
+
         public HintMeshTypeBuilder type() {
             return type;
         }
@@ -144,12 +152,16 @@ public record HintMeshConfiguration(boolean enabled,
             return savePositionAfterSelection;
         }
 
+        public HintLabelAssignment labelAssignment() {
+            return labelAssignment;
+        }
+
         public HintMeshConfiguration build() {
             return new HintMeshConfiguration(enabled, visible,
                     new HintMeshTypeAndSelectionKeys(type.build(), selectionKeys),
                     undoKey, fontName, fontSize, fontHexColor, selectedPrefixFontHexColor,
                     boxHexColor, modeAfterSelection, swallowHintEndKeyPress,
-                    savePositionAfterSelection);
+                    savePositionAfterSelection, labelAssignment);
         }
 
     }
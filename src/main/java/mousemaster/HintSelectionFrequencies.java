@@ -0,0 +1,263 @@
+package mousemaster;
+
+import mousemaster.PackedHints.PackedHintsBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * How many times each hint cell (identified by its center) was selected, persisted to a
+ * text file (one "x y count" line per cell). The file is read once, when a loaded
+ * configuration first uses selection frequency labels, and the counts are then kept in
+ * memory across configuration reloads: a
+ * selection (from the keyboard hook) does no IO, the file is rewritten by a timer of the
+ * main loop at most {@link #SAVE_DELAY_NANOS} after a selection, and when mousemaster
+ * stops.
+ * The frequencies weight a Huffman code over the selection keys (see
+ * {@link HintLabelAssignment#SELECTION_FREQUENCY}): only the code lengths come from the
+ * frequencies, the labels are then derived from the lengths, so that a selection that
+ * does not change the lengths does not change the labels.
+ */
+public class HintSelectionFrequencies {
+
+    private static final Logger logger =
+            LoggerFactory.getLogger(HintSelectionFrequencies.class);
+    private static final long SAVE_DELAY_NANOS = 5_000_000_000L;
+
+    /**
+     * Null if the frequencies are not persisted.
+     */
+    private final Path path;
+    private final Map<Point, Long> countByCenter = new HashMap<>();
+    /**
+     * True if there are selections that are not saved yet.
+     */
+    private boolean unsaved;
+    private TimerService timerService;
+    private TimerService.Timer saveTimer;
+    /**
+     * Incremented when a selection changes the code lengths of the hints it was selected
+     * from, so that hints built from older frequencies are not reused. Other hints built
+     * from older frequencies (of another geometry) are reused until then.
+     */
+    private int version;
+
+    /**
+     * @param path null if the frequencies are not persisted
+     */
+    public HintSelectionFrequencies(Path path) {
+        this.path = path;
+        if (path != null && Files.exists(path))
+            load();
+    }
+
+    /**
+     * Called at each configuration load, since the timer service is recreated: the
+     * selections that are not saved yet are saved by a timer of the new one.
+     */
+    public void setTimerService(TimerService timerService) {
+        this.timerService = timerService;
+        saveTimer = timerService.newTimer(this::save);
+        if (unsaved)
+            timerService.scheduleIn(saveTimer, SAVE_DELAY_NANOS);
+    }
+
+    public int version() {
+        return version;
+    }
+
+    /**
+     * @param hints hints built by {@link #prefixFreeHints}
+     */
+    public void selected(PackedHints hints, int hintIndex) {
+        countByCenter.merge(new Point(hints.centerX(hintIndex), hints.centerY(hintIndex)),
+                1L, Long::sum);
+        if (codeLengthsChanged(hints))
+            version++;
+        if (path == null)
+            return;
+        unsaved = true;
+        // Not rescheduled by the next selections, so that a selection is saved at most
+        // SAVE_DELAY_NANOS later even if the selections keep coming.
+        if (saveTimer != null && !saveTimer.scheduled())
+            timerService.scheduleIn(saveTimer, SAVE_DELAY_NANOS);
+    }
+
+    private void load() {
+        try {
+            for (String line : Files.readAllLines(path)) {
+                if (line.isBlank())
+                    continue;
+                String[] split = line.trim().split("\\s+");
+                if (split.length != 3)
+                    throw new IllegalArgumentException("Invalid line: " + line);
+                countByCenter.put(new Point(Integer.parseInt(split[0]),
+                        Integer.parseInt(split[1])), Long.parseLong(split[2]));
+            }
+            logger.info("Loaded " + countByCenter.size() + " hint selection counts from " +
+                        path);
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn("Unable to load hint selection counts from " + path + ": " + e);
+            countByCenter.clear();
+        }
+    }
+
+    /**
+     * Does nothing if all the selections are already saved.
+     */
+    public void save() {
+        if (!unsaved)
+            return;
+        unsaved = false;
+        List<String> lines = new ArrayList<>(countByCenter.size());
+        for (Map.Entry<Point, Long> entry : countByCenter.entrySet())
+            lines.add(entry.getKey().x() + " " + entry.getKey().y() + " " +
+                      entry.getValue());
+        try {
+            Files.write(path, lines);
+        } catch (IOException e) {
+            logger.warn("Unable to save hint selection counts to " + path + ": " + e);
+        }
+    }
+
+    private boolean codeLengthsChanged(PackedHints hints) {
+        int[] codeLengths = codeLengths(hints);
+        if (codeLengths == null)
+            return false;
+        for (int hintIndex = 0; hintIndex < hints.size(); hintIndex++) {
+            if (codeLengths[hintIndex] != hints.length(hintIndex))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reassigns the key sequences of the hints with a k-ary Huffman code (k being the
+     * number of selection keys), each hint being weighted by 1 + the selection count of
+     * its cell. The key sequences are prefix-free, so a hint is selected as soon as its
+     * key sequence is typed. With no selection yet, the code is as short as possible on
+     * average and the first hints get the shorter sequences.
+     * The code is canonical: the hints sorted by code length then by index get
+     * consecutive key sequences, so the key sequences only depend on the code lengths.
+     * The hints are returned unchanged if a key sequence would not fit in a code.
+     */
+    public PackedHints prefixFreeHints(PackedHints hints) {
+        int hintCount = hints.size();
+        int keyCount = hints.keys().size();
+        if (hintCount == 0 || keyCount < 2)
+            return hints;
+        int[] codeLengths = codeLengths(hints);
+        if (codeLengths == null) {
+            logger.warn("Hint key sequences are too long for " + hintCount +
+                        " hints, ignoring the hint selection counts");
+            return hints;
+        }
+        PackedHintsBuilder builder = new PackedHintsBuilder(hints.keys(), hintCount);
+        // Sorted by length, then by hint index.
+        long[] sortedHints = new long[hintCount];
+        for (int hintIndex = 0; hintIndex < hintCount; hintIndex++)
+            sortedHints[hintIndex] = (long) codeLengths[hintIndex] << 32 | hintIndex;
+        Arrays.sort(sortedHints);
+        // The first key of a key sequence is the most significant digit of its canonical
+        // code, and the least significant digit of its packed code.
+        long canonicalCode = 0;
+        int previousLength = codeLengths[(int) sortedHints[0]];
+        for (long sortedHint : sortedHints) {
+            int hintIndex = (int) sortedHint;
+            int length = (int) (sortedHint >>> 32);
+            canonicalCode *= builder.codeCount(length - previousLength);
+            previousLength = length;
+            long code = 0;
+            long remainingDigits = canonicalCode;
+            for (int keyIndex = length - 1; keyIndex >= 0; keyIndex--) {
+                code += remainingDigits % keyCount * builder.codeCount(keyIndex);
+                remainingDigits /= keyCount;
+            }
+            builder.set(hintIndex, hints.centerX(hintIndex), hints.centerY(hintIndex),
+                    code, length);
+            canonicalCode++;
+        }
+        return builder.build();
+    }
+
+    /**
+     * The lengths of the key sequences of the Huffman code.
+     * @return null if there are less than 2 selection keys, or if a key sequence would
+     * be longer than what a code can hold
+     */
+    private int[] codeLengths(PackedHints hints) {
+        int hintCount = hints.size();
+        int keyCount = hints.keys().size();
+        if (hintCount == 0 || keyCount < 2)
+            return null;
+        PriorityQueue<HuffmanNode> queue = new PriorityQueue<>(
+                Comparator.comparingLong(HuffmanNode::weight)
+                          // Merging leaves first keeps the code lengths close.
+                          .thenComparing(node -> node.children() != null)
+                          // Among equal leaves, the last hints are merged first (and
+                          // get the longer key sequences).
+                          .thenComparing(Comparator.comparingInt(HuffmanNode::order)
+                                                   .reversed()));
+        for (int hintIndex = 0; hintIndex < hintCount; hintIndex++) {
+            long count = countByCenter.getOrDefault(
+                    new Point(hints.centerX(hintIndex), hints.centerY(hintIndex)), 0L);
+            queue.add(new HuffmanNode(1 + count, hintIndex, hintIndex, null));
+        }
+        // Padding leaves of weight 0 so that every merge takes exactly keyCount nodes.
+        int paddingCount = (keyCount - 1 - (hintCount - 1) % (keyCount - 1)) % (keyCount - 1);
+        for (int paddingIndex = 0; paddingIndex < paddingCount; paddingIndex++)
+            queue.add(new HuffmanNode(0, -1, -1, null));
+        int order = 0;
+        while (queue.size() > 1) {
+            List<HuffmanNode> children = new ArrayList<>(keyCount);
+            long weight = 0;
+            for (int childIndex = 0; childIndex < keyCount; childIndex++) {
+                HuffmanNode child = queue.poll();
+                children.add(child);
+                weight += child.weight();
+            }
+            queue.add(new HuffmanNode(weight, -1, order++, children));
+        }
+        int[] codeLengths = new int[hintCount];
+        HuffmanNode root = queue.poll();
+        if (root.children() == null) {
+            // A single hint: it still needs one key.
+            codeLengths[0] = 1;
+            return codeLengths;
+        }
+        int maxLength = new PackedHintsBuilder(hints.keys(), 0).maxLength();
+        return assignCodeLengths(root, 0, maxLength, codeLengths) ? codeLengths : null;
+    }
+
+    /**
+     * @return false if a key sequence would be longer than maxLength
+     */
+    private static boolean assignCodeLengths(HuffmanNode node, int length, int maxLength,
+                                             int[] codeLengths) {
+        if (node.children() == null) {
+            if (node.hintIndex() != -1)
+                codeLengths[node.hintIndex()] = length;
+            return true;
+        }
+        if (length + 1 > maxLength)
+            return false;
+        for (HuffmanNode child : node.children()) {
+            if (!assignCodeLengths(child, length + 1, maxLength, codeLengths))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param hintIndex -1 for padding leaves and internal nodes
+     * @param children null for leaves
+     */
+    private record HuffmanNode(long weight, int hintIndex, int order,
+                               List<HuffmanNode> children) {
+    }
+
+}
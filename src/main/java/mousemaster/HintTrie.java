@@ -0,0 +1,118 @@
+package mousemaster;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prefix tree of the key sequences of a hint mesh's hints, built once per hint mesh so
+ * that {@link HintManager#keyPressed} is O(key sequence length) instead of a scan of all
+ * the hints. A node exists if and only if at least one hint starts with its key sequence.
+ * The children of a node are indexed by the digits of the packed hint codes (see
+ * {@link PackedHints}), and leaves have no children array: a mesh of tens of thousands
+ * of hints is mostly leaves.
+ */
+public class HintTrie {
+
+    private final List<Key> keys;
+    private final Map<Key, Integer> digitByKey = new HashMap<>();
+    private final Node root = new Node(null, -1);
+
+    public HintTrie(PackedHints hints) {
+        keys = hints.keys();
+        for (int digit = 0; digit < keys.size(); digit++)
+            digitByKey.putIfAbsent(keys.get(digit), digit);
+        for (int hintIndex = 0; hintIndex < hints.size(); hintIndex++) {
+            Node node = root;
+            for (int keyIndex = 0; keyIndex < hints.length(hintIndex); keyIndex++) {
+                int digit = hints.digit(hintIndex, keyIndex);
+                if (node.children == null)
+                    node.children = new Node[keys.size()];
+                Node child = node.children[digit];
+                if (child == null) {
+                    child = new Node(node, digit);
+                    node.children[digit] = child;
+                }
+                node = child;
+            }
+            // Like the scan it replaces, the first hint wins if two hints have the same
+            // key sequence.
+            if (node != root && node.hintIndex == -1)
+                node.hintIndex = hintIndex;
+        }
+    }
+
+    public Node root() {
+        return root;
+    }
+
+    /**
+     * @return null if no hint starts with the key sequence
+     */
+    public Node node(List<Key> keySequence) {
+        Node node = root;
+        for (int keyIndex = 0; node != null && keyIndex < keySequence.size(); keyIndex++)
+            node = node.child(keySequence.get(keyIndex));
+        return node;
+    }
+
+    public class Node {
+
+        private final Node parent;
+        private final int digit;
+        private Node[] children;
+        private int hintIndex = -1;
+        private List<Key> keySequence;
+
+        private Node(Node parent, int digit) {
+            this.parent = parent;
+            this.digit = digit;
+        }
+
+        /**
+         * @return null for the root
+         */
+        public Node parent() {
+            return parent;
+        }
+
+        /**
+         * Immutable, so it can be used as the focused key sequence of a hint mesh.
+         * Built on first use.
+         */
+        public List<Key> keySequence() {
+            if (keySequence == null) {
+                if (parent == null)
+                    keySequence = List.of();
+                else {
+                    List<Key> sequence = new ArrayList<>(parent.keySequence());
+                    sequence.add(keys.get(digit));
+                    keySequence = List.copyOf(sequence);
+                }
+            }
+            return keySequence;
+        }
+
+        /**
+         * @return null if no hint starts with the key sequence of this node followed by
+         * the key
+         */
+        public Node child(Key key) {
+            if (children == null)
+                return null;
+            Integer digit = digitByKey.get(key);
+            return digit == null ? null : children[digit];
+        }
+
+        /**
+         * @return the index of the hint whose key sequence is exactly the key sequence of
+         * this node, or -1
+         */
+        public int hintIndex() {
+            return hintIndex;
+        }
+
+    }
+
+}
@@ -2,11 +2,14 @@ package mousemaster;
 
 public class IndicatorManager implements ModeListener {
 
+    private final Platform platform;
     private final MouseState mouseState;
     private final KeyboardState keyboardState;
     private Mode currentMode;
 
-    public IndicatorManager(MouseState mouseState, KeyboardState keyboardState) {
+    public IndicatorManager(Platform platform, MouseState mouseState,
+                            KeyboardState keyboardState) {
+        this.platform = platform;
         this.mouseState = mouseState;
         this.keyboardState = keyboardState;
     }
@@ -15,13 +18,13 @@ public class IndicatorManager implements ModeListener {
         if (currentMode.indicator().enabled()) {
             String indicatorHexColor = indicatorHexColor();
             if (indicatorHexColor == null)
-                WindowsOverlay.hideIndicator();
+                platform.hideIndicator();
             else
-                WindowsOverlay.setIndicator(
+                platform.setIndicator(
                         new Indicator(currentMode.indicator().size(), indicatorHexColor));
         }
         else
-            WindowsOverlay.hideIndicator();
+            platform.hideIndicator();
     }
 
     @Override
@@ -3,6 +3,7 @@ package mousemaster;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public record Key(String staticName, String staticSingleCharacterName, String character) {
 
@@ -142,8 +143,11 @@ public record Key(String staticName, String staticSingleCharacterName, String ch
     );
 
     private static final Map<String, Key> staticallyNamedKeys = new HashMap<>();
+    /**
+     * Concurrent: the combos of the configuration are parsed in parallel.
+     */
     private static final Map<String, Key> keyboardLayoutDependentKeyByCharacter =
-            new HashMap<>();
+            new ConcurrentHashMap<>();
 
     static {
         for (Key key : keyboardLayoutIndependentKeys)
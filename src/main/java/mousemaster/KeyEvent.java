@@ -1,10 +1,11 @@
 package mousemaster;
 
-import java.time.Instant;
-
 public sealed interface KeyEvent {
 
-    Instant time();
+    /**
+     * Nano time of the event, on the scale of {@link Clock#nanoTime()}.
+     */
+    long time();
 
     Key key();
 
@@ -16,7 +17,7 @@ public sealed interface KeyEvent {
         return !isPress();
     }
 
-    record PressKeyEvent(Instant time, Key key) implements KeyEvent {
+    record PressKeyEvent(long time, Key key) implements KeyEvent {
         @Override
         public String toString() {
             // Does not include time.
@@ -24,7 +25,7 @@ public sealed interface KeyEvent {
         }
     }
 
-    record ReleaseKeyEvent(Instant time, Key key) implements KeyEvent {
+    record ReleaseKeyEvent(long time, Key key) implements KeyEvent {
         @Override
         public String toString() {
             // Does not include time.
@@ -0,0 +1,160 @@
+package mousemaster;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A log written by {@link KeyEventRecorder}. The binary format (big-endian) is:
+ * - a header: int MAGIC, short VERSION, long start nano time (clock nano time when the
+ * recording started),
+ * - records, each starting with a type byte. A 0 type byte marks the end of the log.
+ * NAME: byte kind (KEY, MODE or COMMAND), short id, short length, UTF-8 name.
+ * The name of a key, mode or command is written once, before the first record that
+ * refers to its id.
+ * KEY_EVENT: long event time, long processed nano time, short key id, byte flags
+ * (PRESS, EATEN), short id of the mode the event was processed in, byte command count,
+ * short command ids.
+ * COMMAND: long nano time, short mode id, short command id. A command that was run
+ * outside of a key event (for example, by a timer).
+ */
+public record KeyEventLog(long startNanoTime, List<Entry> entries) {
+
+    static final int MAGIC = 0x4d4d4b4c; // MMKL
+    static final short VERSION = 1;
+    static final byte END = 0;
+    static final byte NAME = 1;
+    static final byte KEY_EVENT = 2;
+    static final byte COMMAND = 3;
+    static final byte KEY = 0;
+    static final byte MODE = 1;
+    static final byte COMMAND_NAME = 2;
+    static final byte PRESS = 1;
+    static final byte EATEN = 2;
+    static final int HEADER_SIZE = 4 + 2 + 8;
+
+    public sealed interface Entry {
+    }
+
+    /**
+     * @param commands the toString() of the commands run while the event was processed
+     */
+    public record RecordedKeyEvent(KeyEvent event, long processedNanoTime, boolean eaten,
+                                   String modeName, List<String> commands)
+            implements Entry {
+        @Override
+        public String toString() {
+            return event + (eaten ? " (eaten)" : " (passed)") + " in " + modeName +
+                   ", commands = " + commands;
+        }
+    }
+
+    public record RecordedCommand(long nanoTime, String modeName, String command)
+            implements Entry {
+        @Override
+        public String toString() {
+            return command + " in " + modeName;
+        }
+    }
+
+    public List<RecordedKeyEvent> keyEvents() {
+        List<RecordedKeyEvent> keyEvents = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry instanceof RecordedKeyEvent keyEvent)
+                keyEvents.add(keyEvent);
+        }
+        return keyEvents;
+    }
+
+    public List<RecordedCommand> commands() {
+        List<RecordedCommand> commands = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry instanceof RecordedCommand command)
+                commands.add(command);
+        }
+        return commands;
+    }
+
+    public static KeyEventLog read(Path path) throws IOException {
+        return read(ByteBuffer.wrap(Files.readAllBytes(path)));
+    }
+
+    /**
+     * Reads from position 0 of the buffer (the buffer's position is not changed).
+     */
+    public static KeyEventLog read(ByteBuffer buffer) {
+        ByteBuffer in = buffer.duplicate().clear();
+        if (in.remaining() < HEADER_SIZE || in.getInt() != MAGIC)
+            throw new IllegalArgumentException("Not a key event log");
+        short version = in.getShort();
+        if (version != VERSION)
+            throw new IllegalArgumentException(
+                    "Unsupported key event log version " + version);
+        long startNanoTime = in.getLong();
+        List<String> keyNames = new ArrayList<>();
+        List<String> modeNames = new ArrayList<>();
+        List<String> commandNames = new ArrayList<>();
+        List<Entry> entries = new ArrayList<>();
+        while (in.hasRemaining()) {
+            byte type = in.get();
+            switch (type) {
+                case END -> {
+                    return new KeyEventLog(startNanoTime, List.copyOf(entries));
+                }
+                case NAME -> {
+                    byte kind = in.get();
+                    int id = in.getShort();
+                    byte[] bytes = new byte[in.getShort()];
+                    in.get(bytes);
+                    List<String> names = switch (kind) {
+                        case KEY -> keyNames;
+                        case MODE -> modeNames;
+                        case COMMAND_NAME -> commandNames;
+                        default -> throw new IllegalArgumentException(
+                                "Invalid name kind " + kind);
+                    };
+                    if (id != names.size())
+                        throw new IllegalArgumentException("Unexpected name id " + id);
+                    names.add(new String(bytes, StandardCharsets.UTF_8));
+                }
+                case KEY_EVENT -> {
+                    long time = in.getLong();
+                    long processedNanoTime = in.getLong();
+                    Key key = Key.ofName(keyNames.get(in.getShort()));
+                    byte flags = in.get();
+                    String modeName = name(modeNames, in.getShort());
+                    int commandCount = in.get();
+                    List<String> commands = new ArrayList<>(commandCount);
+                    for (int commandIndex = 0; commandIndex < commandCount; commandIndex++)
+                        commands.add(commandNames.get(in.getShort()));
+                    KeyEvent event = (flags & PRESS) != 0 ?
+                            new KeyEvent.PressKeyEvent(time, key) :
+                            new KeyEvent.ReleaseKeyEvent(time, key);
+                    entries.add(new RecordedKeyEvent(event, processedNanoTime,
+                            (flags & EATEN) != 0, modeName, List.copyOf(commands)));
+                }
+                case COMMAND -> {
+                    long nanoTime = in.getLong();
+                    String modeName = name(modeNames, in.getShort());
+                    entries.add(new RecordedCommand(nanoTime, modeName,
+                            commandNames.get(in.getShort())));
+                }
+                default -> throw new IllegalArgumentException(
+                        "Invalid record type " + type + " at " + (in.position() - 1));
+            }
+        }
+        return new KeyEventLog(startNanoTime, List.copyOf(entries));
+    }
+
+    /**
+     * Id -1 means no mode (null).
+     */
+    private static String name(List<String> names, int id) {
+        return id == -1 ? null : names.get(id);
+    }
+
+}
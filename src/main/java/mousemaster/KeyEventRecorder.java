@@ -0,0 +1,167 @@
+package mousemaster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import static mousemaster.KeyEventLog.*;
+
+/**
+ * Appends each key event, with its eat decision, the mode it was processed in and the
+ * commands it produced, to a compact binary log (see {@link KeyEventLog} for the format).
+ * The log file is memory-mapped: it survives a crash of the process, and the recording
+ * stops when the file is full.
+ * Only the logic thread records, so there is no lock. Once the names of the keys, modes
+ * and commands are written, recording does not allocate.
+ * {@link KeyEventReplayer} replays a log.
+ */
+public class KeyEventRecorder implements ModeListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(KeyEventRecorder.class);
+    /**
+     * A key event record without commands is 23 bytes.
+     */
+    public static final int DEFAULT_CAPACITY = 64 * 1024 * 1024;
+    private static final int MAX_COMMAND_COUNT = Byte.MAX_VALUE;
+
+    private final Clock clock;
+    private final ByteBuffer buffer;
+    private final Map<Key, Integer> idByKey = new HashMap<>();
+    private final Map<String, Integer> idByModeName = new HashMap<>();
+    private final Map<Command, Integer> idByCommand = new HashMap<>();
+    private int modeId = -1;
+    private boolean processingKeyEvent;
+    private int keyEventModeId;
+    private final int[] keyEventCommandIds = new int[MAX_COMMAND_COUNT];
+    private int keyEventCommandCount;
+    private boolean full;
+
+    /**
+     * @param buffer the log is written from position 0 and ends at the first 0 type byte,
+     *               so the buffer is expected to be zeroed
+     */
+    public KeyEventRecorder(Clock clock, ByteBuffer buffer) {
+        this.clock = clock;
+        this.buffer = buffer;
+        buffer.clear();
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putLong(clock.nanoTime());
+    }
+
+    /**
+     * The file is created if it does not exist, and overwritten otherwise.
+     */
+    public static KeyEventRecorder open(Path path, int capacity, Clock clock)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            // The mapping stays valid after the channel is closed.
+            return new KeyEventRecorder(clock,
+                    channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+        }
+    }
+
+    /**
+     * The recorded bytes, from position 0 (the returned buffer is independent of the
+     * recorder's).
+     */
+    public ByteBuffer recordedBytes() {
+        return buffer.duplicate().flip();
+    }
+
+    /**
+     * The commands run until {@link #keyEventProcessed} are recorded with the key event.
+     */
+    public void keyEventStarted() {
+        processingKeyEvent = true;
+        keyEventModeId = modeId;
+        keyEventCommandCount = 0;
+    }
+
+    public void keyEventProcessed(KeyEvent event, boolean mustBeEaten) {
+        processingKeyEvent = false;
+        int keyId = id(idByKey, event.key(), KEY, event.key().name());
+        if (!reserve(1 + 8 + 8 + 2 + 1 + 2 + 1 + 2 * keyEventCommandCount))
+            return;
+        buffer.put(KEY_EVENT);
+        buffer.putLong(event.time());
+        buffer.putLong(clock.nanoTime());
+        buffer.putShort((short) keyId);
+        buffer.put((byte) ((event.isPress() ? PRESS : 0) | (mustBeEaten ? EATEN : 0)));
+        buffer.putShort((short) keyEventModeId);
+        buffer.put((byte) keyEventCommandCount);
+        for (int commandIndex = 0; commandIndex < keyEventCommandCount; commandIndex++)
+            buffer.putShort((short) keyEventCommandIds[commandIndex]);
+    }
+
+    public void commandRun(Command command) {
+        int commandId = id(idByCommand, command, COMMAND_NAME, command.toString());
+        if (processingKeyEvent) {
+            if (keyEventCommandCount < MAX_COMMAND_COUNT)
+                keyEventCommandIds[keyEventCommandCount++] = commandId;
+            return;
+        }
+        if (!reserve(1 + 8 + 2 + 2))
+            return;
+        buffer.put(COMMAND);
+        buffer.putLong(clock.nanoTime());
+        buffer.putShort((short) modeId);
+        buffer.putShort((short) commandId);
+    }
+
+    @Override
+    public void modeChanged(Mode newMode) {
+        modeId = id(idByModeName, newMode.name(), MODE, newMode.name());
+    }
+
+    @Override
+    public void modeTimedOut() {
+        // No op.
+    }
+
+    /**
+     * Writes the name record the first time a key, mode or command is seen.
+     */
+    private <T> int id(Map<T, Integer> idByValue, T value, byte kind, String name) {
+        Integer id = idByValue.get(value);
+        if (id != null)
+            return id;
+        id = idByValue.size();
+        if (id > Short.MAX_VALUE)
+            throw new IllegalStateException("Too many names in key event log: " + name);
+        idByValue.put(value, id);
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (reserve(1 + 1 + 2 + 2 + bytes.length)) {
+            buffer.put(NAME);
+            buffer.put(kind);
+            buffer.putShort((short) (int) id);
+            buffer.putShort((short) bytes.length);
+            buffer.put(bytes);
+        }
+        return id;
+    }
+
+    /**
+     * Keeps one byte for the END type byte.
+     */
+    private boolean reserve(int recordSize) {
+        if (full)
+            return false;
+        if (buffer.remaining() > recordSize)
+            return true;
+        full = true;
+        logger.warn("Key event log is full, stopping the recording");
+        return false;
+    }
+
+}
@@ -0,0 +1,141 @@
+package mousemaster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Replays a log of {@link KeyEventRecorder}: the recorded key events are fed to a
+ * Mousemaster running on a {@link SimulatedPlatform} (single 1920x1080 screen), at their
+ * recorded times on a {@link VirtualClock}. The eat decisions, modes and commands of the
+ * replay are then compared with the recorded ones.
+ * The configuration file must be the one the log was recorded with.
+ * The replay runs as fast as possible, so it can also be used as a macro-benchmark of
+ * the combo engine.
+ * Usage: --configuration-file=mousemaster.properties --record-file=mousemaster.keylog
+ */
+public class KeyEventReplayer {
+
+    private static final Logger logger = LoggerFactory.getLogger(KeyEventReplayer.class);
+    /**
+     * Time left after the last event for the timers (for example, mode timeouts) to fire.
+     */
+    private static final long STOP_DELAY_NANOS = 5_000_000_000L;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path configurationPath = argument(args, "--configuration-file=");
+        Path recordPath = argument(args, "--record-file=");
+        if (configurationPath == null || recordPath == null)
+            throw new IllegalArgumentException(
+                    "Usage: --configuration-file=<file> --record-file=<file>");
+        KeyEventLog log = KeyEventLog.read(recordPath);
+        Replay replay = replay(configurationPath, log, ComboEngine.AUTOMATON);
+        List<String> differences = differences(log, replay.log());
+        differences.forEach(logger::info);
+        logger.info("Replayed " + log.keyEvents().size() + " key events in " +
+                    replay.runNanos() / 1_000_000 + "ms, " + differences.size() +
+                    " differences");
+    }
+
+    private static Path argument(String[] args, String prefix) {
+        return Stream.of(args)
+                     .filter(arg -> arg.startsWith(prefix))
+                     .map(arg -> Paths.get(arg.substring(prefix.length())))
+                     .findFirst()
+                     .orElse(null);
+    }
+
+    public static KeyEventLog replay(Path configurationPath, KeyEventLog log)
+            throws IOException, InterruptedException {
+        return replay(configurationPath, log, ComboEngine.AUTOMATON).log();
+    }
+
+    /**
+     * @param log      the log recorded during the replay
+     * @param runNanos time spent running the main loop, i.e. processing the events (the
+     *                 configuration loading is not included)
+     */
+    public record Replay(KeyEventLog log, long runNanos) {
+    }
+
+    public static Replay replay(Path configurationPath, KeyEventLog log,
+                                ComboEngine comboEngine)
+            throws IOException, InterruptedException {
+        VirtualClock clock = new VirtualClock(Instant.EPOCH);
+        List<KeyEventLog.RecordedKeyEvent> keyEvents = log.keyEvents();
+        long lastEventNanoTime = keyEvents.isEmpty() ? 0 :
+                keyEvents.getLast().event().time() - log.startNanoTime();
+        SimulatedPlatform platform = new SimulatedPlatform(clock,
+                Set.of(new Screen(new Rectangle(0, 0, 1920, 1080), 96, 1)),
+                lastEventNanoTime + STOP_DELAY_NANOS);
+        for (KeyEventLog.RecordedKeyEvent keyEvent : keyEvents) {
+            KeyEvent event = keyEvent.event();
+            long time = event.time() - log.startNanoTime();
+            platform.scheduleKeyEvent(event.isPress() ?
+                    new KeyEvent.PressKeyEvent(time, event.key()) :
+                    new KeyEvent.ReleaseKeyEvent(time, event.key()));
+        }
+        KeyEventRecorder recorder = new KeyEventRecorder(clock,
+                ByteBuffer.allocate(KeyEventRecorder.DEFAULT_CAPACITY));
+        Mousemaster mousemaster =
+                new Mousemaster(configurationPath, platform, clock, recorder, comboEngine,
+                        new HintSelectionFrequencies(null));
+        long before = System.nanoTime();
+        mousemaster.run();
+        long runNanos = System.nanoTime() - before;
+        return new Replay(KeyEventLog.read(recorder.recordedBytes()), runNanos);
+    }
+
+    /**
+     * Compares the key events one by one (the times are ignored), then the commands run
+     * outside of key events.
+     */
+    public static List<String> differences(KeyEventLog log, KeyEventLog replayLog) {
+        List<String> differences = new ArrayList<>();
+        List<KeyEventLog.RecordedKeyEvent> keyEvents = log.keyEvents();
+        List<KeyEventLog.RecordedKeyEvent> replayKeyEvents = replayLog.keyEvents();
+        for (int eventIndex = 0;
+             eventIndex < Math.max(keyEvents.size(), replayKeyEvents.size()); eventIndex++) {
+            KeyEventLog.RecordedKeyEvent keyEvent =
+                    eventIndex < keyEvents.size() ? keyEvents.get(eventIndex) : null;
+            KeyEventLog.RecordedKeyEvent replayKeyEvent =
+                    eventIndex < replayKeyEvents.size() ? replayKeyEvents.get(eventIndex) :
+                            null;
+            if (keyEvent == null || replayKeyEvent == null ||
+                !keyEvent.event().key().equals(replayKeyEvent.event().key()) ||
+                keyEvent.event().isPress() != replayKeyEvent.event().isPress() ||
+                keyEvent.eaten() != replayKeyEvent.eaten() ||
+                !keyEvent.commands().equals(replayKeyEvent.commands()) ||
+                !Objects.equals(keyEvent.modeName(), replayKeyEvent.modeName()))
+                differences.add("Key event #" + eventIndex + ": recorded " + keyEvent +
+                                ", replayed " + replayKeyEvent);
+        }
+        List<KeyEventLog.RecordedCommand> commands = log.commands();
+        List<KeyEventLog.RecordedCommand> replayCommands = replayLog.commands();
+        for (int commandIndex = 0;
+             commandIndex < Math.max(commands.size(), replayCommands.size());
+             commandIndex++) {
+            KeyEventLog.RecordedCommand command =
+                    commandIndex < commands.size() ? commands.get(commandIndex) : null;
+            KeyEventLog.RecordedCommand replayCommand =
+                    commandIndex < replayCommands.size() ?
+                            replayCommands.get(commandIndex) : null;
+            if (command == null || replayCommand == null ||
+                !command.toString().equals(replayCommand.toString()))
+                differences.add("Command #" + commandIndex + ": recorded " + command +
+                                ", replayed " + replayCommand);
+        }
+        return differences;
+    }
+
+}
@@ -0,0 +1,52 @@
+package mousemaster;
+
+import java.util.*;
+
+/**
+ * Interns keys to dense ordinals so that sets of keys can be {@link KeySet} bitmasks.
+ * Created when the configuration is loaded, with the configuration's keys first (they
+ * get the lowest ordinals). Other keys (for example, keys that are only pressed, and
+ * that no combo refers to) are given the next ordinal the first time they are seen.
+ * Only used by the logic thread, once the configuration is loaded.
+ */
+public class KeyOrdinals {
+
+    private final Map<Key, Integer> ordinalByKey = new HashMap<>();
+    private final List<Key> keys = new ArrayList<>();
+
+    public static KeyOrdinals of(ModeMap modeMap) {
+        KeyOrdinals keyOrdinals = new KeyOrdinals();
+        modeMap.summary().comboKeys().forEach(keyOrdinals::ordinal);
+        return keyOrdinals;
+    }
+
+    /**
+     * Does not write if the key already has an ordinal: the combos of the configuration
+     * can then be compiled concurrently (see {@link AutomatonComboWatcher}).
+     */
+    public int ordinal(Key key) {
+        Integer ordinal = ordinalByKey.get(key);
+        if (ordinal != null)
+            return ordinal;
+        ordinal = keys.size();
+        ordinalByKey.put(key, ordinal);
+        keys.add(key);
+        return ordinal;
+    }
+
+    public Key key(int ordinal) {
+        return keys.get(ordinal);
+    }
+
+    public int size() {
+        return keys.size();
+    }
+
+    public KeySet keySet(Collection<Key> keys) {
+        KeySet keySet = new KeySet(this);
+        for (Key key : keys)
+            keySet.add(ordinal(key));
+        return keySet;
+    }
+
+}
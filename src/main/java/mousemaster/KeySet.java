@@ -0,0 +1,131 @@
+package mousemaster;
+
+import java.util.Arrays;
+import java.util.StringJoiner;
+
+/**
+ * Mutable set of keys, as a bitmask of {@link KeyOrdinals} ordinals.
+ * Set operations are word-wise and do not allocate (unless the set has to grow).
+ */
+public class KeySet {
+
+    private static final long[] NO_WORDS = new long[0];
+
+    private final KeyOrdinals keyOrdinals;
+    private long[] words = NO_WORDS;
+
+    public KeySet(KeyOrdinals keyOrdinals) {
+        this.keyOrdinals = keyOrdinals;
+    }
+
+    public void add(int ordinal) {
+        int wordIndex = ordinal >>> 6;
+        if (wordIndex >= words.length)
+            words = Arrays.copyOf(words, Math.max(wordIndex + 1, words.length * 2));
+        words[wordIndex] |= 1L << ordinal;
+    }
+
+    public void remove(int ordinal) {
+        int wordIndex = ordinal >>> 6;
+        if (wordIndex < words.length)
+            words[wordIndex] &= ~(1L << ordinal);
+    }
+
+    public boolean contains(int ordinal) {
+        int wordIndex = ordinal >>> 6;
+        return wordIndex < words.length && (words[wordIndex] & (1L << ordinal)) != 0;
+    }
+
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0)
+                return false;
+        }
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(words, 0);
+    }
+
+    /**
+     * Makes this set a copy of other.
+     */
+    public void set(KeySet other) {
+        if (words.length < other.words.length)
+            words = new long[other.words.length];
+        System.arraycopy(other.words, 0, words, 0, other.words.length);
+        Arrays.fill(words, other.words.length, words.length, 0);
+    }
+
+    public void retainAll(KeySet other) {
+        for (int wordIndex = 0; wordIndex < words.length; wordIndex++)
+            words[wordIndex] &= wordIndex < other.words.length ? other.words[wordIndex] : 0;
+    }
+
+    public void removeAll(KeySet other) {
+        int wordCount = Math.min(words.length, other.words.length);
+        for (int wordIndex = 0; wordIndex < wordCount; wordIndex++)
+            words[wordIndex] &= ~other.words[wordIndex];
+    }
+
+    public boolean containsAll(KeySet other) {
+        for (int wordIndex = 0; wordIndex < other.words.length; wordIndex++) {
+            long word = wordIndex < words.length ? words[wordIndex] : 0;
+            if ((other.words[wordIndex] & ~word) != 0)
+                return false;
+        }
+        return true;
+    }
+
+    public boolean containsAny(KeySet other) {
+        int wordCount = Math.min(words.length, other.words.length);
+        for (int wordIndex = 0; wordIndex < wordCount; wordIndex++) {
+            if ((words[wordIndex] & other.words[wordIndex]) != 0)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * True if the set is exactly {ordinal}.
+     */
+    public boolean containsOnly(int ordinal) {
+        int ordinalWordIndex = ordinal >>> 6;
+        if (ordinalWordIndex >= words.length)
+            return false;
+        for (int wordIndex = 0; wordIndex < words.length; wordIndex++) {
+            long expectedWord = wordIndex == ordinalWordIndex ? 1L << ordinal : 0;
+            if (words[wordIndex] != expectedWord)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * -1 if there is no ordinal greater than or equal to fromOrdinal in the set.
+     */
+    public int nextOrdinal(int fromOrdinal) {
+        int wordIndex = fromOrdinal >>> 6;
+        if (wordIndex >= words.length)
+            return -1;
+        long word = words[wordIndex] & (-1L << fromOrdinal);
+        while (true) {
+            if (word != 0)
+                return wordIndex * 64 + Long.numberOfTrailingZeros(word);
+            if (++wordIndex == words.length)
+                return -1;
+            word = words[wordIndex];
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        for (int ordinal = nextOrdinal(0); ordinal != -1;
+             ordinal = nextOrdinal(ordinal + 1))
+            joiner.add(keyOrdinals.key(ordinal).name());
+        return joiner.toString();
+    }
+
+}
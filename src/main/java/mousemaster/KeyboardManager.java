@@ -3,30 +3,47 @@ package mousemaster;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 public class KeyboardManager {
 
     private static final Logger logger = LoggerFactory.getLogger(KeyboardManager.class);
 
+    private final KeyOrdinals keyOrdinals;
+    private final TimerService timerService;
     private final ComboWatcher comboWatcher;
     private final HintManager hintManager;
-    private final Map<Key, PressKeyEventProcessing> currentlyPressedKeys = new HashMap<>();
+    /**
+     * Null if the key events are not recorded.
+     */
+    private final KeyEventRecorder keyEventRecorder;
+    private final KeySet currentlyPressedKeys;
+    /**
+     * Indexed by key ordinal, only meaningful for the keys of currentlyPressedKeys.
+     */
+    private PressKeyEventProcessing[] processingByPressedKeyOrdinal =
+            new PressKeyEventProcessing[0];
 
-    public KeyboardManager(ComboWatcher comboWatcher, HintManager hintManager) {
+    public KeyboardManager(KeyOrdinals keyOrdinals, TimerService timerService,
+                           ComboWatcher comboWatcher, HintManager hintManager,
+                           KeyEventRecorder keyEventRecorder) {
+        this.keyOrdinals = keyOrdinals;
+        this.timerService = timerService;
         this.comboWatcher = comboWatcher;
         this.hintManager = hintManager;
+        this.keyEventRecorder = keyEventRecorder;
+        currentlyPressedKeys = new KeySet(keyOrdinals);
     }
 
-    public void update(double delta) {
-        if (delta > 10) {
-            logger.info("Tick took " + delta + "s, skipping update, clearing currentlyPressedKeys, and breaking combos");
+    /**
+     * @param lateness how much later than scheduled the update is (for example, because
+     *                 the system was suspended)
+     */
+    public void update(double delta, double lateness) {
+        if (lateness > 10) {
+            logger.info("Tick was late by " + lateness + "s, skipping update, clearing currentlyPressedKeys, and breaking combos");
             reset();
         }
-        else {
-            comboWatcher.update(delta);
-        }
     }
 
     public void reset() {
@@ -34,10 +51,26 @@ public class KeyboardManager {
         comboWatcher.reset();
     }
 
+    /**
+     * The timers that expired before the event are fired first: when the main loop wakes
+     * up late, an event that was pressed before a mode timeout (or before the last move
+     * of a combo completed) is still handled in the state it was pressed in.
+     */
     public boolean keyEvent(KeyEvent keyEvent) {
-        Key key = keyEvent.key();
+        timerService.fireTimersExpiredAt(keyEvent.time());
+        if (keyEventRecorder == null)
+            return processKeyEvent(keyEvent);
+        keyEventRecorder.keyEventStarted();
+        boolean mustBeEaten = processKeyEvent(keyEvent);
+        keyEventRecorder.keyEventProcessed(keyEvent, mustBeEaten);
+        return mustBeEaten;
+    }
+
+    private boolean processKeyEvent(KeyEvent keyEvent) {
+        int keyOrdinal = keyOrdinals.ordinal(keyEvent.key());
         if (keyEvent.isPress()) {
-            PressKeyEventProcessing processing = currentlyPressedKeys.get(key);
+            PressKeyEventProcessing processing = currentlyPressedKeys.contains(keyOrdinal) ?
+                    processingByPressedKeyOrdinal[keyOrdinal] : null;
             if (processing == null) {
                 if (!pressingUnhandledKey()) {
                     processing = hintManager.keyPressed(keyEvent.key());
@@ -52,12 +85,19 @@ public class KeyboardManager {
                     // select a hint to perform a ctrl-click.
                     processing = hintManager.keyPressed(keyEvent.key());
                 }
-                currentlyPressedKeys.put(key, processing);
+                if (keyOrdinal >= processingByPressedKeyOrdinal.length)
+                    processingByPressedKeyOrdinal =
+                            Arrays.copyOf(processingByPressedKeyOrdinal,
+                                    Math.max(keyOrdinal + 1, keyOrdinals.size()));
+                processingByPressedKeyOrdinal[keyOrdinal] = processing;
+                currentlyPressedKeys.add(keyOrdinal);
             }
             return processing.mustBeEaten();
         }
         else {
-            PressKeyEventProcessing processing = currentlyPressedKeys.remove(key);
+            PressKeyEventProcessing processing = currentlyPressedKeys.contains(keyOrdinal) ?
+                    processingByPressedKeyOrdinal[keyOrdinal] : null;
+            currentlyPressedKeys.remove(keyOrdinal);
             if (processing != null) {
                 if (processing.handled()) {
                     if (processing.isPartOfCombo() || processing.isUnswallowedHintEnd())
@@ -79,7 +119,10 @@ public class KeyboardManager {
     public boolean pressingUnhandledKeysOnly() {
         if (currentlyPressedKeys.isEmpty())
             return false;
-        for (PressKeyEventProcessing pressKeyEventProcessing : currentlyPressedKeys.values()) {
+        for (int keyOrdinal = currentlyPressedKeys.nextOrdinal(0); keyOrdinal != -1;
+             keyOrdinal = currentlyPressedKeys.nextOrdinal(keyOrdinal + 1)) {
+            PressKeyEventProcessing pressKeyEventProcessing =
+                    processingByPressedKeyOrdinal[keyOrdinal];
             if (pressKeyEventProcessing.isPartOfComboSequence() ||
                 pressKeyEventProcessing.isPartOfHintPrefix() ||
                 pressKeyEventProcessing.isHintUndo() ||
@@ -92,8 +135,9 @@ public class KeyboardManager {
     }
 
     public boolean pressingUnhandledKey() {
-        for (PressKeyEventProcessing pressKeyEventProcessing : currentlyPressedKeys.values()) {
-            if (!pressKeyEventProcessing.handled())
+        for (int keyOrdinal = currentlyPressedKeys.nextOrdinal(0); keyOrdinal != -1;
+             keyOrdinal = currentlyPressedKeys.nextOrdinal(keyOrdinal + 1)) {
+            if (!processingByPressedKeyOrdinal[keyOrdinal].handled())
                 return true;
         }
         return false;
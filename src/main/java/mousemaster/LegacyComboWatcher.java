@@ -0,0 +1,393 @@
+package mousemaster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * The combo watcher as it was before {@link AutomatonComboWatcher}: every event is matched
+ * against every combo of the current mode with {@link ComboPreparation#matchingMoveCount}.
+ * It is only ported to the current APIs: the alias combos are expanded into the single
+ * key combos they stand for (see {@link ComboSequence#expand}), the durations are in
+ * nanoseconds, and the combos waiting for their last move to complete are completed by a
+ * {@link TimerService} timer instead of an update with the frame delta.
+ * Much slower, only meant to check {@link AutomatonComboWatcher} against (see
+ * ComboEngineFuzzer).
+ */
+public class LegacyComboWatcher implements ComboWatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(LegacyComboWatcher.class);
+
+    private final Clock clock;
+    private final TimerService timerService;
+    private final CommandRunner commandRunner;
+    private final Set<Key> mustRemainPressedComboPreconditionKeys;
+    private final Set<Key> mustRemainUnpressedComboPreconditionKeys;
+    private final Map<Combo, List<ComboSequence>> expandedSequencesByCombo = new HashMap<>();
+    private Mode currentMode;
+    private boolean modeJustTimedOut;
+    private ComboPreparation comboPreparation;
+    private ComboMoveDuration previousComboMoveDuration;
+    private List<ComboWaitingForLastMoveToComplete> combosWaitingForLastMoveToComplete = new ArrayList<>();
+    private final TimerService.Timer lastMoveTimer;
+
+    private Set<Key> currentlyPressedComboSequenceKeys = new HashSet<>();
+    private Set<Key> currentlyPressedComboPreconditionKeys = new HashSet<>();
+
+    public LegacyComboWatcher(Clock clock, TimerService timerService,
+                              CommandRunner commandRunner,
+                              Set<Key> mustRemainUnpressedComboPreconditionKeys,
+                              Set<Key> mustRemainPressedComboPreconditionKeys) {
+        this.clock = clock;
+        this.timerService = timerService;
+        this.commandRunner = commandRunner;
+        this.mustRemainUnpressedComboPreconditionKeys =
+                mustRemainUnpressedComboPreconditionKeys;
+        this.mustRemainPressedComboPreconditionKeys =
+                mustRemainPressedComboPreconditionKeys;
+        this.comboPreparation = ComboPreparation.empty();
+        this.lastMoveTimer = timerService.newTimer(this::update);
+    }
+
+    private void update() {
+        // For a given waiting combo, we know that its precondition has to be satisfied still, because otherwise it
+        // would mean that currentlyPressedComboPreconditionKeys has changed. But when currentlyPressedComboPreconditionKeys is changed,
+        // combosWaitingForLastMoveToComplete is always reset.
+        long now = clock.nanoTime();
+        List<ComboWaitingForLastMoveToComplete> completeCombos = new ArrayList<>();
+        for (ComboWaitingForLastMoveToComplete comboWaitingForLastMoveToComplete : combosWaitingForLastMoveToComplete) {
+            if (comboWaitingForLastMoveToComplete.deadline - now <= 0)
+                completeCombos.add(comboWaitingForLastMoveToComplete);
+        }
+        List<Command> commandsToRun = longestComboCommandsLastAndDeduplicate(completeCombos.stream()
+                                                                                           .map(ComboWaitingForLastMoveToComplete::comboAndCommands)
+                                                                                           .toList());
+        if (!commandsToRun.isEmpty()) {
+            logger.debug(
+                    "Completed combos that were waiting for last move to complete, currentMode = " +
+                    currentMode.name() + ", completeCombos = " + completeCombos.stream()
+                                                                               .map(ComboWaitingForLastMoveToComplete::comboAndCommands)
+                                                                               .map(ComboAndCommands::combo)
+                                                                               .toList() +
+                    ", commandsToRun = " + commandsToRun);
+        }
+        Mode beforeMode = currentMode;
+        commandsToRun.forEach(commandRunner::run);
+        combosWaitingForLastMoveToComplete.removeAll(completeCombos);
+        if (currentMode != beforeMode) {
+            processKeyEventForCurrentMode(null, true);
+        }
+        scheduleLastMoveTimer();
+    }
+
+    private void scheduleLastMoveTimer() {
+        if (combosWaitingForLastMoveToComplete.isEmpty()) {
+            timerService.cancel(lastMoveTimer);
+            return;
+        }
+        long nextDeadline = combosWaitingForLastMoveToComplete.getFirst().deadline;
+        for (ComboWaitingForLastMoveToComplete comboWaitingForLastMoveToComplete : combosWaitingForLastMoveToComplete) {
+            if (comboWaitingForLastMoveToComplete.deadline - nextDeadline < 0)
+                nextDeadline = comboWaitingForLastMoveToComplete.deadline;
+        }
+        timerService.schedule(lastMoveTimer, nextDeadline);
+    }
+
+    @Override
+    public PressKeyEventProcessing keyEvent(KeyEvent event) {
+        modeJustTimedOut = false;
+        boolean isComboPreconditionKey =
+                mustRemainUnpressedComboPreconditionKeys.contains(event.key()) ||
+                mustRemainPressedComboPreconditionKeys.contains(event.key());
+        if (event.isRelease()) {
+            // The corresponding press event was either part of a combo sequence or part of a combo precondition,
+            // otherwise this method would not have been called.
+            currentlyPressedComboSequenceKeys.remove(event.key());
+            currentlyPressedComboPreconditionKeys.remove(event.key());
+        }
+        else {
+            if (isComboPreconditionKey) {
+                currentlyPressedComboPreconditionKeys.add(event.key());
+            }
+        }
+        if (!combosWaitingForLastMoveToComplete.isEmpty()) {
+            combosWaitingForLastMoveToComplete.clear();
+            timerService.cancel(lastMoveTimer);
+        }
+        KeyEvent previousEvent = comboPreparation.events().isEmpty() ? null :
+                comboPreparation.events().getLast();
+        if (previousEvent != null &&
+            !previousComboMoveDuration.satisfied(previousEvent.time(), event.time()))
+            comboPreparation = ComboPreparation.empty();
+        comboPreparation.events().add(event);
+        Mode beforeMode = currentMode;
+        PressKeyEventProcessing processing = processKeyEventForCurrentMode(event, false);
+        boolean partOfComboSequence = processing.isPartOfComboSequence();
+        boolean mustBeEaten = processing.mustBeEaten();
+        if (currentMode != beforeMode) {
+            // Second pass to give a chance to new mode's combos to run now.
+            processing = processKeyEventForCurrentMode(event, true);
+            partOfComboSequence |= processing.isPartOfComboSequence();
+            mustBeEaten |= processing.mustBeEaten();
+        }
+        if (!partOfComboSequence) {
+            comboPreparation = ComboPreparation.empty();
+        }
+        if (event.isRelease())
+            return null;
+        if (partOfComboSequence)
+            return PressKeyEventProcessing.partOfComboSequence(mustBeEaten);
+        boolean partOfComboPreconditionOnly = isComboPreconditionKey;
+        return partOfComboPreconditionOnly ?
+                PressKeyEventProcessing.partOfComboPreconditionOnly() :
+                PressKeyEventProcessing.unhandled();
+    }
+
+    @Override
+    public void dumpComboDecisions() {
+        logger.info("The combo decisions are not recorded by the legacy combo watcher");
+    }
+
+    private PressKeyEventProcessing processKeyEventForCurrentMode(KeyEvent event,
+                                                                  boolean ignoreSwitchModeCommands) {
+        boolean mustBeEaten = false;
+        boolean partOfComboSequence = false;
+        List<ComboAndCommands> comboAndCommandsToRun = new ArrayList<>();
+        Set<Key> currentlyPressedMustRemainPressedComboPreconditionKeysNotAlreadyEaten =
+                new HashSet<>(currentlyPressedComboPreconditionKeys);
+        currentlyPressedMustRemainPressedComboPreconditionKeysNotAlreadyEaten.removeIf(
+                Predicate.not(mustRemainPressedComboPreconditionKeys::contains));
+        currentlyPressedMustRemainPressedComboPreconditionKeysNotAlreadyEaten.removeAll(
+                currentlyPressedComboSequenceKeys);
+        if (event != null)
+            currentlyPressedMustRemainPressedComboPreconditionKeysNotAlreadyEaten.remove(
+                    event.key());
+        ComboMoveDuration newComboDuration = null;
+        for (Map.Entry<Combo, List<Command>> entry : currentMode.comboMap()
+                                                                .commandsByCombo()
+                                                                .entrySet()) {
+            // When a precondition key is pressed, and another key is pressed,
+            // that other key should be processed only for combos that
+            // contains the pressed precondition key.
+            Combo combo = entry.getKey();
+            // Each single key combo that the combo stands for is handled like a combo.
+            for (ComboSequence sequence : expandedSequences(combo)) {
+                int matchingMoveCount = comboPreparation.matchingMoveCount(sequence);
+                ComboMove currentMove = matchingMoveCount == 0 ? null :
+                        sequence.moves().get(matchingMoveCount - 1);
+                // releaseCombo == the combo is not just a mustRemainUnpressed combo (it has a sequence or a mustRemainPressed precondition)
+                boolean releaseCombo =
+                        combo.precondition().mustRemainPressedKeySets().isEmpty() &&
+                        (sequence.moves().isEmpty() || sequence.moves()
+                                                               .stream()
+                                                               .allMatch(
+                                                                       ComboMove::isRelease)); // This condition (check sequence is all releases)
+                // could be removed to not execute combos that have a sequence and whose mustRemainPress condition is not satisfied.
+                if (!currentlyPressedMustRemainPressedComboPreconditionKeysNotAlreadyEaten.isEmpty()
+                    // If currentlyPressedMustRemainPressedComboPreconditionKeysNotAlreadyEaten is not part of the combo's mustRemainPressedKeySets...
+                    && combo.precondition()
+                            .mustRemainPressedKeySets()
+                            .stream()
+                            .noneMatch(
+                                    comboMustRemainPressedKeySet -> comboMustRemainPressedKeySet.containsAll(
+                                            currentlyPressedMustRemainPressedComboPreconditionKeysNotAlreadyEaten)) &&
+                    // ...and the combo is not a release combo
+                    !releaseCombo &&
+                    // ...and the combo's current move is not a press of that currentlyPressedComboPreconditionKey...
+                    (currentMove == null ||
+                     !currentlyPressedMustRemainPressedComboPreconditionKeysNotAlreadyEaten.equals(
+                             Set.of(currentMove.key())))) {
+                    // ...Then it's as if the currently pressed precondition key is an unhandled key:
+                    // other keys that are pressed should not even be considered but passed onto other apps.
+                    continue;
+                }
+                if (matchingMoveCount == 0) {
+                    if (sequence.moves().isEmpty() &&
+                        !combo.precondition().isEmpty()) {
+                        if (!combo.precondition().satisfied(
+                                currentlyPressedComboPreconditionKeys)) {
+                            continue;
+                        }
+                    }
+                }
+                else {
+                    if (!combo.precondition().isEmpty()) {
+                        if (!combo.precondition().satisfied(
+                                currentlyPressedComboPreconditionKeys))
+                            continue;
+                    }
+                    boolean currentMoveMustBeEaten =
+                            currentMove instanceof ComboMove.PressComboMove pressComboMove &&
+                            pressComboMove.eventMustBeEaten();
+                    mustBeEaten |= currentMoveMustBeEaten;
+                    partOfComboSequence = true;
+                    if (newComboDuration == null) {
+                        newComboDuration = currentMove.duration();
+                    }
+                    else {
+                        if (newComboDuration.minNanos() > currentMove.duration().minNanos())
+                            newComboDuration =
+                                    new ComboMoveDuration(currentMove.duration().minNanos(),
+                                            newComboDuration.maxNanos());
+                        if (newComboDuration.maxNanos() != ComboMoveDuration.INFINITE &&
+                            (currentMove.duration().maxNanos() == ComboMoveDuration.INFINITE ||
+                             newComboDuration.maxNanos() < currentMove.duration().maxNanos()))
+                            newComboDuration = new ComboMoveDuration(newComboDuration.minNanos(),
+                                    currentMove.duration().maxNanos());
+                    }
+                }
+                boolean preparationComplete =
+                        matchingMoveCount == sequence.moves().size();
+                if (!preparationComplete)
+                    continue;
+                List<Command> commands = entry.getValue();
+                if (ignoreSwitchModeCommands &&
+                    commands.stream().anyMatch(Command.SwitchMode.class::isInstance)) {
+                    logger.debug(
+                            "Ignoring the following SwitchMode commands since the mode was just changed to " +
+                            currentMode.name() + ": " + commands.stream()
+                                                                .filter(Command.SwitchMode.class::isInstance)
+                                                                .toList());
+                    commands = commands.stream()
+                                       .filter(Predicate.not(
+                                               Command.SwitchMode.class::isInstance))
+                                       .toList();
+                }
+                ComboAndCommands comboAndCommands = new ComboAndCommands(combo, commands);
+                ComboMove comboLastMove = sequence.moves().isEmpty() ? null :
+                        sequence.moves().getLast();
+                if (comboLastMove != null &&
+                    comboLastMove.duration().minNanos() != 0) {
+                    combosWaitingForLastMoveToComplete.add(
+                            new ComboWaitingForLastMoveToComplete(comboAndCommands,
+                                    clock.nanoTime() + comboLastMove.duration().minNanos()));
+                }
+                else {
+                    comboAndCommandsToRun.add(comboAndCommands);
+                }
+            }
+        }
+        if (newComboDuration != null)
+            previousComboMoveDuration = newComboDuration;
+        scheduleLastMoveTimer();
+        List<Command> commandsToRun =
+                longestComboCommandsLastAndDeduplicate(comboAndCommandsToRun);
+        logger.debug("currentMode = " + currentMode.name() +
+                     ", currentlyPressedComboPreconditionKeys = " + currentlyPressedComboPreconditionKeys +
+                     ", comboPreparation = " + comboPreparation +
+                     ", partOfComboSequence = " + partOfComboSequence +
+                     ", mustBeEaten = " + mustBeEaten + ", commandsToRun = " +
+                     commandsToRun);
+        commandsToRun.forEach(commandRunner::run);
+        if (event != null && event.isPress()) {
+            if (partOfComboSequence)
+                currentlyPressedComboSequenceKeys.add(event.key());
+        }
+        if (partOfComboSequence)
+            return PressKeyEventProcessing.partOfComboSequence(mustBeEaten);
+        return PressKeyEventProcessing.unhandled();
+    }
+
+    private List<ComboSequence> expandedSequences(Combo combo) {
+        return expandedSequencesByCombo.computeIfAbsent(combo,
+                c -> c.sequence().expand());
+    }
+
+    private static final List<? extends Class<? extends Command>> commandOrder =
+            List.of(
+                    Command.SwitchMode.class
+            );
+
+    /**
+     * Assuming the following configuration:
+     * - +up: start move up
+     * - -up|+up -up +up: stop move up
+     * - +up -up +up: start wheel up
+     * When up is pressed, the move starts. Then, when up is released then pressed,
+     * the wheel starts.
+     * The 3 combos are completed, but we ultimately want the move to stop,
+     * i.e. the stop move command (+up -up +up) should be run after the
+     * start move command (+up).
+     * Longest combos "have the last word".
+     * Also deduplicate commands: if start-move-up is +up|#rightctrl +up: holding rightctrl
+     * then up should not trigger two commands.
+     * - Move the Switch commands last: useful for saving a mouse position then switching to position-history mode
+     */
+    private List<Command> longestComboCommandsLastAndDeduplicate(List<ComboAndCommands> commandsToRun) {
+        return commandsToRun.stream()
+                            .sorted(Comparator.comparing(ComboAndCommands::combo,
+                                    Comparator.comparing(Combo::sequence,
+                                            Comparator.comparing(ComboSequence::moves,
+                                                    Comparator.comparingInt(
+                                                            List::size)))))
+                            .map(ComboAndCommands::commands)
+                            .flatMap(Collection::stream)
+                            .distinct()
+                            .sorted(Comparator.comparingInt(command ->
+                                    commandOrder.indexOf(command.getClass())))
+                            .toList();
+    }
+
+    @Override
+    public void breakComboPreparation() {
+        logger.debug("Breaking combos, comboPreparation = " + comboPreparation +
+                     ", combosWaitingForLastMoveToComplete = " +
+                     combosWaitingForLastMoveToComplete);
+        comboPreparation = ComboPreparation.empty();
+        combosWaitingForLastMoveToComplete.clear();
+        timerService.cancel(lastMoveTimer);
+    }
+
+    @Override
+    public void reset() {
+        breakComboPreparation();
+        // When a mode times out to a new mode, the currentlyPressedComboKeys should not be reset.
+        currentlyPressedComboSequenceKeys.clear();
+        currentlyPressedComboPreconditionKeys.clear();
+    }
+
+    @Override
+    public void modeChanged(Mode newMode) {
+        currentMode = newMode;
+        if (modeJustTimedOut) {
+            modeJustTimedOut = false;
+            processKeyEventForCurrentMode(null, false);
+        }
+    }
+
+    @Override
+    public void modeTimedOut() {
+        modeJustTimedOut = true;
+        breakComboPreparation();
+    }
+
+     private static final class ComboWaitingForLastMoveToComplete {
+        private final ComboAndCommands comboAndCommands;
+        /**
+         * Nano time (see {@link Clock#nanoTime()}).
+         */
+        private final long deadline;
+
+        private ComboWaitingForLastMoveToComplete(ComboAndCommands comboAndCommands,
+                                                  long deadline) {
+            this.comboAndCommands = comboAndCommands;
+            this.deadline = deadline;
+        }
+
+        public ComboAndCommands comboAndCommands() {
+            return comboAndCommands;
+        }
+
+        @Override
+        public String toString() {
+            return "ComboWaitingForLastMoveToComplete[" + "comboAndCommands=" +
+                   comboAndCommands + ", deadline=" + deadline + ']';
+        }
+    }
+
+    private record ComboAndCommands(Combo combo, List<Command> commands) {
+    }
+
+}
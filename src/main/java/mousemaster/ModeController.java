@@ -13,6 +13,7 @@ public class ModeController implements GridListener, PositionHistoryListener {
     private static final Logger logger = LoggerFactory.getLogger(ModeController.class);
 
     private final ModeMap modeMap;
+    private final TimerService timerService;
     private final MouseController mouseController;
     private final MouseState mouseState;
     private final KeyboardState keyboardState;
@@ -20,15 +21,21 @@ public class ModeController implements GridListener, PositionHistoryListener {
     private boolean currentModeCursorHidden;
     private Mode currentMode;
     private final Deque<Mode> modeHistoryStack = new ArrayDeque<>();
-    private double modeTimeoutTimer;
-    private double hideCursorIdleTimer;
+    /**
+     * Created on first use rather than in the constructor, so that this does not escape
+     * before the constructor returns.
+     */
+    private TimerService.Timer modeTimeoutTimer;
+    private TimerService.Timer hideCursorIdleTimer;
     private boolean justSnappedToGrid;
     private boolean justCycledPosition;
 
-    public ModeController(ModeMap modeMap, MouseController mouseController,
+    public ModeController(ModeMap modeMap, TimerService timerService,
+                          MouseController mouseController,
                           MouseState mouseState, KeyboardState keyboardState,
                           List<ModeListener> listeners) {
         this.modeMap = modeMap;
+        this.timerService = timerService;
         this.mouseController = mouseController;
         this.mouseState = mouseState;
         this.keyboardState = keyboardState;
@@ -38,8 +45,9 @@ public class ModeController implements GridListener, PositionHistoryListener {
     public void update(double delta) {
         if (keyboardState.pressingUnhandledKeysOnly()) {
             if (currentMode.modeAfterPressingUnhandledKeysOnly() != null) {
-                logger.debug("All currently pressed keys are unhandled, switching to " +
-                             currentMode.modeAfterPressingUnhandledKeysOnly());
+                if (logger.isDebugEnabled())
+                    logger.debug("All currently pressed keys are unhandled, switching to " +
+                                 currentMode.modeAfterPressingUnhandledKeysOnly());
                 switchMode(currentMode.modeAfterPressingUnhandledKeysOnly());
                 return;
             }
@@ -55,32 +63,38 @@ public class ModeController implements GridListener, PositionHistoryListener {
             resetHideCursorTimer();
             resetCurrentModeCursorHidden();
         }
-        else {
-            if (currentMode.hideCursor().enabled() && !currentModeCursorHidden) {
-                hideCursorIdleTimer -= delta;
-                if (hideCursorIdleTimer <= 0) {
-                    logger.debug("Hide cursor timer for " + currentMode.name() +
-                                 " has elapsed");
-                    currentModeCursorHidden = true;
-                    mouseController.hideCursor();
-                }
-            }
-        }
-        if (mustResetModeTimeout) {
+        if (mustResetModeTimeout)
             resetModeTimeoutTimer();
-        }
-        else {
-            if (currentMode.timeout().enabled()) {
-                modeTimeoutTimer -= delta;
-                if (modeTimeoutTimer <= 0) {
-                    logger.debug("Current " + currentMode.name() +
-                                 " has timed out, switching to " +
-                                 currentMode.timeout().modeName());
-                    listeners.forEach(ModeListener::modeTimedOut);
-                    switchMode(currentMode.timeout().modeName());
-                }
-            }
-        }
+    }
+
+    private void hideCursorIdleTimerElapsed() {
+        if (currentModeCursorHidden)
+            return;
+        if (logger.isDebugEnabled())
+            logger.debug("Hide cursor timer for " + currentMode.name() + " has elapsed");
+        currentModeCursorHidden = true;
+        mouseController.hideCursor();
+    }
+
+    private void modeTimedOut() {
+        if (logger.isDebugEnabled())
+            logger.debug("Current " + currentMode.name() + " has timed out, switching to " +
+                         currentMode.timeout().modeName());
+        listeners.forEach(ModeListener::modeTimedOut);
+        switchMode(currentMode.timeout().modeName());
+    }
+
+    /**
+     * Zero if an update is needed now to react to the latest events. The hide cursor
+     * and the mode timeout timers are scheduled in the {@link TimerService}.
+     */
+    public double nextUpdateDelay() {
+        if (justSnappedToGrid || justCycledPosition)
+            return 0;
+        if (keyboardState.pressingUnhandledKeysOnly() &&
+            currentMode.modeAfterPressingUnhandledKeysOnly() != null)
+            return 0;
+        return Double.POSITIVE_INFINITY;
     }
 
     public void switchMode(String newModeName) {
@@ -106,7 +120,8 @@ public class ModeController implements GridListener, PositionHistoryListener {
         resetCurrentModeCursorHidden();
         resetHideCursorTimer();
         resetModeTimeoutTimer();
-        listeners.forEach(listener -> listener.modeChanged(newMode));
+        for (int listenerIndex = 0; listenerIndex < listeners.size(); listenerIndex++)
+            listeners.get(listenerIndex).modeChanged(newMode);
     }
 
     private void resetCurrentModeCursorHidden() {
@@ -127,14 +142,23 @@ public class ModeController implements GridListener, PositionHistoryListener {
     }
 
     private void resetModeTimeoutTimer() {
+        if (modeTimeoutTimer == null)
+            modeTimeoutTimer = timerService.newTimer(this::modeTimedOut);
         if (currentMode.timeout().enabled())
-            modeTimeoutTimer = currentMode.timeout().duration().toNanos() / 1e9d;
+            timerService.scheduleIn(modeTimeoutTimer,
+                    currentMode.timeout().duration().toNanos());
+        else
+            timerService.cancel(modeTimeoutTimer);
     }
 
     private void resetHideCursorTimer() {
+        if (hideCursorIdleTimer == null)
+            hideCursorIdleTimer = timerService.newTimer(this::hideCursorIdleTimerElapsed);
         if (currentMode.hideCursor().enabled())
-            hideCursorIdleTimer =
-                    currentMode.hideCursor().idleDuration().toNanos() / 1e9d;
+            timerService.scheduleIn(hideCursorIdleTimer,
+                    currentMode.hideCursor().idleDuration().toNanos());
+        else
+            timerService.cancel(hideCursorIdleTimer);
     }
 
     @Override
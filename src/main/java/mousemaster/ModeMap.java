@@ -9,16 +9,22 @@ import java.util.stream.Collectors;
 public class ModeMap {
 
     private final Map<String, Mode> modeByName;
+    private final ModeMapSummary summary;
 
     public ModeMap(Set<Mode> modes) {
         this.modeByName =
                 modes.stream().collect(Collectors.toMap(Mode::name, Function.identity()));
+        summary = ModeMapSummary.of(modeByName.values());
     }
 
     public Collection<Mode> modes() {
         return modeByName.values();
     }
 
+    public ModeMapSummary summary() {
+        return summary;
+    }
+
     public Mode get(String modeName) {
         return modeByName.get(modeName);
     }
@@ -0,0 +1,76 @@
+package mousemaster;
+
+import java.util.*;
+
+/**
+ * What the engine needs to know about the combos and hints of all the modes, computed
+ * once when the {@link ModeMap} is created (the modes are summarized in parallel), so
+ * that the configuration loading and the platform do not walk the combos of every mode
+ * again.
+ * @param comboKeys the keys of the combo sequences and preconditions, in the order the
+ *                  modes and combos are iterated (see {@link KeyOrdinals#of})
+ */
+public record ModeMapSummary(List<Key> comboKeys,
+                             Set<Key> mustRemainUnpressedComboPreconditionKeys,
+                             Set<Key> mustRemainPressedComboPreconditionKeys,
+                             Set<Key> hintKeys, Set<String> hintFontNames, int comboCount,
+                             long expandedComboCount) {
+
+    public static ModeMapSummary of(Collection<Mode> modes) {
+        List<ModeMapSummary> modeSummaries =
+                modes.parallelStream().map(ModeMapSummary::of).toList();
+        Set<Key> comboKeys = new LinkedHashSet<>();
+        Set<Key> mustRemainUnpressedComboPreconditionKeys = new HashSet<>();
+        Set<Key> mustRemainPressedComboPreconditionKeys = new HashSet<>();
+        Set<Key> hintKeys = new HashSet<>();
+        Set<String> hintFontNames = new HashSet<>();
+        int comboCount = 0;
+        long expandedComboCount = 0;
+        for (ModeMapSummary modeSummary : modeSummaries) {
+            comboKeys.addAll(modeSummary.comboKeys);
+            mustRemainUnpressedComboPreconditionKeys.addAll(
+                    modeSummary.mustRemainUnpressedComboPreconditionKeys);
+            mustRemainPressedComboPreconditionKeys.addAll(
+                    modeSummary.mustRemainPressedComboPreconditionKeys);
+            hintKeys.addAll(modeSummary.hintKeys);
+            hintFontNames.addAll(modeSummary.hintFontNames);
+            comboCount += modeSummary.comboCount;
+            expandedComboCount += modeSummary.expandedComboCount;
+        }
+        return new ModeMapSummary(List.copyOf(comboKeys),
+                Set.copyOf(mustRemainUnpressedComboPreconditionKeys),
+                Set.copyOf(mustRemainPressedComboPreconditionKeys), Set.copyOf(hintKeys),
+                Set.copyOf(hintFontNames), comboCount, expandedComboCount);
+    }
+
+    private static ModeMapSummary of(Mode mode) {
+        Set<Key> comboKeys = new LinkedHashSet<>();
+        Set<Key> mustRemainUnpressedComboPreconditionKeys = new HashSet<>();
+        Set<Key> mustRemainPressedComboPreconditionKeys = new HashSet<>();
+        long expandedComboCount = 0;
+        Set<Combo> combos = mode.comboMap().commandsByCombo().keySet();
+        for (Combo combo : combos) {
+            expandedComboCount += combo.sequence().expansionCount();
+            mustRemainUnpressedComboPreconditionKeys.addAll(
+                    combo.precondition().mustRemainUnpressedKeySet());
+            combo.precondition()
+                 .mustRemainPressedKeySets()
+                 .forEach(mustRemainPressedComboPreconditionKeys::addAll);
+            comboKeys.addAll(combo.precondition().mustRemainUnpressedKeySet());
+            combo.precondition().mustRemainPressedKeySets().forEach(comboKeys::addAll);
+            combo.sequence().moves().forEach(move -> comboKeys.addAll(move.keys()));
+        }
+        Set<Key> hintKeys = new HashSet<>();
+        HintMeshConfiguration hintMesh = mode.hintMesh();
+        if (hintMesh.enabled()) {
+            hintKeys.addAll(hintMesh.typeAndSelectionKeys().selectionKeys());
+            if (hintMesh.undoKey() != null)
+                hintKeys.add(hintMesh.undoKey());
+        }
+        return new ModeMapSummary(List.copyOf(comboKeys),
+                mustRemainUnpressedComboPreconditionKeys,
+                mustRemainPressedComboPreconditionKeys, hintKeys,
+                Set.of(hintMesh.fontName()), combos.size(), expandedComboCount);
+    }
+
+}
@@ -2,10 +2,10 @@ package mousemaster;
 
 import java.util.ArrayDeque;
 import java.util.Deque;
-import java.util.Iterator;
 
 public class MouseController implements ModeListener, MousePositionListener {
 
+    private final Platform platform;
     private final ScreenManager screenManager;
     private Mouse mouse;
     private Wheel wheel;
@@ -27,7 +27,8 @@ public class MouseController implements ModeListener, MousePositionListener {
     private int jumpBeginX, jumpBeginY;
     private int jumpEndX, jumpEndY;
 
-    public MouseController(ScreenManager screenManager) {
+    public MouseController(Platform platform, ScreenManager screenManager) {
+        this.platform = platform;
         this.screenManager = screenManager;
     }
 
@@ -88,7 +89,7 @@ public class MouseController implements ModeListener, MousePositionListener {
                 deltaBigEnough = deltaDistanceY >= 1;
             }
             if (deltaBigEnough && !jumping) {
-                WindowsMouse.moveBy(
+                platform.moveMouseBy(
                         !xMoveForwardStack.isEmpty() && xMoveForwardStack.peek(),
                         deltaDistanceX,
                         !yMoveForwardStack.isEmpty() && yMoveForwardStack.peek(),
@@ -128,7 +129,7 @@ public class MouseController implements ModeListener, MousePositionListener {
                 }
             }
             if (nextJumpX != jumpX || nextJumpY != jumpY) {
-                WindowsMouse.moveTo(nextJumpX, nextJumpY);
+                platform.moveMouseTo(nextJumpX, nextJumpY);
                 jumpX = nextJumpX;
                 jumpY = nextJumpY;
             }
@@ -139,9 +140,9 @@ public class MouseController implements ModeListener, MousePositionListener {
                     wheel.initialVelocity() + wheel.acceleration() * wheelDuration);
             double deltaDistance = wheelVelocity * delta;
             if (!xWheelForwardStack.isEmpty())
-                WindowsMouse.wheelHorizontallyBy(xWheelForwardStack.peek(), deltaDistance);
+                platform.wheelHorizontallyBy(xWheelForwardStack.peek(), deltaDistance);
             if (!yWheelForwardStack.isEmpty())
-                WindowsMouse.wheelVerticallyBy(yWheelForwardStack.peek(), deltaDistance);
+                platform.wheelVerticallyBy(yWheelForwardStack.peek(), deltaDistance);
         }
     }
 
@@ -178,13 +179,7 @@ public class MouseController implements ModeListener, MousePositionListener {
     }
 
     private static void removeFirst(Deque<Boolean> moveForward, boolean forward) {
-        Iterator<Boolean> iterator = moveForward.iterator();
-        while (iterator.hasNext()) {
-            if (iterator.next() == forward) {
-                iterator.remove();
-                break;
-            }
-        }
+        moveForward.removeFirstOccurrence(forward);
     }
 
     public void stopMoveDown() {
@@ -213,20 +208,20 @@ public class MouseController implements ModeListener, MousePositionListener {
 
     public void clickLeft() {
         if (!leftPressing)
-            WindowsMouse.pressLeft();
-        WindowsMouse.releaseLeft();
+            platform.pressLeft();
+        platform.releaseLeft();
     }
 
     public void clickMiddle() {
         if (!middlePressing)
-            WindowsMouse.pressMiddle();
-        WindowsMouse.releaseMiddle();
+            platform.pressMiddle();
+        platform.releaseMiddle();
     }
 
     public void clickRight() {
         if (!rightPressing)
-            WindowsMouse.pressRight();
-        WindowsMouse.releaseRight();
+            platform.pressRight();
+        platform.releaseRight();
     }
 
     public void pressLeft() {
@@ -234,7 +229,7 @@ public class MouseController implements ModeListener, MousePositionListener {
             return;
         releaseAll();
         leftPressing = true;
-        WindowsMouse.pressLeft();
+        platform.pressLeft();
     }
 
     public void pressMiddle() {
@@ -242,7 +237,7 @@ public class MouseController implements ModeListener, MousePositionListener {
             return;
         releaseAll();
         middlePressing = true;
-        WindowsMouse.pressMiddle();
+        platform.pressMiddle();
     }
 
     public void pressRight() {
@@ -250,24 +245,24 @@ public class MouseController implements ModeListener, MousePositionListener {
             return;
         releaseAll();
         rightPressing = true;
-        WindowsMouse.pressRight();
+        platform.pressRight();
     }
 
     public void releaseLeft() {
         if (leftPressing)
-            WindowsMouse.releaseLeft();
+            platform.releaseLeft();
         leftPressing = false;
     }
 
     public void releaseMiddle() {
         if (middlePressing)
-            WindowsMouse.releaseMiddle();
+            platform.releaseMiddle();
         middlePressing = false;
     }
 
     public void releaseRight() {
         if (rightPressing)
-            WindowsMouse.releaseRight();
+            platform.releaseRight();
         rightPressing = false;
     }
 
@@ -347,15 +342,15 @@ public class MouseController implements ModeListener, MousePositionListener {
     }
 
     public void showCursor() {
-        WindowsMouse.showCursor();
+        platform.showCursor();
     }
 
     public void hideCursor() {
-        WindowsMouse.hideCursor();
+        platform.hideCursor();
     }
 
     public void synchronousMoveTo(int x, int y) {
-        WindowsMouse.synchronousMoveTo(x, y);
+        platform.synchronousMoveMouseTo(x, y);
     }
 
     public void moveTo(int x, int y) {
@@ -366,11 +361,11 @@ public class MouseController implements ModeListener, MousePositionListener {
         // Move a single pixel. Skype's titlebar does not like being dragged too quick too far.
         mouseX = mouseX + (int) Math.signum(x - mouseX);
         mouseY = mouseY + (int) Math.signum(y - mouseY);
-        WindowsMouse.synchronousMoveTo(mouseX, mouseY);
+        platform.synchronousMoveMouseTo(mouseX, mouseY);
         if (x == mouseX && y == mouseY)
             return;
         if (!mouse.smoothJumpEnabled()) {
-            WindowsMouse.moveTo(x, y);
+            platform.moveMouseTo(x, y);
             return;
         }
         // If already jumping but one direction changes, then reset velocity.
@@ -416,7 +411,7 @@ public class MouseController implements ModeListener, MousePositionListener {
         if (jumping && !mouse.smoothJumpEnabled()) {
             jumping = false;
             jumpDuration = 0;
-            WindowsMouse.moveTo(jumpEndX, jumpEndY);
+            platform.moveMouseTo(jumpEndX, jumpEndY);
         }
         if (newMode.stopCommandsFromPreviousMode()) {
             stopMoveDown();
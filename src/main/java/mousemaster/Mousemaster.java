@@ -10,19 +10,65 @@ import java.util.*;
 public class Mousemaster {
 
     private static final Logger logger = LoggerFactory.getLogger(Mousemaster.class);
+    private static final double MOTION_FRAME_DELAY = 0.01;
+    /**
+     * Upper bound of the idle sleep so that configuration file changes are picked up.
+     */
+    private static final double MAX_IDLE_DELAY = 1;
+    /**
+     * Next to the configuration file, only written if a hint mode uses
+     * hint.label-assignment=selection-frequency.
+     */
+    private static final String HINT_SELECTION_FREQUENCIES_FILE_NAME =
+            "mousemaster-hint-selections.txt";
 
     private final Path configurationPath;
     private final Platform platform;
+    private final Clock clock;
+    /**
+     * Null if the key events are not recorded.
+     */
+    private final KeyEventRecorder keyEventRecorder;
+    private final ComboEngine comboEngine;
+    /**
+     * Kept across configuration reloads. Null until a mode uses
+     * hint.label-assignment=selection-frequency.
+     */
+    private HintSelectionFrequencies hintSelectionFrequencies;
     private final WatchService watchService;
     private Configuration configuration;
+    private TimerService timerService;
     private MouseController mouseController;
     private KeyboardManager keyboardManager;
     private IndicatorManager indicatorManager;
     private ModeController modeController;
 
-    public Mousemaster(Path configurationPath, Platform platform) throws IOException {
+    /**
+     * The hint selection counts are not saved.
+     */
+    public Mousemaster(Path configurationPath, Platform platform, Clock clock)
+            throws IOException {
+        this(configurationPath, platform, clock, null, ComboEngine.AUTOMATON,
+                new HintSelectionFrequencies(null));
+    }
+
+    /**
+     * @param keyEventRecorder null if the key events are not recorded
+     * @param hintSelectionFrequencies null if the hint selection counts are read from
+     *                                 and saved to a file next to the configuration file
+     *                                 (once a mode uses
+     *                                 hint.label-assignment=selection-frequency)
+     */
+    public Mousemaster(Path configurationPath, Platform platform, Clock clock,
+                       KeyEventRecorder keyEventRecorder, ComboEngine comboEngine,
+                       HintSelectionFrequencies hintSelectionFrequencies)
+            throws IOException {
         this.configurationPath = configurationPath;
         this.platform = platform;
+        this.clock = clock;
+        this.keyEventRecorder = keyEventRecorder;
+        this.comboEngine = comboEngine;
+        this.hintSelectionFrequencies = hintSelectionFrequencies;
         loadConfiguration();
         watchService = FileSystems.getDefault().newWatchService();
         configurationPath.toAbsolutePath()
@@ -31,22 +77,63 @@ public class Mousemaster {
     }
 
     public void run() throws InterruptedException {
-        long previousNanoTime = System.nanoTime();
-        while (true) {
-            long currentNanoTime = System.nanoTime();
+        try {
+            runUntilStopped();
+        } finally {
+            if (hintSelectionFrequencies != null)
+                hintSelectionFrequencies.save();
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.error("Unable to close the configuration file watch service", e);
+            }
+        }
+    }
+
+    private void runUntilStopped() throws InterruptedException {
+        long previousNanoTime = clock.nanoTime();
+        double scheduledDelay = 0;
+        while (platform.running()) {
+            long currentNanoTime = clock.nanoTime();
             long deltaNanos = currentNanoTime - previousNanoTime;
             previousNanoTime = currentNanoTime;
             double delta = deltaNanos / 1e9d;
             updateConfiguration();
-            platform.update(delta);
+            // Nothing happened since the previous iteration other than the time passing:
+            // the motions are advanced by delta, then the pending key and mouse events are
+            // dispatched by platform.update() before the remaining expired timers are
+            // fired (the timers that expired before a key event are fired before it, see
+            // KeyboardManager#keyEvent).
             modeController.update(delta);
+            keyboardManager.update(delta, delta - scheduledDelay);
             mouseController.update(delta);
-            keyboardManager.update(delta);
+            platform.update(delta);
+            timerService.fireExpiredTimers();
             indicatorManager.update(delta);
-            Thread.sleep(10L);
+            scheduledDelay = nextUpdateDelay();
+            platform.waitForInput(scheduledDelay);
         }
     }
 
+    /**
+     * While the mouse is moving, wheeling or jumping, the loop runs at the motion
+     * frame rate. Otherwise, it sleeps until the next timer deadline (mode timeout,
+     * hide cursor, combo waiting for its last move to complete, hint selection counts to
+     * save) or until an input event is received.
+     */
+    private double nextUpdateDelay() {
+        if (mouseController.moving() || mouseController.wheeling() ||
+            mouseController.jumping())
+            return MOTION_FRAME_DELAY;
+        double nextUpdateDelay =
+                Math.min(MAX_IDLE_DELAY, modeController.nextUpdateDelay());
+        long nextDeadline = timerService.nextDeadline();
+        if (nextDeadline != Long.MAX_VALUE)
+            nextUpdateDelay = Math.min(nextUpdateDelay,
+                    Math.max(0, (nextDeadline - clock.nanoTime()) / 1e9d));
+        return nextUpdateDelay;
+    }
+
     private void updateConfiguration() {
         WatchKey key = watchService.poll();
         if (key == null)
@@ -78,50 +165,68 @@ public class Mousemaster {
         configuration = ConfigurationParser.parse(configurationPath);
         logger.info((reload ? "Reloaded" : "Loaded") + " configuration file " +
                     configurationPath);
-        ScreenManager screenManager = new ScreenManager();
-        mouseController = new MouseController(screenManager);
+        timerService = new TimerService(clock);
+        if (hintSelectionFrequencies == null &&
+            usesSelectionFrequencyLabels(configuration.modeMap()))
+            hintSelectionFrequencies = new HintSelectionFrequencies(
+                    configurationPath.toAbsolutePath()
+                                     .resolveSibling(HINT_SELECTION_FREQUENCIES_FILE_NAME));
+        if (hintSelectionFrequencies != null)
+            hintSelectionFrequencies.setTimerService(timerService);
+        ScreenManager screenManager = new ScreenManager(platform);
+        mouseController = new MouseController(platform, screenManager);
         MouseState mouseState = new MouseState(mouseController);
-        GridManager gridManager = new GridManager(screenManager, mouseController);
+        GridManager gridManager = new GridManager(platform, screenManager, mouseController);
         HintManager hintManager =
-                new HintManager(configuration.maxPositionHistorySize(),
-                        screenManager, mouseController);
+                new HintManager(platform, configuration.maxPositionHistorySize(),
+                        screenManager, mouseController, hintSelectionFrequencies);
         CommandRunner commandRunner = new CommandRunner(mouseController, gridManager,
-                hintManager);
-        Set<Key> mustRemainUnpressedComboPreconditionKeys = new HashSet<>();
-        Set<Key> mustRemainPressedComboPreconditionKeys = new HashSet<>();
-        for (Mode mode : configuration.modeMap().modes()) {
-            for (Combo combo : mode.comboMap().commandsByCombo().keySet()) {
-                mustRemainUnpressedComboPreconditionKeys.addAll(combo.precondition()
-                                                                     .mustRemainUnpressedKeySet()
-                                                                     .stream()
-                                                                     .toList());
-                mustRemainPressedComboPreconditionKeys.addAll(combo.precondition()
-                                                                     .mustRemainPressedKeySets()
-                                                                     .stream()
-                                                                     .flatMap(
-                                                                             Collection::stream)
-                                                                     .toList());
-            }
-        }
-        ComboWatcher comboWatcher =
-                new ComboWatcher(commandRunner, mustRemainUnpressedComboPreconditionKeys,
-                        mustRemainPressedComboPreconditionKeys);
-        keyboardManager = new KeyboardManager(comboWatcher, hintManager);
+                hintManager, keyEventRecorder);
+        KeyOrdinals keyOrdinals = KeyOrdinals.of(configuration.modeMap());
+        ModeMapSummary summary = configuration.modeMap().summary();
+        logger.info("Compiled " + summary.comboCount() + " combos (" +
+                    summary.expandedComboCount() +
+                    " combos if aliases were expanded to single keys)");
+        ComboWatcher comboWatcher = switch (comboEngine) {
+            case AUTOMATON -> new AutomatonComboWatcher(configuration.modeMap(),
+                    keyOrdinals, clock, timerService, commandRunner,
+                    keyOrdinals.keySet(summary.mustRemainUnpressedComboPreconditionKeys()),
+                    keyOrdinals.keySet(summary.mustRemainPressedComboPreconditionKeys()));
+            case LEGACY -> new LegacyComboWatcher(clock, timerService, commandRunner,
+                    summary.mustRemainUnpressedComboPreconditionKeys(),
+                    summary.mustRemainPressedComboPreconditionKeys());
+        };
+        keyboardManager = new KeyboardManager(keyOrdinals, timerService, comboWatcher,
+                hintManager, keyEventRecorder);
         KeyboardState keyboardState = new KeyboardState(keyboardManager);
-        indicatorManager = new IndicatorManager(mouseState, keyboardState);
+        indicatorManager = new IndicatorManager(platform, mouseState, keyboardState);
+        List<ModeListener> modeListeners =
+                new ArrayList<>(List.of(comboWatcher, mouseController, indicatorManager,
+                        gridManager, hintManager));
+        if (keyEventRecorder != null)
+            modeListeners.add(keyEventRecorder);
         modeController =
-                new ModeController(configuration.modeMap(), mouseController, mouseState,
-                        keyboardState,
-                        List.of(comboWatcher, mouseController, indicatorManager,
-                                gridManager, hintManager));
+                new ModeController(configuration.modeMap(), timerService, mouseController,
+                        mouseState, keyboardState, modeListeners);
         commandRunner.setModeController(modeController);
+        commandRunner.setComboWatcher(comboWatcher);
         hintManager.setModeController(modeController);
         gridManager.setListeners(List.of(modeController));
         hintManager.setPositionHistoryListener(List.of(modeController));
         modeController.switchMode(Mode.IDLE_MODE_NAME);
-        platform.reset(mouseController, keyboardManager, configuration.keyboardLayout(),
+        platform.reset(timerService, mouseController, keyboardManager,
+                configuration.keyboardLayout(),
                 configuration.modeMap(),
                 List.of(mouseController, gridManager, hintManager, screenManager));
     }
 
+    private static boolean usesSelectionFrequencyLabels(ModeMap modeMap) {
+        for (Mode mode : modeMap.modes()) {
+            if (mode.hintMesh().enabled() && mode.hintMesh().labelAssignment() ==
+                                             HintLabelAssignment.SELECTION_FREQUENCY)
+                return true;
+        }
+        return false;
+    }
+
 }
@@ -39,7 +39,22 @@ public class MousemasterApplication {
                 System.exit(0);
             }).start();
         }
-        new Mousemaster(configurationPath, new WindowsPlatform()).run();
+        Clock clock = new SystemClock();
+        Path recordPath = Stream.of(args)
+                                .filter(arg -> arg.startsWith("--record-file="))
+                                .map(arg -> arg.split("=")[1])
+                                .findFirst()
+                                .map(Paths::get)
+                                .orElse(null);
+        KeyEventRecorder keyEventRecorder = null;
+        if (recordPath != null) {
+            logger.info("Recording key events to " + recordPath +
+                        " (replay with KeyEventReplayer)");
+            keyEventRecorder = KeyEventRecorder.open(recordPath,
+                    KeyEventRecorder.DEFAULT_CAPACITY, clock);
+        }
+        new Mousemaster(configurationPath, new WindowsPlatform(clock), clock,
+                keyEventRecorder, ComboEngine.AUTOMATON, null).run();
     }
 
     private static void setLogLevel(String level) {
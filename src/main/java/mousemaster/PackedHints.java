@@ -0,0 +1,208 @@
+package mousemaster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The hints of a hint mesh, in parallel primitive arrays. The key sequence of a hint is
+ * packed into a code: the digits of the code in base keys.size() are the indexes of the
+ * keys in keys, the first key of the sequence being the least significant digit. A prefix
+ * check is then a modulo, and two meshes are compared without comparing any Key.
+ * The key sequences are only converted back to keys when the hints are drawn.
+ */
+public class PackedHints {
+
+    private final List<Key> keys;
+    private final int[] centerXs;
+    private final int[] centerYs;
+    private final long[] codes;
+    private final byte[] lengths;
+    /**
+     * powers[length] is keys.size()^length, the number of codes of that length.
+     */
+    private final long[] powers;
+    private int hashCode;
+
+    private PackedHints(List<Key> keys, int[] centerXs, int[] centerYs, long[] codes,
+                        byte[] lengths, long[] powers) {
+        this.keys = keys;
+        this.centerXs = centerXs;
+        this.centerYs = centerYs;
+        this.codes = codes;
+        this.lengths = lengths;
+        this.powers = powers;
+    }
+
+    public int size() {
+        return codes.length;
+    }
+
+    public List<Key> keys() {
+        return keys;
+    }
+
+    public int centerX(int hintIndex) {
+        return centerXs[hintIndex];
+    }
+
+    public int centerY(int hintIndex) {
+        return centerYs[hintIndex];
+    }
+
+    public long code(int hintIndex) {
+        return codes[hintIndex];
+    }
+
+    public int length(int hintIndex) {
+        return lengths[hintIndex];
+    }
+
+    /**
+     * The index in {@link #keys()} of the key at keyIndex in the key sequence of the hint.
+     */
+    public int digit(int hintIndex, int keyIndex) {
+        return (int) (codes[hintIndex] / powers[keyIndex] % keys.size());
+    }
+
+    /**
+     * The key at keyIndex in the key sequence of the hint.
+     */
+    public Key key(int hintIndex, int keyIndex) {
+        return keys.get(digit(hintIndex, keyIndex));
+    }
+
+    public List<Key> keySequence(int hintIndex) {
+        List<Key> keySequence = new ArrayList<>(lengths[hintIndex]);
+        for (int keyIndex = 0; keyIndex < lengths[hintIndex]; keyIndex++)
+            keySequence.add(key(hintIndex, keyIndex));
+        return keySequence;
+    }
+
+    /**
+     * @return -1 if one of the keys is not one of {@link #keys()}, or if the sequence is
+     * longer than any hint's
+     */
+    public long code(List<Key> keySequence) {
+        if (keySequence.size() >= powers.length)
+            return -1;
+        long code = 0;
+        for (int keyIndex = 0; keyIndex < keySequence.size(); keyIndex++) {
+            int digit = keys.indexOf(keySequence.get(keyIndex));
+            if (digit == -1)
+                return -1;
+            code += digit * powers[keyIndex];
+        }
+        return code;
+    }
+
+    /**
+     * @param prefixCode see {@link #code(List)}
+     */
+    public boolean startsWith(int hintIndex, long prefixCode, int prefixLength) {
+        return prefixCode != -1 && lengths[hintIndex] >= prefixLength &&
+               codes[hintIndex] % powers[prefixLength] == prefixCode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof PackedHints that))
+            return false;
+        return hashCode() == that.hashCode() && keys.equals(that.keys) &&
+               Arrays.equals(codes, that.codes) && Arrays.equals(lengths, that.lengths) &&
+               Arrays.equals(centerXs, that.centerXs) &&
+               Arrays.equals(centerYs, that.centerYs);
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = this.hashCode;
+        if (hashCode == 0) {
+            hashCode = keys.hashCode();
+            hashCode = 31 * hashCode + Arrays.hashCode(codes);
+            hashCode = 31 * hashCode + Arrays.hashCode(lengths);
+            hashCode = 31 * hashCode + Arrays.hashCode(centerXs);
+            hashCode = 31 * hashCode + Arrays.hashCode(centerYs);
+            this.hashCode = hashCode;
+        }
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return "PackedHints[keys=" + keys + ", size=" + size() + "]";
+    }
+
+    /**
+     * The arrays are preallocated: each hint is set at its index, so hints can be set
+     * from several threads as long as each index is set by one thread.
+     */
+    public static class PackedHintsBuilder {
+        private final List<Key> keys;
+        private final int[] centerXs;
+        private final int[] centerYs;
+        private final long[] codes;
+        private final byte[] lengths;
+        private final long[] powers;
+
+        public PackedHintsBuilder(List<Key> keys, int size) {
+            this.keys = List.copyOf(keys);
+            centerXs = new int[size];
+            centerYs = new int[size];
+            codes = new long[size];
+            lengths = new byte[size];
+            powers = powers(keys.size());
+        }
+
+        /**
+         * Stops before base^length overflows: longer codes are rejected.
+         */
+        private static long[] powers(int base) {
+            if (base <= 1) {
+                // A single key: the only code of any length is 0.
+                long[] powers = new long[Byte.MAX_VALUE + 1];
+                Arrays.fill(powers, 1);
+                return powers;
+            }
+            List<Long> powers = new ArrayList<>(List.of(1L));
+            while (powers.getLast() <= Long.MAX_VALUE / base)
+                powers.add(powers.getLast() * base);
+            return powers.stream().mapToLong(Long::longValue).toArray();
+        }
+
+        public int maxLength() {
+            return powers.length - 1;
+        }
+
+        /**
+         * The number of codes of the length (keys.size()^length).
+         */
+        public long codeCount(int length) {
+            if (length >= powers.length)
+                throw new IllegalArgumentException(
+                        "Hint length " + length + " is too long for " + keys.size() +
+                        " selection keys");
+            return powers[length];
+        }
+
+        public PackedHintsBuilder set(int hintIndex, int centerX, int centerY, long code,
+                                      int length) {
+            if (code < 0 || code >= codeCount(length))
+                throw new IllegalArgumentException(
+                        "Invalid hint code " + code + " of length " + length);
+            centerXs[hintIndex] = centerX;
+            centerYs[hintIndex] = centerY;
+            codes[hintIndex] = code;
+            lengths[hintIndex] = (byte) length;
+            return this;
+        }
+
+        public PackedHints build() {
+            return new PackedHints(keys, centerXs.clone(), centerYs.clone(),
+                    codes.clone(), lengths.clone(), powers);
+        }
+    }
+
+}
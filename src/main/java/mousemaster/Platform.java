@@ -1,13 +1,81 @@
 package mousemaster;
 
 import java.util.List;
+import java.util.Set;
 
+/**
+ * Everything that goes through the operating system: input events, mouse output,
+ * screens and overlay windows.
+ */
 public interface Platform {
 
     void update(double delta);
 
-    void reset(MouseController mouseController, KeyboardManager keyboardManager,
+    /**
+     * Blocks until an input event is received or until the timeout (in seconds) has
+     * elapsed, whichever comes first. The input event itself is dispatched by the next
+     * {@link #update(double)} call.
+     */
+    void waitForInput(double timeout);
+
+    void reset(TimerService timerService, MouseController mouseController,
+               KeyboardManager keyboardManager,
                KeyboardLayout keyboardLayout, ModeMap modeMap,
                List<MousePositionListener> mousePositionListeners);
 
+    /**
+     * False once the main loop must stop.
+     */
+    boolean running();
+
+    void moveMouseBy(boolean xForward, double deltaX, boolean yForward, double deltaY);
+
+    /**
+     * Moves later, possibly skipped if another move is requested in the meantime.
+     */
+    void moveMouseTo(int x, int y);
+
+    /**
+     * Moves now, in the current thread.
+     */
+    void synchronousMoveMouseTo(int x, int y);
+
+    void pressLeft();
+
+    void pressMiddle();
+
+    void pressRight();
+
+    void releaseLeft();
+
+    void releaseMiddle();
+
+    void releaseRight();
+
+    void wheelHorizontallyBy(boolean forward, double delta);
+
+    void wheelVerticallyBy(boolean forward, double delta);
+
+    void showCursor();
+
+    void hideCursor();
+
+    Set<Screen> screens();
+
+    Rectangle activeWindowRectangle(double windowWidthPercent, double windowHeightPercent,
+                                    int scaledTopInset, int scaledBottomInset,
+                                    int scaledLeftInset, int scaledRightInset);
+
+    void setIndicator(Indicator indicator);
+
+    void hideIndicator();
+
+    void setGrid(Grid grid);
+
+    void hideGrid();
+
+    void setHintMesh(HintMesh hintMesh);
+
+    void hideHintMesh();
+
 }
@@ -4,9 +4,14 @@ import java.util.Set;
 
 public class ScreenManager implements MousePositionListener {
 
+    private final Platform platform;
     private int mouseX;
     private int mouseY;
 
+    public ScreenManager(Platform platform) {
+        this.platform = platform;
+    }
+
     public Screen activeScreen() {
         return nearestScreenContaining(mouseX, mouseY);
     }
@@ -37,7 +42,7 @@ public class ScreenManager implements MousePositionListener {
     }
 
     public Set<Screen> screens() {
-        return WindowsScreen.findScreens();
+        return platform.screens();
     }
 
     public Screen screenContaining(int x, int y) {
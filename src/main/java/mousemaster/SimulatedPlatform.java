@@ -0,0 +1,357 @@
+package mousemaster;
+
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Headless platform: virtual screens, a virtual cursor and scripted key events, driven
+ * by a {@link VirtualClock}. Mouse output and passed key events are recorded, and the
+ * overlay state (indicator, grid, hint mesh) can be inspected.
+ * Mousemaster runs on it end-to-end without any Windows API, and waiting for input
+ * fast-forwards the clock to the next scripted event.
+ */
+public class SimulatedPlatform implements Platform {
+
+    private final VirtualClock clock;
+    private final Set<Screen> screens;
+    private final long stopNanoTime;
+    private final Deque<KeyEvent> scriptedKeyEvents = new ArrayDeque<>();
+    /**
+     * How much later than requested waiting for input returns.
+     */
+    private long wakeUpLatenessNanos;
+    private final List<RecordedEvent> recordedEvents = new ArrayList<>();
+    private KeyboardManager keyboardManager;
+    private List<MousePositionListener> mousePositionListeners = List.of();
+    private int mouseX, mouseY;
+    /**
+     * The fractional parts of the signed move and wheel deltas that have not been applied
+     * yet: like the deltas accumulated by {@link MouseController}, they are carried over
+     * to the next call so that slow moves and wheels are not lost.
+     */
+    private double moveRemainderX, moveRemainderY;
+    private double wheelRemainderX, wheelRemainderY;
+    private boolean cursorHidden;
+    private Indicator indicator;
+    private Grid grid;
+    private HintMesh hintMesh;
+
+    /**
+     * @param screens  the cursor starts at the center of the first screen (iteration
+     *                 order is preserved)
+     * @param stopNanoTime the main loop stops once the clock reaches stopNanoTime and
+     *                     all the scripted key events have been dispatched
+     */
+    public SimulatedPlatform(VirtualClock clock, Set<Screen> screens, long stopNanoTime) {
+        if (screens.isEmpty())
+            throw new IllegalArgumentException("At least one screen is required");
+        this.clock = clock;
+        this.screens = Collections.unmodifiableSet(new LinkedHashSet<>(screens));
+        this.stopNanoTime = stopNanoTime;
+        Point center = this.screens.iterator().next().rectangle().center();
+        mouseX = center.x();
+        mouseY = center.y();
+    }
+
+    /**
+     * Key events must be scheduled in chronological order. Their times are clock nano
+     * times.
+     */
+    public void scheduleKeyEvent(KeyEvent keyEvent) {
+        KeyEvent lastKeyEvent = scriptedKeyEvents.peekLast();
+        if (lastKeyEvent != null && keyEvent.time() < lastKeyEvent.time())
+            throw new IllegalArgumentException(
+                    "Key event " + keyEvent + " at " + keyEvent.time() +
+                    " is scheduled before the previous key event " + lastKeyEvent +
+                    " at " + lastKeyEvent.time());
+        scriptedKeyEvents.add(keyEvent);
+    }
+
+    /**
+     * Makes waiting for input return wakeUpLatenessNanos later than the timeout or the
+     * next scripted event, like a busy or descheduled main loop would: the events and the
+     * timers that expire in the meantime are then all pending at the same time.
+     */
+    public void setWakeUpLatenessNanos(long wakeUpLatenessNanos) {
+        this.wakeUpLatenessNanos = wakeUpLatenessNanos;
+    }
+
+    public List<RecordedEvent> recordedEvents() {
+        return Collections.unmodifiableList(recordedEvents);
+    }
+
+    public Point mousePosition() {
+        return new Point(mouseX, mouseY);
+    }
+
+    public boolean cursorHidden() {
+        return cursorHidden;
+    }
+
+    /**
+     * Null if hidden.
+     */
+    public Indicator indicator() {
+        return indicator;
+    }
+
+    /**
+     * Null if hidden.
+     */
+    public Grid grid() {
+        return grid;
+    }
+
+    /**
+     * Null if hidden.
+     */
+    public HintMesh hintMesh() {
+        return hintMesh;
+    }
+
+    @Override
+    public void update(double delta) {
+        long now = clock.nanoTime();
+        while (!scriptedKeyEvents.isEmpty() && scriptedKeyEvents.peek().time() <= now) {
+            KeyEvent keyEvent = scriptedKeyEvents.poll();
+            boolean mustBeEaten = keyboardManager.keyEvent(keyEvent);
+            if (!mustBeEaten)
+                recordedEvents.add(
+                        new RecordedEvent.PassedKeyEvent(clock.instant(), keyEvent));
+        }
+    }
+
+    @Override
+    public void waitForInput(double timeout) {
+        long nextNanoTime = Double.isInfinite(timeout) ? Long.MAX_VALUE :
+                clock.nanoTime() + (long) Math.ceil(timeout * 1e9);
+        long nextInputNanoTime = scriptedKeyEvents.isEmpty() ? stopNanoTime :
+                scriptedKeyEvents.peek().time();
+        long wakeUpNanoTime = Math.min(nextNanoTime, nextInputNanoTime);
+        clock.advanceTo(wakeUpNanoTime == Long.MAX_VALUE ? wakeUpNanoTime :
+                wakeUpNanoTime + wakeUpLatenessNanos);
+    }
+
+    @Override
+    public void reset(TimerService timerService, MouseController mouseController,
+                      KeyboardManager keyboardManager, KeyboardLayout keyboardLayout,
+                      ModeMap modeMap,
+                      List<MousePositionListener> mousePositionListeners) {
+        this.keyboardManager = keyboardManager;
+        this.mousePositionListeners = mousePositionListeners;
+        mousePositionListeners.forEach(
+                mousePositionListener -> mousePositionListener.mouseMoved(mouseX, mouseY));
+    }
+
+    @Override
+    public boolean running() {
+        return !scriptedKeyEvents.isEmpty() || clock.nanoTime() < stopNanoTime;
+    }
+
+    @Override
+    public void moveMouseBy(boolean xForward, double deltaX, boolean yForward,
+                            double deltaY) {
+        moveRemainderX += deltaX * (xForward ? 1 : -1);
+        moveRemainderY += deltaY * (yForward ? 1 : -1);
+        int moveX = (int) moveRemainderX;
+        int moveY = (int) moveRemainderY;
+        moveRemainderX -= moveX;
+        moveRemainderY -= moveY;
+        if (moveX == 0 && moveY == 0)
+            return;
+        setMousePosition(mouseX + moveX, mouseY + moveY);
+    }
+
+    @Override
+    public void moveMouseTo(int x, int y) {
+        setMousePosition(x, y);
+    }
+
+    @Override
+    public void synchronousMoveMouseTo(int x, int y) {
+        setMousePosition(x, y);
+    }
+
+    /**
+     * Like the Windows cursor, the virtual cursor cannot leave the screens.
+     */
+    private void setMousePosition(int x, int y) {
+        Rectangle screenRectangle = nearestScreenRectangle(x, y);
+        mouseX = Math.max(screenRectangle.x(),
+                Math.min(x, screenRectangle.x() + screenRectangle.width() - 1));
+        mouseY = Math.max(screenRectangle.y(),
+                Math.min(y, screenRectangle.y() + screenRectangle.height() - 1));
+        recordedEvents.add(
+                new RecordedEvent.MouseMoved(clock.instant(), mouseX, mouseY));
+        mousePositionListeners.forEach(
+                listener -> listener.mouseMoved(mouseX, mouseY));
+    }
+
+    private Rectangle nearestScreenRectangle(int x, int y) {
+        Rectangle nearestScreenRectangle = null;
+        double minDistance = Double.MAX_VALUE;
+        for (Screen screen : screens) {
+            Rectangle rectangle = screen.rectangle();
+            double distance =
+                    Rectangle.rectangleEdgeDistanceTo(rectangle.x(), rectangle.y(),
+                            rectangle.width(), rectangle.height(), x, y);
+            if (distance < minDistance) {
+                minDistance = distance;
+                nearestScreenRectangle = rectangle;
+            }
+        }
+        return nearestScreenRectangle;
+    }
+
+    @Override
+    public void pressLeft() {
+        recordButtonEvent(MouseButton.LEFT, true);
+    }
+
+    @Override
+    public void pressMiddle() {
+        recordButtonEvent(MouseButton.MIDDLE, true);
+    }
+
+    @Override
+    public void pressRight() {
+        recordButtonEvent(MouseButton.RIGHT, true);
+    }
+
+    @Override
+    public void releaseLeft() {
+        recordButtonEvent(MouseButton.LEFT, false);
+    }
+
+    @Override
+    public void releaseMiddle() {
+        recordButtonEvent(MouseButton.MIDDLE, false);
+    }
+
+    @Override
+    public void releaseRight() {
+        recordButtonEvent(MouseButton.RIGHT, false);
+    }
+
+    private void recordButtonEvent(MouseButton button, boolean press) {
+        recordedEvents.add(
+                new RecordedEvent.MouseButtonEvent(clock.instant(), button, press));
+    }
+
+    @Override
+    public void wheelHorizontallyBy(boolean forward, double delta) {
+        wheelRemainderX += delta * (forward ? 1 : -1);
+        int wheel = (int) wheelRemainderX;
+        wheelRemainderX -= wheel;
+        if (wheel != 0)
+            recordedEvents.add(new RecordedEvent.Wheeled(clock.instant(), true, wheel));
+    }
+
+    @Override
+    public void wheelVerticallyBy(boolean forward, double delta) {
+        wheelRemainderY += delta * (forward ? 1 : -1);
+        int wheel = (int) wheelRemainderY;
+        wheelRemainderY -= wheel;
+        if (wheel != 0)
+            recordedEvents.add(new RecordedEvent.Wheeled(clock.instant(), false, wheel));
+    }
+
+    @Override
+    public void showCursor() {
+        cursorHidden = false;
+    }
+
+    @Override
+    public void hideCursor() {
+        cursorHidden = true;
+    }
+
+    @Override
+    public Set<Screen> screens() {
+        return screens;
+    }
+
+    /**
+     * The active window is the screen the cursor is on.
+     */
+    @Override
+    public Rectangle activeWindowRectangle(double windowWidthPercent,
+                                           double windowHeightPercent,
+                                           int scaledTopInset, int scaledBottomInset,
+                                           int scaledLeftInset, int scaledRightInset) {
+        Rectangle window = nearestScreenRectangle(mouseX, mouseY);
+        int noInsetGridWidth =
+                Math.max(1, (int) (window.width() * windowWidthPercent));
+        int gridWidth =
+                Math.max(1, noInsetGridWidth - scaledLeftInset - scaledRightInset);
+        int noInsetGridHeight =
+                Math.max(1, (int) (window.height() * windowHeightPercent));
+        int gridHeight =
+                Math.max(1, noInsetGridHeight - scaledTopInset - scaledBottomInset);
+        return new Rectangle(Math.min(window.x() + window.width(),
+                window.x() + scaledLeftInset + (window.width() - noInsetGridWidth) / 2),
+                Math.min(window.y() + window.height(), window.y() + scaledTopInset +
+                                                       (window.height() -
+                                                        noInsetGridHeight) / 2),
+                gridWidth, gridHeight);
+    }
+
+    @Override
+    public void setIndicator(Indicator indicator) {
+        this.indicator = Objects.requireNonNull(indicator);
+    }
+
+    @Override
+    public void hideIndicator() {
+        indicator = null;
+    }
+
+    @Override
+    public void setGrid(Grid grid) {
+        this.grid = Objects.requireNonNull(grid);
+    }
+
+    @Override
+    public void hideGrid() {
+        grid = null;
+    }
+
+    @Override
+    public void setHintMesh(HintMesh hintMesh) {
+        Objects.requireNonNull(hintMesh);
+        this.hintMesh = hintMesh.visible() ? hintMesh : null;
+    }
+
+    @Override
+    public void hideHintMesh() {
+        hintMesh = null;
+    }
+
+    public enum MouseButton {
+        LEFT, MIDDLE, RIGHT
+    }
+
+    public sealed interface RecordedEvent {
+
+        Instant time();
+
+        record MouseMoved(Instant time, int x, int y) implements RecordedEvent {
+        }
+
+        record MouseButtonEvent(Instant time, MouseButton button, boolean press)
+                implements RecordedEvent {
+        }
+
+        /**
+         * Forward means right or down.
+         */
+        record Wheeled(Instant time, boolean horizontal, int delta)
+                implements RecordedEvent {
+        }
+
+        record PassedKeyEvent(Instant time, KeyEvent keyEvent) implements RecordedEvent {
+        }
+
+    }
+
+}
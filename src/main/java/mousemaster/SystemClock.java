@@ -0,0 +1,17 @@
+package mousemaster;
+
+import java.time.Instant;
+
+public class SystemClock implements Clock {
+
+    @Override
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.now();
+    }
+
+}
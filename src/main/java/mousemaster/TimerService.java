@@ -0,0 +1,229 @@
+package mousemaster;
+
+/**
+ * Hierarchical timer wheel: 4 levels of 64 slots, with 1 ms ticks at the lowest level
+ * (the highest level covers about 4.6 hours, further deadlines are cascaded again).
+ * Scheduling, rescheduling and cancelling a timer are O(1), and finding the next deadline
+ * does not scan the slots. Deadlines are {@link Clock#nanoTime()} values. Timers are fired from the main
+ * loop by {@link #fireExpiredTimers()}, and the main loop sleeps until
+ * {@link #nextDeadline()}.
+ */
+public class TimerService {
+
+    private static final long TICK_NANOS = 1_000_000L;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOT_COUNT = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOT_COUNT - 1;
+    private static final int LEVEL_COUNT = 4;
+    private static final long MAX_TICK_DISTANCE = (1L << (SLOT_BITS * LEVEL_COUNT)) - 1;
+
+    private final Clock clock;
+    private final Timer[][] slotHeads = new Timer[LEVEL_COUNT][SLOT_COUNT];
+    private final int[] timerCountByLevel = new int[LEVEL_COUNT];
+    /**
+     * Bit i of occupiedSlotsByLevel[level] is set if slotHeads[level][i] is not null.
+     */
+    private final long[] occupiedSlotsByLevel = new long[LEVEL_COUNT];
+    private final long originNanos;
+    /**
+     * All the ticks up to and including currentTick have been processed.
+     */
+    private long currentTick;
+
+    public TimerService(Clock clock) {
+        this.clock = clock;
+        originNanos = clock.nanoTime();
+    }
+
+    public Timer newTimer(Runnable action) {
+        return new Timer(action);
+    }
+
+    /**
+     * Schedules the timer, or reschedules it if it is already scheduled.
+     */
+    public void schedule(Timer timer, long deadline) {
+        if (timer.scheduled)
+            unlink(timer);
+        timer.deadline = deadline;
+        long deadlineTick =
+                Math.ceilDiv(deadline - originNanos, TICK_NANOS);
+        timer.expirationTick = Math.max(currentTick + 1, deadlineTick);
+        link(timer);
+    }
+
+    public void scheduleIn(Timer timer, long delayNanos) {
+        schedule(timer, clock.nanoTime() + delayNanos);
+    }
+
+    public void cancel(Timer timer) {
+        if (timer.scheduled)
+            unlink(timer);
+    }
+
+    /**
+     * The beginning of the tick the earliest timer expires at: timers are fired by the
+     * first {@link #fireExpiredTimers()} that is called once that tick has begun, so
+     * sleeping until an earlier time (the exact deadline) would wake up too early.
+     * The slots of a level are ordered by their ranges, so the earliest timer of a level
+     * is in its first occupied slot: a level 0 slot has a single expiration tick, and only
+     * the timers of the first occupied slot of levels 1 and 2 are looked at. The timers
+     * of the last level may be placed before their range (see {@link #link(Timer)}), so
+     * the beginning of its first occupied slot's range is returned instead: the main
+     * loop then wakes up once to cascade them.
+     * Long.MAX_VALUE if no timer is scheduled.
+     */
+    public long nextDeadline() {
+        long nextTick = Long.MAX_VALUE;
+        for (int level = 0; level < LEVEL_COUNT; level++) {
+            long occupiedSlots = occupiedSlotsByLevel[level];
+            if (occupiedSlots == 0)
+                continue;
+            int shift = SLOT_BITS * level;
+            // The first range is the one after the range that includes currentTick.
+            long firstRange = (currentTick >> shift) + 1;
+            int offset = Long.numberOfTrailingZeros(
+                    Long.rotateRight(occupiedSlots, (int) (firstRange & SLOT_MASK)));
+            if (level == 0 || level == LEVEL_COUNT - 1) {
+                nextTick = Math.min(nextTick, (firstRange + offset) << shift);
+                continue;
+            }
+            int index = (int) ((firstRange + offset) & SLOT_MASK);
+            for (Timer timer = slotHeads[level][index]; timer != null;
+                 timer = timer.next)
+                nextTick = Math.min(nextTick, timer.expirationTick);
+        }
+        return nextTick == Long.MAX_VALUE ? Long.MAX_VALUE :
+                originNanos + nextTick * TICK_NANOS;
+    }
+
+    public void fireExpiredTimers() {
+        fireTimersExpiredAt(clock.nanoTime());
+    }
+
+    /**
+     * Fires the timers that expire at or before nanoTime, which must not be after now:
+     * {@link KeyboardManager} fires the timers that expired before a key event when the
+     * event is dispatched after them.
+     */
+    public void fireTimersExpiredAt(long nanoTime) {
+        advanceTo(Math.floorDiv(nanoTime - originNanos, TICK_NANOS));
+    }
+
+    private void advanceTo(long targetTick) {
+        while (currentTick < targetTick) {
+            if (timerCount() == 0) {
+                currentTick = targetTick;
+                return;
+            }
+            long tick = currentTick + 1;
+            int index = (int) (tick & SLOT_MASK);
+            if (index != 0) {
+                // Nothing to cascade before the next wrap: skip the empty level 0 slots.
+                int nextIndex = Math.min(SLOT_COUNT, Long.numberOfTrailingZeros(
+                        occupiedSlotsByLevel[0] & (-1L << index)));
+                tick += nextIndex - index;
+                if (tick > targetTick) {
+                    currentTick = targetTick;
+                    return;
+                }
+                index = nextIndex & SLOT_MASK;
+            }
+            currentTick = tick;
+            if (index == 0)
+                cascade(tick);
+            Timer timer;
+            while ((timer = slotHeads[0][index]) != null) {
+                unlink(timer);
+                timer.action.run();
+            }
+        }
+    }
+
+    /**
+     * Moves down the timers of the higher level slots whose range begins at tick.
+     */
+    private void cascade(long tick) {
+        for (int level = LEVEL_COUNT - 1; level >= 1; level--) {
+            if ((tick & ((1L << (SLOT_BITS * level)) - 1)) != 0)
+                continue;
+            int index = (int) ((tick >> (SLOT_BITS * level)) & SLOT_MASK);
+            Timer timer = slotHeads[level][index];
+            while (timer != null) {
+                Timer next = timer.next;
+                unlink(timer);
+                link(timer);
+                timer = next;
+            }
+        }
+    }
+
+    private int timerCount() {
+        int timerCount = 0;
+        for (int levelTimerCount : timerCountByLevel)
+            timerCount += levelTimerCount;
+        return timerCount;
+    }
+
+    private void link(Timer timer) {
+        long distance = timer.expirationTick - currentTick;
+        long placementTick = distance > MAX_TICK_DISTANCE ?
+                currentTick + MAX_TICK_DISTANCE : timer.expirationTick;
+        int level = distance < SLOT_COUNT ? 0 :
+                Math.min(LEVEL_COUNT - 1, (63 - Long.numberOfLeadingZeros(distance)) /
+                                          SLOT_BITS);
+        int index = (int) ((placementTick >> (SLOT_BITS * level)) & SLOT_MASK);
+        Timer head = slotHeads[level][index];
+        timer.previous = null;
+        timer.next = head;
+        if (head != null)
+            head.previous = timer;
+        slotHeads[level][index] = timer;
+        occupiedSlotsByLevel[level] |= 1L << index;
+        timer.level = level;
+        timer.index = index;
+        timer.scheduled = true;
+        timerCountByLevel[level]++;
+    }
+
+    private void unlink(Timer timer) {
+        if (timer.previous != null)
+            timer.previous.next = timer.next;
+        else {
+            slotHeads[timer.level][timer.index] = timer.next;
+            if (timer.next == null)
+                occupiedSlotsByLevel[timer.level] &= ~(1L << timer.index);
+        }
+        if (timer.next != null)
+            timer.next.previous = timer.previous;
+        timer.previous = null;
+        timer.next = null;
+        timer.scheduled = false;
+        timerCountByLevel[timer.level]--;
+    }
+
+    public static final class Timer {
+        private final Runnable action;
+        private long deadline;
+        private long expirationTick;
+        private int level;
+        private int index;
+        private Timer previous;
+        private Timer next;
+        private boolean scheduled;
+
+        private Timer(Runnable action) {
+            this.action = action;
+        }
+
+        public boolean scheduled() {
+            return scheduled;
+        }
+
+        public long deadline() {
+            return deadline;
+        }
+
+    }
+
+}
@@ -0,0 +1,46 @@
+package mousemaster;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Clock that only moves when it is stepped, so that hours of simulated usage can be
+ * run in seconds.
+ */
+public class VirtualClock implements Clock {
+
+    private final Instant origin;
+    private long nanoTime;
+
+    public VirtualClock(Instant origin) {
+        this.origin = origin;
+    }
+
+    @Override
+    public long nanoTime() {
+        return nanoTime;
+    }
+
+    @Override
+    public Instant instant() {
+        return origin.plusNanos(nanoTime);
+    }
+
+    public void advance(Duration duration) {
+        advance(duration.toNanos());
+    }
+
+    public void advance(long nanos) {
+        if (nanos < 0)
+            throw new IllegalArgumentException("Unable to step the clock backwards: " + nanos);
+        nanoTime += nanos;
+    }
+
+    /**
+     * Does nothing if the clock is already past nanoTime.
+     */
+    public void advanceTo(long nanoTime) {
+        this.nanoTime = Math.max(this.nanoTime, nanoTime);
+    }
+
+}
@@ -6,6 +6,7 @@ import mousemaster.WindowsMouse.MouseSize;
 
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class WindowsOverlay {
 
@@ -99,7 +100,10 @@ public class WindowsOverlay {
 
     }
 
-    private record HintMeshWindow(WinDef.HWND hwnd, WinUser.WindowProc callback, List<Hint> hints) {
+    /**
+     * @param hintIndexes indexes of the hints (of currentHintMesh) in the window's screen
+     */
+    private record HintMeshWindow(WinDef.HWND hwnd, WinUser.WindowProc callback, int[] hintIndexes) {
 
     }
 
@@ -157,29 +161,31 @@ public class WindowsOverlay {
         gridWindow = new GridWindow(hwnd, callback);
     }
 
-    private static void createOrUpdateHintMeshWindows(List<Hint> hints) {
+    private static void createOrUpdateHintMeshWindows(PackedHints hints) {
         Set<Screen> screens = WindowsScreen.findScreens();
-        Map<Screen, List<Hint>> hintsByScreen = new HashMap<>();
-        for (Hint hint : hints) {
+        Map<Screen, IntStream.Builder> hintIndexesByScreen = new HashMap<>();
+        for (int hintIndex = 0; hintIndex < hints.size(); hintIndex++) {
             for (Screen screen : screens) {
                 if (!Rectangle.rectangleContains(screen.rectangle().x(),
                         screen.rectangle().y(), screen.rectangle().width(),
-                        screen.rectangle().height(), hint.centerX(), hint.centerY()))
+                        screen.rectangle().height(), hints.centerX(hintIndex),
+                        hints.centerY(hintIndex)))
                     continue;
-                hintsByScreen.computeIfAbsent(screen, monitor1 -> new ArrayList<>())
-                              .add(hint);
+                hintIndexesByScreen.computeIfAbsent(screen, monitor1 -> IntStream.builder())
+                                   .add(hintIndex);
                 break;
             }
         }
         for (Map.Entry<Screen, HintMeshWindow> entry : hintMeshWindows.entrySet()) {
             Screen screen = entry.getKey();
             HintMeshWindow window = entry.getValue();
-            if (!hintsByScreen.containsKey(screen))
-                window.hints.clear();
+            if (!hintIndexesByScreen.containsKey(screen))
+                entry.setValue(
+                        new HintMeshWindow(window.hwnd, window.callback, new int[0]));
         }
-        for (Map.Entry<Screen, List<Hint>> entry : hintsByScreen.entrySet()) {
+        for (Map.Entry<Screen, IntStream.Builder> entry : hintIndexesByScreen.entrySet()) {
             Screen screen = entry.getKey();
-            List<Hint> hintsInScreen = entry.getValue();
+            int[] hintsInScreen = entry.getValue().build().toArray();
             HintMeshWindow existingWindow = hintMeshWindows.get(screen);
             if (existingWindow == null) {
                 WinUser.WindowProc callback = WindowsOverlay::hintMeshWindowCallback;
@@ -316,7 +322,7 @@ public class WindowsOverlay {
                         GDI32.INSTANCE.CreateCompatibleBitmap(hdc, width, height);
                 WinNT.HANDLE oldBitmap = GDI32.INSTANCE.SelectObject(memDC, hBitmap);
                 clearWindow(memDC, ps.rcPaint);
-                drawHints(memDC, ps.rcPaint, screen, hintMeshWindow.hints);
+                drawHints(memDC, ps.rcPaint, screen, hintMeshWindow.hintIndexes);
                 // Copy (blit) the off-screen buffer to the screen.
                 GDI32.INSTANCE.BitBlt(hdc, 0, 0, width, height, memDC, 0, 0,
                         GDI32.SRCCOPY);
@@ -395,13 +401,15 @@ public class WindowsOverlay {
     }
 
     private static void drawHints(WinDef.HDC hdc, WinDef.RECT windowRect, Screen screen,
-                                  List<Hint> windowHints) {
+                                  int[] windowHintIndexes) {
         String fontName = currentHintMesh.fontName();
         int fontSize = currentHintMesh.fontSize();
         String fontHexColor = currentHintMesh.fontHexColor();
         String selectedPrefixFontHexColor = currentHintMesh.selectedPrefixFontHexColor();
         String boxHexColor = currentHintMesh.boxHexColor();
+        PackedHints hints = currentHintMesh.hints();
         List<Key> focusedHintKeySequence = currentHintMesh.focusedKeySequence();
+        long focusedHintCode = hints.code(focusedHintKeySequence);
         int scaledDpi = (int) (screen.dpi() * screen.scale());
         // Convert point size to logical units.
         // 1 point = 1/72 inch. So, multiply by scaledDpi and divide by 72 to convert to pixels.
@@ -419,19 +427,20 @@ public class WindowsOverlay {
         WinNT.HANDLE oldFont = GDI32.INSTANCE.SelectObject(hdc, hintFont);
         WinDef.HBRUSH boxBrush =
                 ExtendedGDI32.INSTANCE.CreateSolidBrush(hexColorStringToInt(boxHexColor));
-        for (Hint hint : windowHints) {
-            if (!hint.startsWith(focusedHintKeySequence))
+        for (int hintIndex : windowHintIndexes) {
+            if (!hints.startsWith(hintIndex, focusedHintCode,
+                    focusedHintKeySequence.size()))
                 continue;
             // Measure text size
             WinUser.SIZE textSize = new WinUser.SIZE();
-            String text = hint.keySequence()
-                              .stream()
-                              .map(Key::hintLabel)
-                              .collect(Collectors.joining());
+            String text = hints.keySequence(hintIndex)
+                               .stream()
+                               .map(Key::hintLabel)
+                               .collect(Collectors.joining());
             ExtendedGDI32.INSTANCE.GetTextExtentPoint32A(hdc, text, text.length(),
                     textSize);
-            int textX = hint.centerX() - screen.rectangle().x() - textSize.cx / 2;
-            int textY = hint.centerY() - screen.rectangle().y() - textSize.cy / 2;
+            int textX = hints.centerX(hintIndex) - screen.rectangle().x() - textSize.cx / 2;
+            int textY = hints.centerY(hintIndex) - screen.rectangle().y() - textSize.cy / 2;
             WinDef.RECT textRect = new WinDef.RECT();
             textRect.left = textX;
             textRect.top = textY;
@@ -7,25 +7,29 @@ import mousemaster.KeyEvent.ReleaseKeyEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicReference;
 
 public class WindowsPlatform implements Platform {
 
     private static final Logger logger = LoggerFactory.getLogger(WindowsPlatform.class);
-    private static final Instant systemStartTime;
-
-    static {
-        long uptimeMillis = ExtendedKernel32.INSTANCE.GetTickCount64();
-        Instant now = Instant.now();
-        systemStartTime = now.minusMillis(uptimeMillis);
-    }
+    private static final long SANITY_CHECK_PRESS_DURATION_NANOS = 10_000_000_000L;
+    private static final long ENFORCE_WINDOWS_TOPMOST_PERIOD_NANOS = 200_000_000L;
 
+    private final Clock clock;
+    /**
+     * Key event times (milliseconds since the system was started) are converted
+     * to clock nano times.
+     */
+    private final long systemStartNanoTime;
     private MouseController mouseController;
     private KeyboardManager keyboardManager;
     private List<MousePositionListener> mousePositionListeners;
-    private final Map<Key, AtomicReference<Double>> currentlyPressedNotEatenKeys = new HashMap<>();
+    private TimerService timerService;
+    /**
+     * Press time (clock nano time) of the currently pressed keys that were not eaten.
+     */
+    private final Map<Key, Long> currentlyPressedNotEatenKeys = new HashMap<>();
+    private TimerService.Timer sanityCheckTimer;
     private WinUser.HHOOK keyboardHook;
     private WinUser.HHOOK mouseHook;
     /**
@@ -37,9 +41,12 @@ public class WindowsPlatform implements Platform {
     private WinUser.LowLevelKeyboardProc keyboardHookCallback;
     private WinNT.HANDLE singleInstanceMutex;
     private final WinUser.MSG msg = new WinUser.MSG();
-    private double enforceWindowsTopmostTimer;
+    private TimerService.Timer enforceWindowsTopmostTimer;
 
-    public WindowsPlatform() {
+    public WindowsPlatform(Clock clock) {
+        this.clock = clock;
+        systemStartNanoTime = clock.nanoTime() -
+                              ExtendedKernel32.INSTANCE.GetTickCount64() * 1_000_000L;
         WindowsMouse.windowsPlatform = this; // TODO Get rid of this.
         if (!acquireSingleInstanceMutex())
             throw new IllegalStateException("Another instance is already running");
@@ -49,55 +56,168 @@ public class WindowsPlatform implements Platform {
 
     @Override
     public void update(double delta) {
+        // The hook callbacks are called from here.
         while (User32.INSTANCE.PeekMessage(msg, null, 0, 0, 1)) {
             User32.INSTANCE.TranslateMessage(msg);
             User32.INSTANCE.DispatchMessage(msg);
         }
-        sanityCheckCurrentlyPressedKeys(delta);
-        enforceWindowsTopmostTimer -= delta;
-        if (enforceWindowsTopmostTimer < 0) {
-            // Every 200ms.
-            enforceWindowsTopmostTimer = 0.2;
-            WindowsOverlay.setTopmost();
-        }
     }
 
     @Override
-    public void reset(MouseController mouseController, KeyboardManager keyboardManager,
+    public void waitForInput(double timeout) {
+        int timeoutMillis = (int) Math.ceil(timeout * 1000);
+        if (timeoutMillis == 0)
+            return;
+        // Low-level hook calls are sent messages: they wake up the wait (QS_SENDMESSAGE
+        // is part of QS_ALLINPUT).
+        ExtendedUser32.INSTANCE.MsgWaitForMultipleObjects(0, null, false,
+                timeoutMillis, ExtendedUser32.QS_ALLINPUT);
+    }
+
+    @Override
+    public void reset(TimerService timerService, MouseController mouseController,
+                      KeyboardManager keyboardManager,
                       KeyboardLayout keyboardLayout, ModeMap modeMap,
                       List<MousePositionListener> mousePositionListeners) {
+        this.timerService = timerService;
+        sanityCheckTimer = timerService.newTimer(this::sanityCheckCurrentlyPressedKeys);
+        scheduleSanityCheck();
+        enforceWindowsTopmostTimer = timerService.newTimer(this::enforceWindowsTopmost);
+        timerService.scheduleIn(enforceWindowsTopmostTimer,
+                ENFORCE_WINDOWS_TOPMOST_PERIOD_NANOS);
         this.mouseController = mouseController;
         this.keyboardManager = keyboardManager;
         this.mousePositionListeners = mousePositionListeners;
-        Set<Key> allComboKeys = new HashSet<>();
-        Set<String> hintFontNames = new HashSet<>();
-        for (Mode mode : modeMap.modes()) {
-            for (Combo combo : mode.comboMap().commandsByCombo().keySet()) {
-                combo.precondition()
-                     .mustRemainPressedKeySets()
-                     .stream()
-                     .flatMap(Collection::stream)
-                     .forEach(allComboKeys::add);
-                allComboKeys.addAll(combo.precondition().mustRemainUnpressedKeySet());
-                combo.sequence()
-                     .moves()
-                     .stream()
-                     .map(ComboMove::key)
-                     .forEach(allComboKeys::add);
-            }
-            hintFontNames.add(mode.hintMesh().fontName());
-        }
-        for (String hintFontName : hintFontNames) {
+        for (String hintFontName : modeMap.summary().hintFontNames()) {
             if (!WindowsOverlay.doesFontExist(hintFontName))
                 throw new IllegalStateException("Unable to find hint font: " + hintFontName);
         }
-        WindowsVirtualKey.mapKeysToVirtualKeysUsingLayout(allComboKeys, keyboardLayout);
+        WindowsVirtualKey.mapKeysToVirtualKeysUsingLayout(
+                Set.copyOf(modeMap.summary().comboKeys()), keyboardLayout);
         WinDef.POINT mousePosition = WindowsMouse.findMousePosition();
         mousePositionListeners.forEach(
                 mousePositionListener -> mousePositionListener.mouseMoved(mousePosition.x,
                         mousePosition.y));
     }
 
+    @Override
+    public boolean running() {
+        // The process is terminated by the operating system (the JVM shutdown hook
+        // uninstalls the hooks).
+        return true;
+    }
+
+    @Override
+    public void moveMouseBy(boolean xForward, double deltaX, boolean yForward,
+                            double deltaY) {
+        WindowsMouse.moveBy(xForward, deltaX, yForward, deltaY);
+    }
+
+    @Override
+    public void moveMouseTo(int x, int y) {
+        WindowsMouse.moveTo(x, y);
+    }
+
+    @Override
+    public void synchronousMoveMouseTo(int x, int y) {
+        WindowsMouse.synchronousMoveTo(x, y);
+    }
+
+    @Override
+    public void pressLeft() {
+        WindowsMouse.pressLeft();
+    }
+
+    @Override
+    public void pressMiddle() {
+        WindowsMouse.pressMiddle();
+    }
+
+    @Override
+    public void pressRight() {
+        WindowsMouse.pressRight();
+    }
+
+    @Override
+    public void releaseLeft() {
+        WindowsMouse.releaseLeft();
+    }
+
+    @Override
+    public void releaseMiddle() {
+        WindowsMouse.releaseMiddle();
+    }
+
+    @Override
+    public void releaseRight() {
+        WindowsMouse.releaseRight();
+    }
+
+    @Override
+    public void wheelHorizontallyBy(boolean forward, double delta) {
+        WindowsMouse.wheelHorizontallyBy(forward, delta);
+    }
+
+    @Override
+    public void wheelVerticallyBy(boolean forward, double delta) {
+        WindowsMouse.wheelVerticallyBy(forward, delta);
+    }
+
+    @Override
+    public void showCursor() {
+        WindowsMouse.showCursor();
+    }
+
+    @Override
+    public void hideCursor() {
+        WindowsMouse.hideCursor();
+    }
+
+    @Override
+    public Set<Screen> screens() {
+        return WindowsScreen.findScreens();
+    }
+
+    @Override
+    public Rectangle activeWindowRectangle(double windowWidthPercent,
+                                           double windowHeightPercent,
+                                           int scaledTopInset, int scaledBottomInset,
+                                           int scaledLeftInset, int scaledRightInset) {
+        return WindowsOverlay.activeWindowRectangle(windowWidthPercent,
+                windowHeightPercent, scaledTopInset, scaledBottomInset, scaledLeftInset,
+                scaledRightInset);
+    }
+
+    @Override
+    public void setIndicator(Indicator indicator) {
+        WindowsOverlay.setIndicator(indicator);
+    }
+
+    @Override
+    public void hideIndicator() {
+        WindowsOverlay.hideIndicator();
+    }
+
+    @Override
+    public void setGrid(Grid grid) {
+        WindowsOverlay.setGrid(grid);
+    }
+
+    @Override
+    public void hideGrid() {
+        WindowsOverlay.hideGrid();
+    }
+
+    @Override
+    public void setHintMesh(HintMesh hintMesh) {
+        WindowsOverlay.setHintMesh(hintMesh);
+    }
+
+    @Override
+    public void hideHintMesh() {
+        WindowsOverlay.hideHintMesh();
+    }
+
     /**
      * When running as a graalvm native image, we need to set the DPI awareness
      * (otherwise mouse coordinates are wrong on scaled displays).
@@ -155,14 +275,12 @@ public class WindowsPlatform implements Platform {
      * The getAsyncKeyStateResult call could probably be taken out (it is useless) and replaced with
      * a simple 10s expiration time.
      */
-    private void sanityCheckCurrentlyPressedKeys(double delta) {
-        for (AtomicReference<Double> pressDuration : currentlyPressedNotEatenKeys.values())
-            pressDuration.set(pressDuration.get() + delta);
+    private void sanityCheckCurrentlyPressedKeys() {
+        long now = clock.nanoTime();
         Set<Key> keysThatDoNotSeemToBePressedAnymore = new HashSet<>();
-        for (Map.Entry<Key, AtomicReference<Double>> entry : currentlyPressedNotEatenKeys.entrySet()) {
+        for (Map.Entry<Key, Long> entry : currentlyPressedNotEatenKeys.entrySet()) {
             Key key = entry.getKey();
-            AtomicReference<Double> pressDuration = entry.getValue();
-            if (pressDuration.get() < 10)
+            if (now - entry.getValue() < SANITY_CHECK_PRESS_DURATION_NANOS)
                 continue;
             short getAsyncKeyStateResult = User32.INSTANCE.GetAsyncKeyState(
                     WindowsVirtualKey.windowsVirtualKeyFromKey(key).virtualKeyCode);
@@ -171,7 +289,7 @@ public class WindowsPlatform implements Platform {
                 keysThatDoNotSeemToBePressedAnymore.add(key);
             else
                 // The key was legitimately pressed for 10s.
-                pressDuration.set(0d);
+                entry.setValue(now);
         }
         if (!keysThatDoNotSeemToBePressedAnymore.isEmpty()) {
             logger.info(
@@ -181,6 +299,25 @@ public class WindowsPlatform implements Platform {
             keyboardManager.reset();
             mouseController.reset();
         }
+        scheduleSanityCheck();
+    }
+
+    private void scheduleSanityCheck() {
+        if (currentlyPressedNotEatenKeys.isEmpty()) {
+            timerService.cancel(sanityCheckTimer);
+            return;
+        }
+        long earliestPressTime = Long.MAX_VALUE;
+        for (long pressTime : currentlyPressedNotEatenKeys.values())
+            earliestPressTime = Math.min(earliestPressTime, pressTime);
+        timerService.schedule(sanityCheckTimer,
+                earliestPressTime + SANITY_CHECK_PRESS_DURATION_NANOS);
+    }
+
+    private void enforceWindowsTopmost() {
+        WindowsOverlay.setTopmost();
+        timerService.scheduleIn(enforceWindowsTopmostTimer,
+                ENFORCE_WINDOWS_TOPMOST_PERIOD_NANOS);
     }
 
     private boolean acquireSingleInstanceMutex() {
@@ -242,10 +379,10 @@ public class WindowsPlatform implements Platform {
                                     WindowsVirtualKey.values.get(info.vkCode),
                                     info.scanCode, info.flags);
                         if (key != null) {
-                            Instant time = systemStartTime.plusMillis(info.time);
+                            long time = systemStartNanoTime + info.time * 1_000_000L;
                             KeyEvent keyEvent = release ? new ReleaseKeyEvent(time, key) :
                                     new PressKeyEvent(time, key);
-                            boolean eventMustBeEaten = keyEvent(keyEvent, info, wParamString);
+                            boolean eventMustBeEaten = keyEvent(keyEvent);
                             if (eventMustBeEaten)
                                 return new WinDef.LRESULT(1);
                         }
@@ -258,14 +395,18 @@ public class WindowsPlatform implements Platform {
         return ExtendedUser32.INSTANCE.CallNextHookEx(keyboardHook, nCode, wParam, info);
     }
 
-    private boolean keyEvent(KeyEvent keyEvent, WinUser.KBDLLHOOKSTRUCT info,
-                             String wParamString) {
+    private boolean keyEvent(KeyEvent keyEvent) {
         if (!keyEvent.isPress())
             currentlyPressedNotEatenKeys.remove(keyEvent.key());
         boolean mustBeEaten = keyboardManager.keyEvent(keyEvent);
         if (keyEvent.isPress() && !mustBeEaten) {
-            currentlyPressedNotEatenKeys.computeIfAbsent(keyEvent.key(),
-                    key -> new AtomicReference<>(0d)).set(0d);
+            long now = clock.nanoTime();
+            currentlyPressedNotEatenKeys.put(keyEvent.key(), now);
+            // When the timer elapses, scheduleSanityCheck() reschedules it for the keys
+            // that were pressed since.
+            if (!sanityCheckTimer.scheduled())
+                timerService.schedule(sanityCheckTimer,
+                        now + SANITY_CHECK_PRESS_DURATION_NANOS);
         }
         return mustBeEaten;
     }